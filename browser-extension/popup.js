@@ -108,7 +108,7 @@ document.addEventListener('DOMContentLoaded', () => {
             if (!generateResponse.ok) throw new Error(`创建任务失败: ${await generateResponse.text()}`);
 
             const taskData = await generateResponse.json();
-            await pollTaskStatusAndRender(taskData.taskId);
+            await streamTaskStatusAndRender(taskData.taskId);
 
         } catch (error) {
             handleError(error);
@@ -117,6 +117,51 @@ document.addEventListener('DOMContentLoaded', () => {
         }
     }
 
+    // 通过 SSE 实时接收任务进度；连接失败时回退为轮询
+    async function streamTaskStatusAndRender(taskId) {
+        statusDiv.textContent = `任务已创建...`;
+        let finished = false;
+        const finalTask = await new Promise((resolve, reject) => {
+            const source = new EventSource(`http://localhost:8080/api/tasks/${taskId}/events`);
+            // 流式生成出的笔记块按顺序到达，先行渲染预览
+            const partialBlocks = [];
+            source.addEventListener('partial', (event) => {
+                const partial = JSON.parse(event.data);
+                partialBlocks[partial.index] = partial.block;
+                renderNoteBlocks(partialBlocks.filter(Boolean));
+                resultContainer.style.display = 'flex';
+            });
+            source.addEventListener('partial_reset', () => {
+                partialBlocks.length = 0;
+                notesContent.innerHTML = '';
+                rawMarkdownNote = '';
+            });
+            source.addEventListener('status', (event) => {
+                const task = JSON.parse(event.data);
+                statusDiv.textContent = `处理中: ${task.message}`;
+                if (task.status === 'COMPLETED' || task.status === 'FAILED' || task.status === 'CANCELLED') {
+                    finished = true;
+                    source.close();
+                    resolve(task);
+                }
+            });
+            source.onerror = () => {
+                source.close();
+                if (!finished) resolve(null);
+            };
+        });
+
+        if (!finalTask) {
+            await pollTaskStatusAndRender(taskId);
+            return;
+        }
+        if (finalTask.status === 'FAILED' || finalTask.status === 'CANCELLED') {
+            throw new Error(`任务失败: ${finalTask.message}`);
+        }
+        statusDiv.textContent = '笔记生成成功！';
+        await fetchAndRenderResult(taskId);
+    }
+
     async function pollTaskStatusAndRender(taskId) {
         statusDiv.textContent = `任务已创建...`;
         for (let i = 0; i < 60; i++) {
@@ -128,7 +173,7 @@ document.addEventListener('DOMContentLoaded', () => {
                 statusDiv.textContent = '笔记生成成功！';
                 await fetchAndRenderResult(taskId);
                 return;
-            } else if (task.status === 'FAILED') {
+            } else if (task.status === 'FAILED' || task.status === 'CANCELLED') {
                 throw new Error(`任务失败: ${task.statusMessage}`);
             }
             await new Promise(resolve => setTimeout(resolve, 5000));
@@ -143,11 +188,18 @@ document.addEventListener('DOMContentLoaded', () => {
         currentNoteId = note.id;
         const noteData = JSON.parse(note.content);
 
+        renderNoteBlocks(noteData.notes);
+
+        noteActions.style.display = 'block';
+        resultContainer.style.display = 'flex';
+    }
+
+    function renderNoteBlocks(blocks) {
         notesContent.innerHTML = '';
         rawMarkdownNote = '';
         let currentList = null;
 
-        noteData.notes.forEach(block => {
+        blocks.forEach(block => {
             if (block.type !== 'list_item' && currentList) { notesContent.appendChild(currentList); currentList = null; }
             let element; const content = block.content;
             switch (block.type) {
@@ -164,9 +216,6 @@ document.addEventListener('DOMContentLoaded', () => {
             }
         });
         if (currentList) notesContent.appendChild(currentList);
-
-        noteActions.style.display = 'block';
-        resultContainer.style.display = 'flex';
     }
 
     function createKnowledgePointElement(knowledgePointData) {
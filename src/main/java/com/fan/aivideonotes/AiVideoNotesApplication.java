@@ -10,24 +10,18 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Primary;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
-import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.scheduling.annotation.EnableAsync;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
-import reactor.netty.http.client.HttpClient;
-import reactor.netty.transport.ProxyProvider;
 import com.zaxxer.hikari.HikariDataSource; // 导入
 import javax.sql.DataSource; // 导入
 
 
-import java.net.InetSocketAddress;
-import java.net.Proxy;
 
 @SpringBootApplication
 @EnableAsync
+@EnableScheduling
 @EnableRetry
 public class AiVideoNotesApplication {
 
@@ -38,19 +32,7 @@ public class AiVideoNotesApplication {
 
 
 
-    // 1. RestTemplate Bean (带代理和超时)
-    @Bean
-    public RestTemplate restTemplate() {
-        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
-        String proxyHost = "127.0.0.1";
-        int proxyPort = 7897;
-        Proxy proxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress(proxyHost, proxyPort));
-        requestFactory.setProxy(proxy);
-        requestFactory.setConnectTimeout(60 * 1000);
-        requestFactory.setReadTimeout(5 * 60 * 1000);
-        System.out.println("!!! RestTemplate is configured with proxy and timeouts !!!");
-        return new RestTemplate(requestFactory);
-    }
+    // 1. 调用模型提供商的 WebClient (连接池、代理、超时) 见 config.HttpClientConfig
 
     @Bean
     public DataSource dataSource() {
@@ -76,7 +58,10 @@ public class AiVideoNotesApplication {
         objectMapper.registerModule(new JavaTimeModule());
 
         // 2. 【新增】注册 Hibernate6Module (解决懒加载代理问题)
-        objectMapper.registerModule(new Hibernate6Module());
+        // 未加载的懒加载关联只序列化为 {"id": ...}，例如 Task.resultNote
+        Hibernate6Module hibernate6Module = new Hibernate6Module();
+        hibernate6Module.enable(Hibernate6Module.Feature.SERIALIZE_IDENTIFIER_FOR_LAZY_NOT_LOADED_OBJECTS);
+        objectMapper.registerModule(hibernate6Module);
 
         // 3. 禁用将日期写成时间戳的行为
         objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
@@ -1,5 +1,8 @@
 package com.fan.aivideonotes.config;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
@@ -9,16 +12,66 @@ import java.util.concurrent.Executor;
 @Configuration
 public class AsyncConfig {
 
-    @Bean(name = "taskExecutor")
-    public Executor taskExecutor() {
-        // Spring Boot 3.2+ 开启虚拟线程后，这个配置会自动使用虚拟线程，无需额外设置
-        // 如果想手动控制，可以使用 VirtualThreadTaskExecutor
+    // ========================= 笔记生成流水线的分阶段线程池 =========================
+    // 作业由 JobWorker 从数据库队列中认领后进入流水线 (原先的 taskExecutor + @Async 已被替代)。
+    // 每个阶段都是固定大小的线程池 + 有界队列，队列满时上游线程阻塞等待 (见 BlockingHandoffPolicy)。
+    // 各阶段的 executor.queued / executor.active 等指标由 Actuator 自动按 bean 名称暴露，
+    // 另外这里额外注册了 pipeline.stage.utilization (活跃线程数 / 线程数上限)。
+
+    /**
+     * 下载阶段：网络密集型，线程数按带宽和目标站点的限流情况设置。
+     */
+    @Bean(name = "downloadExecutor")
+    public Executor downloadExecutor(@Value("${app.pipeline.download.threads:4}") int threads,
+                                     @Value("${app.pipeline.download.queue-capacity:8}") int queueCapacity,
+                                     MeterRegistry meterRegistry) {
+        return buildStageExecutor("download", threads, queueCapacity, false, meterRegistry);
+    }
+
+    /**
+     * 转码阶段：ffmpeg 是 CPU 密集型，线程数默认等于 CPU 核数 (配置为 0 时)。
+     */
+    @Bean(name = "transcodeExecutor")
+    public Executor transcodeExecutor(@Value("${app.pipeline.transcode.threads:0}") int threads,
+                                      @Value("${app.pipeline.transcode.queue-capacity:8}") int queueCapacity,
+                                      MeterRegistry meterRegistry) {
+        int effectiveThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return buildStageExecutor("transcode", effectiveThreads, queueCapacity, false, meterRegistry);
+    }
+
+    /**
+     * LLM 阶段：大部分时间在等待模型返回，线程数即为同时在途的请求数上限，应按模型提供商的配额来设置。
+     * 长音频分段生成时，每个片段都是这个线程池上的一个独立任务。
+     * 默认使用虚拟线程：等待模型响应时不占用平台线程 (网络 I/O 由 WebClient 的 event loop 完成)，
+     * 因此在途请求数可以按配额调大，而不会让 JVM 的线程数随之增长。
+     */
+    @Bean(name = "llmExecutor")
+    public Executor llmExecutor(@Value("${app.pipeline.llm.threads:4}") int threads,
+                                @Value("${app.pipeline.llm.queue-capacity:32}") int queueCapacity,
+                                @Value("${app.pipeline.llm.virtual-threads:true}") boolean virtualThreads,
+                                MeterRegistry meterRegistry) {
+        return buildStageExecutor("llm", threads, queueCapacity, virtualThreads, meterRegistry);
+    }
+
+    private ThreadPoolTaskExecutor buildStageExecutor(String stage, int threads, int queueCapacity, boolean virtualThreads,
+                                                      MeterRegistry meterRegistry) {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(5);   // 核心线程数
-        executor.setMaxPoolSize(10);  // 最大线程数
-        executor.setQueueCapacity(25); // 队列容量
-        executor.setThreadNamePrefix("VideoProcess-");
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("Pipeline-" + stage + "-");
+        executor.setVirtualThreads(virtualThreads);
+        executor.setRejectedExecutionHandler(new BlockingHandoffPolicy(stage, meterRegistry));
         executor.initialize();
+
+        Gauge.builder("pipeline.stage.utilization", executor, e -> (double) e.getActiveCount() / e.getMaxPoolSize())
+                .description("Busy threads divided by the thread limit of a pipeline stage")
+                .tag("stage", stage)
+                .register(meterRegistry);
+        Gauge.builder("pipeline.stage.queue.depth", executor, e -> e.getThreadPoolExecutor().getQueue().size())
+                .description("Tasks waiting in the hand-off queue of a pipeline stage")
+                .tag("stage", stage)
+                .register(meterRegistry);
         return executor;
     }
 }
@@ -0,0 +1,44 @@
+package com.fan.aivideonotes.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流水线阶段之间的“阻塞式交接”拒绝策略。
+ * 当下游阶段的有界队列已满时，不抛出异常，而是让提交任务的上游线程阻塞等待队列腾出空间，
+ * 从而把下游的压力逐级反馈给上游 (backpressure)。阻塞时长会被记录到 pipeline.stage.handoff.wait 指标中。
+ */
+public class BlockingHandoffPolicy implements RejectedExecutionHandler {
+
+    private final String stage;
+    private final Timer handoffWaitTimer;
+
+    public BlockingHandoffPolicy(String stage, MeterRegistry meterRegistry) {
+        this.stage = stage;
+        this.handoffWaitTimer = Timer.builder("pipeline.stage.handoff.wait")
+                .description("Time upstream threads spent blocked waiting for room in a stage queue")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Pipeline stage '" + stage + "' has been shut down.");
+        }
+        long start = System.nanoTime();
+        try {
+            executor.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting to hand off a task to stage '" + stage + "'.", e);
+        } finally {
+            handoffWaitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.fan.aivideonotes.config;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 启动时把 generation_job 的时间列从 timestamp 改为 timestamptz。
+ * 旧的 timestamp 列在 now() (timestamptz) 写入和比较时按各连接的会话 TimeZone (来自各节点的 JVM 时区) 转换，
+ * 时区不同的节点会把彼此的租约看早或看晚几个小时。ddl-auto=update 不会修改已有列的类型，所以旧库需要这一步；
+ * 新库中 Hibernate 直接建成 timestamptz。已有的值按本节点的会话时区解释 (租约最多影响当前正在运行的作业)。
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class GenerationJobTimestampMigration {
+
+    private static final List<String> COLUMNS = List.of("lease_expires_at", "created_at", "updated_at");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public GenerationJobTimestampMigration(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void migrate() {
+        for (String column : COLUMNS) {
+            List<String> types = jdbcTemplate.queryForList(
+                    "SELECT data_type FROM information_schema.columns "
+                            + "WHERE table_schema = current_schema() AND table_name = 'generation_job' AND column_name = ?",
+                    String.class, column);
+            if (!types.isEmpty() && "timestamp without time zone".equals(types.get(0))) {
+                // 多个节点同时执行时，第二次转换是 timestamptz -> timestamptz，不改变数据
+                jdbcTemplate.execute("ALTER TABLE generation_job ALTER COLUMN " + column
+                        + " TYPE timestamptz USING " + column + "::timestamptz");
+                System.out.println("Converted generation_job." + column + " to timestamptz.");
+            }
+        }
+    }
+}
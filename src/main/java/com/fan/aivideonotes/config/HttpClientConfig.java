@@ -0,0 +1,100 @@
+package com.fan.aivideonotes.config;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.transport.ProxyProvider;
+
+import java.time.Duration;
+
+/**
+ * 调用模型提供商 (Gemini 等) 的 HTTP 传输层。
+ * 所有 LLM 请求共用一个基于 reactor-netty 的连接池：连接复用 (keep-alive)、TLS 上通过 ALPN 协商 HTTP/2，
+ * 网络 I/O 由少量 event loop 线程完成，等待响应期间不占用连接池之外的任何资源。
+ * 代理和超时都来自配置 (app.http.*)，不再写死在代码里。
+ */
+@Configuration
+public class HttpClientConfig {
+
+    /**
+     * 传输层配置。proxyHost 为空表示直连。
+     */
+    public record TransportSettings(int maxConnections,
+                                    int pendingAcquireMaxCount,
+                                    Duration pendingAcquireTimeout,
+                                    Duration maxIdleTime,
+                                    Duration maxLifeTime,
+                                    Duration connectTimeout,
+                                    Duration responseTimeout,
+                                    boolean http2,
+                                    String proxyHost,
+                                    int proxyPort) {
+    }
+
+    @Bean
+    public TransportSettings llmTransportSettings(
+            @Value("${app.http.pool.max-connections:200}") int maxConnections,
+            @Value("${app.http.pool.pending-acquire-max-count:1000}") int pendingAcquireMaxCount,
+            @Value("${app.http.pool.pending-acquire-timeout-seconds:60}") long pendingAcquireTimeoutSeconds,
+            @Value("${app.http.pool.max-idle-seconds:30}") long maxIdleSeconds,
+            @Value("${app.http.pool.max-life-seconds:300}") long maxLifeSeconds,
+            @Value("${app.http.connect-timeout-ms:60000}") long connectTimeoutMs,
+            @Value("${app.http.response-timeout-seconds:300}") long responseTimeoutSeconds,
+            @Value("${app.http.http2.enabled:true}") boolean http2,
+            @Value("${app.http.proxy.host:}") String proxyHost,
+            @Value("${app.http.proxy.port:0}") int proxyPort) {
+        return new TransportSettings(maxConnections, pendingAcquireMaxCount,
+                Duration.ofSeconds(pendingAcquireTimeoutSeconds), Duration.ofSeconds(maxIdleSeconds),
+                Duration.ofSeconds(maxLifeSeconds), Duration.ofMillis(connectTimeoutMs),
+                Duration.ofSeconds(responseTimeoutSeconds), http2, proxyHost, proxyPort);
+    }
+
+    // 与 Gemini 的同步、流式接口以及 Files API 共用
+    @Bean
+    public WebClient webClient(WebClient.Builder builder, TransportSettings llmTransportSettings,
+                               @Value("${app.http.max-in-memory-bytes:16777216}") int maxInMemoryBytes) {
+        HttpClient httpClient = buildHttpClient("llm", llmTransportSettings);
+        System.out.println("!!! WebClient is configured with a pooled connection provider: " + llmTransportSettings + " !!!");
+        return builder.clientConnector(new ReactorClientHttpConnector(httpClient))
+                // 一次性读取的响应 (完整的笔记 JSON) 可能超过默认的 256KB 上限
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(maxInMemoryBytes))
+                .build();
+    }
+
+    /**
+     * 按配置创建带连接池的 HttpClient。单独暴露出来，便于压测直接使用同一套配置。
+     */
+    public static HttpClient buildHttpClient(String name, TransportSettings settings) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder(name)
+                .maxConnections(settings.maxConnections())
+                .pendingAcquireMaxCount(settings.pendingAcquireMaxCount())
+                .pendingAcquireTimeout(settings.pendingAcquireTimeout())
+                // 空闲连接在服务端 (或代理) 关闭之前主动回收，避免拿到已断开的连接
+                .maxIdleTime(settings.maxIdleTime())
+                .maxLifeTime(settings.maxLifeTime())
+                .evictInBackground(Duration.ofSeconds(30))
+                .metrics(true)
+                .build();
+
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) settings.connectTimeout().toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(settings.responseTimeout());
+        if (settings.http2()) {
+            // HTTPS 上通过 ALPN 协商，服务端不支持 HTTP/2 (或明文 http://) 时使用 HTTP/1.1
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+        if (settings.proxyHost() != null && !settings.proxyHost().isBlank()) {
+            httpClient = httpClient.proxy(proxy -> proxy.type(ProxyProvider.Proxy.HTTP)
+                    .host(settings.proxyHost())
+                    .port(settings.proxyPort()));
+        }
+        return httpClient;
+    }
+}
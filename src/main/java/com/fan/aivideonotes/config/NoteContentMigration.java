@@ -0,0 +1,153 @@
+package com.fan.aivideonotes.config;
+
+import com.fan.aivideonotes.model.NoteBlock;
+import com.fan.aivideonotes.model.NoteContent;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * 启动时把 note.content 从 TEXT 迁移为 jsonb，并建立知识点术语的 GIN 索引。
+ * ddl-auto=update 只会新建列，不会修改已有列的类型，所以旧库需要这一步；新库中 Hibernate 直接建成 jsonb，只需要建索引。
+ * - 先分批把旧内容解析为 NoteContent 写入临时列 content_jsonb (不锁表，可中断后继续)；无法解析的旧内容作为一个段落保留；
+ * - 最后在一个短事务中锁表，补齐期间新写入的行，删除旧列并把临时列改名为 content；
+ * - 多个节点同时启动时用 advisory lock 保证只有一个节点执行迁移。
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class NoteContentMigration {
+
+    private static final long MIGRATION_LOCK_KEY = 0x6E6F7465_6A736F6EL; // "notejson"
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.notes.migration.batch-size:500}")
+    private int batchSize = 500;
+
+    @Autowired
+    public NoteContentMigration(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void migrate() {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            String columnType = contentColumnType(connection);
+            if (columnType == null) {
+                return null;
+            }
+            if (!"jsonb".equals(columnType)) {
+                migrateWithLock(connection);
+            }
+            createTermIndex(connection);
+            return null;
+        });
+    }
+
+    private void migrateWithLock(Connection connection) throws SQLException {
+        execute(connection, "SELECT pg_advisory_lock(" + MIGRATION_LOCK_KEY + ")");
+        try {
+            // 等锁期间其他节点可能已经完成迁移
+            if ("jsonb".equals(contentColumnType(connection))) {
+                return;
+            }
+            System.out.println("Migrating note.content from TEXT to jsonb...");
+            long start = System.nanoTime();
+            execute(connection, "ALTER TABLE note ADD COLUMN IF NOT EXISTS content_jsonb jsonb");
+            int converted = backfill(connection);
+
+            connection.setAutoCommit(false);
+            try {
+                execute(connection, "LOCK TABLE note IN ACCESS EXCLUSIVE MODE");
+                converted += backfill(connection);
+                execute(connection, "ALTER TABLE note DROP COLUMN content");
+                execute(connection, "ALTER TABLE note RENAME COLUMN content_jsonb TO content");
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            System.out.println("Migrated " + converted + " notes to jsonb in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+        } finally {
+            execute(connection, "SELECT pg_advisory_unlock(" + MIGRATION_LOCK_KEY + ")");
+        }
+    }
+
+    /**
+     * 把 content_jsonb 还为空的行分批转换，返回转换的行数。
+     */
+    private int backfill(Connection connection) throws SQLException {
+        int total = 0;
+        while (true) {
+            int converted = 0;
+            try (PreparedStatement select = connection.prepareStatement(
+                    "SELECT id, content FROM note WHERE content_jsonb IS NULL AND content IS NOT NULL ORDER BY id LIMIT ?");
+                 PreparedStatement update = connection.prepareStatement(
+                         "UPDATE note SET content_jsonb = CAST(? AS jsonb) WHERE id = ?")) {
+                select.setInt(1, batchSize);
+                try (ResultSet rows = select.executeQuery()) {
+                    while (rows.next()) {
+                        update.setString(1, toTypedJson(rows.getLong(1), rows.getString(2)));
+                        update.setLong(2, rows.getLong(1));
+                        update.addBatch();
+                        converted++;
+                    }
+                }
+                if (converted > 0) {
+                    update.executeBatch();
+                }
+            }
+            total += converted;
+            if (converted < batchSize) {
+                return total;
+            }
+        }
+    }
+
+    static String toTypedJson(long noteId, String legacyContent) {
+        try {
+            return NoteContent.fromJson(legacyContent).toJson();
+        } catch (IOException e) {
+            System.err.println("Note " + noteId + " does not contain valid notes JSON, keeping it as a single paragraph.");
+            return new NoteContent(List.of(new NoteBlock(NoteBlock.PARAGRAPH, legacyContent, null))).toJson();
+        }
+    }
+
+    /**
+     * 知识点术语的包含查询 (见 NoteRepository.findByKnowledgePointTerm) 使用的 GIN 索引。
+     * CONCURRENTLY：在已有大量笔记的库上建索引时不阻塞写入。
+     */
+    private void createTermIndex(Connection connection) throws SQLException {
+        execute(connection, "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_note_knowledge_point_terms "
+                + "ON note USING GIN ((content -> 'notes') jsonb_path_ops)");
+    }
+
+    private static String contentColumnType(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT data_type FROM information_schema.columns "
+                        + "WHERE table_schema = current_schema() AND table_name = 'note' AND column_name = 'content'");
+             ResultSet rows = statement.executeQuery()) {
+            return rows.next() ? rows.getString(1) : null;
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
@@ -4,14 +4,11 @@ import com.fan.aivideonotes.controller.dto.NoteDto;
 import com.fan.aivideonotes.controller.dto.TaskResponse;
 import com.fan.aivideonotes.controller.dto.VideoLinkRequest;
 import com.fan.aivideonotes.model.Note;
+import com.fan.aivideonotes.model.NoteBlock;
 import com.fan.aivideonotes.model.Task;
 import com.fan.aivideonotes.repository.NoteRepository;
-import com.fan.aivideonotes.repository.TaskRepository;
 import com.fan.aivideonotes.service.AiInteractionService;
-import com.fan.aivideonotes.service.NoteGenerationService;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fan.aivideonotes.service.job.JobQueueService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -24,23 +21,17 @@ import java.util.*;
 @RequestMapping("/api/notes") // 基础路径保持不变，代表“笔记”相关的操作
 public class NoteController {
 
-    private final NoteGenerationService noteGenerationService;
-    private final TaskRepository taskRepository;
+    private final JobQueueService jobQueueService;
     private final NoteRepository noteRepository;
     private final AiInteractionService aiInteractionService;
-    private final ObjectMapper objectMapper;
 
     @Autowired
-    public NoteController(NoteGenerationService noteGenerationService,
-                          TaskRepository taskRepository,
+    public NoteController(JobQueueService jobQueueService,
                           NoteRepository noteRepository,
-                          AiInteractionService aiInteractionService,
-                          ObjectMapper objectMapper) {
-        this.noteGenerationService = noteGenerationService;
-        this.taskRepository = taskRepository;
+                          AiInteractionService aiInteractionService) {
+        this.jobQueueService = jobQueueService;
         this.noteRepository = noteRepository;
         this.aiInteractionService = aiInteractionService;
-        this.objectMapper = objectMapper;
     }
 
     /**
@@ -58,10 +49,9 @@ public class NoteController {
         task.setId(taskId);
         task.setStatus("PENDING");
         task.setStatusMessage("Task has been queued for processing.");
-        taskRepository.save(task);
 
-        // 调用重构后的 service 方法，直接传递整个 request 对象
-        noteGenerationService.generateNotesForVideo(taskId, request);
+        // 任务和作业在同一个事务中持久化，由任意节点上的 JobWorker 认领执行，JVM 重启也不会丢失
+        jobQueueService.submit(task, request);
 
         return ResponseEntity.ok(new TaskResponse("Note generation task created successfully.", taskId));
     }
@@ -69,16 +59,26 @@ public class NoteController {
     @GetMapping("/{noteId}")
     public ResponseEntity<NoteDto> getNoteById(@PathVariable Long noteId) {
         return noteRepository.findById(noteId)
+                .map(NoteDto::fromNote)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * 查找提到某个知识点术语的笔记 (最新的在前)，走 note.content 上的 GIN 索引。
+     */
+    @GetMapping("/by-term")
+    public ResponseEntity<List<NoteDto>> findNotesByTerm(@RequestParam String term) {
+        List<NoteDto> notes = noteRepository.findByKnowledgePointTerm(term).stream()
                 .map(note -> {
                     NoteDto dto = new NoteDto();
                     dto.setId(note.getId());
                     dto.setVideoUrl(note.getVideoUrl());
-                    dto.setContent(note.getContent());
                     dto.setCreatedAt(note.getCreatedAt());
                     return dto;
                 })
-                .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+                .toList();
+        return ResponseEntity.ok(notes);
     }
 
     // ========================= 【V1.3 新增 API】 =========================
@@ -96,52 +96,43 @@ public class NoteController {
             Note note = noteRepository.findById(noteId)
                     .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Note with ID " + noteId + " not found"));
 
-            String noteJsonContent = note.getContent();
-            JsonNode rootNode = objectMapper.readTree(noteJsonContent);
-            JsonNode notesArrayNode = rootNode.get("notes");
-            List<Map<String, Object>> noteBlocks = objectMapper.convertValue(notesArrayNode, new TypeReference<>() {});
+            // 笔记内容以 jsonb 存储，加载实体时已经是类型化的 NoteBlock，不再 readTree + convertValue
+            List<NoteBlock> noteBlocks = note.getContent() != null ? note.getContent().notes() : List.of();
 
             List<String> termsToExplain = new ArrayList<>();
             StringBuilder contextBuilder = new StringBuilder();
-            for (Map<String, Object> block : noteBlocks) {
-                if ("knowledge_point".equals(block.get("type"))) {
-                    Map<String, String> contentMap = (Map<String, String>) block.get("content");
-                    termsToExplain.add(contentMap.get("term"));
+            for (NoteBlock block : noteBlocks) {
+                if (block.isKnowledgePoint()) {
+                    termsToExplain.add(block.knowledgePoint().term());
                 }
                 // ... 此处上下文构建逻辑不变 ...
             }
             String noteContext = contextBuilder.toString();
 
-            // 为每个术语获取高质量解释，并传入 provider
-            Map<String, String> highQualityExplanations = new HashMap<>();
-            for (String term : termsToExplain) {
-                // 调用重构后的 service 方法
-                String explanation = aiInteractionService.getExplanation(term, null, noteContext, provider);
-                highQualityExplanations.put(term, explanation);
-            }
+            // 批量获取高质量解释：缓存未命中的术语按组合并为少量请求，而不是每个术语一次往返
+            Map<String, String> highQualityExplanations =
+                    aiInteractionService.getExplanations(termsToExplain, noteContext, provider);
 
             // 5. 【核心】用 Java 代码拼接最终的、带 <details> 的 Markdown 字符串
             StringBuilder markdownBuilder = new StringBuilder();
-            for (Map<String, Object> block : noteBlocks) {
-                String type = (String) block.get("type");
-                Object content = block.get("content");
+            for (NoteBlock block : noteBlocks) {
+                String type = block.type() != null ? block.type() : "";
+                String content = block.text();
 
                 switch (type) {
-                    case "heading":
+                    case NoteBlock.HEADING:
                         markdownBuilder.append("## ").append(content).append("\n\n");
                         break;
-                    case "paragraph":
+                    case NoteBlock.PARAGRAPH:
                         markdownBuilder.append(content).append("\n\n");
                         break;
-                    case "list_item":
+                    case NoteBlock.LIST_ITEM:
                         markdownBuilder.append("* ").append(content).append("\n");
                         break;
-                    case "knowledge_point":
-                        if (content instanceof Map) {
-                            @SuppressWarnings("unchecked")
-                            Map<String, String> contentMap = (Map<String, String>) content;
-                            String term = contentMap.get("term");
-                            String shortExplanation = contentMap.get("explanation");
+                    case NoteBlock.KNOWLEDGE_POINT:
+                        if (block.isKnowledgePoint()) {
+                            String term = block.knowledgePoint().term();
+                            String shortExplanation = block.knowledgePoint().explanation();
                             String longExplanation = highQualityExplanations.get(term);
 
                             String detailsHtml = String.format(
@@ -156,7 +147,7 @@ public class NoteController {
                         break;
                 }
             }
-            if (noteBlocks.stream().anyMatch(b -> "list_item".equals(b.get("type")))) {
+            if (noteBlocks.stream().anyMatch(b -> NoteBlock.LIST_ITEM.equals(b.type()))) {
                 markdownBuilder.append("\n");
             }
 
@@ -1,23 +1,60 @@
 package com.fan.aivideonotes.controller;
 
-import com.fan.aivideonotes.model.Note;
+import com.fan.aivideonotes.controller.dto.NoteDto;
+import com.fan.aivideonotes.controller.dto.PartialNoteBlock;
+import com.fan.aivideonotes.controller.dto.TaskEvent;
 import com.fan.aivideonotes.model.Task;
+import com.fan.aivideonotes.repository.NoteRepository;
 import com.fan.aivideonotes.repository.TaskRepository;
+import com.fan.aivideonotes.service.event.TaskEventPublisher;
+import com.fan.aivideonotes.service.job.JobQueueService;
+import com.fan.aivideonotes.service.job.JobWorker;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ScheduledFuture;
 
 @RestController
 @RequestMapping("/api/tasks")
 public class TaskController {
 
     private final TaskRepository taskRepository;
+    private final NoteRepository noteRepository;
+    private final TaskEventPublisher taskEventPublisher;
+    private final TaskScheduler taskScheduler;
+    private final JobQueueService jobQueueService;
+    private final JobWorker jobWorker;
+
+    // SSE 连接的最长保持时间
+    @Value("${app.tasks.events.timeout-ms:1800000}")
+    private long eventStreamTimeoutMs;
+    // 任务不在本节点运行时，回退为按此间隔查询数据库
+    @Value("${app.tasks.events.remote-poll-ms:5000}")
+    private long remotePollIntervalMs;
 
     @Autowired
-    public TaskController(TaskRepository taskRepository) {
+    public TaskController(TaskRepository taskRepository,
+                          NoteRepository noteRepository,
+                          TaskEventPublisher taskEventPublisher,
+                          TaskScheduler taskScheduler,
+                          JobQueueService jobQueueService,
+                          JobWorker jobWorker) {
         this.taskRepository = taskRepository;
+        this.noteRepository = noteRepository;
+        this.taskEventPublisher = taskEventPublisher;
+        this.taskScheduler = taskScheduler;
+        this.jobQueueService = jobQueueService;
+        this.jobWorker = jobWorker;
     }
 
     @GetMapping("/{taskId}/status")
@@ -27,6 +64,62 @@ public class TaskController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * 取消任务。排队中的任务不会再被处理；正在本节点运行的任务会立即杀掉其 yt-dlp/ffmpeg 进程并释放并发名额，
+     * 在其他节点运行的任务会在该节点下次续约时停止。
+     * 返回 202 表示已取消，404 表示任务不存在，409 表示任务已经结束。
+     */
+    @DeleteMapping("/{taskId}")
+    public ResponseEntity<Void> cancelTask(@PathVariable String taskId) {
+        return switch (jobQueueService.cancel(taskId)) {
+            case NOT_FOUND -> ResponseEntity.notFound().build();
+            case ALREADY_FINISHED -> ResponseEntity.status(HttpStatus.CONFLICT).build();
+            case CANCELLED -> {
+                jobWorker.cancel(taskId);
+                yield ResponseEntity.accepted().build();
+            }
+        };
+    }
+
+    /**
+     * 以 text/event-stream 的形式推送任务的每一次状态变化，任务结束 (COMPLETED/FAILED) 后关闭连接。
+     * 任务在本节点运行时，事件来自进程内的 TaskEventPublisher，不读数据库；
+     * 任务在其他节点运行 (或还在队列中) 时，回退为低频查询数据库，状态有变化才推送。
+     * 事件类型：status (状态变化)、partial (流式生成出的笔记块)、partial_reset (之前的部分结果作废)。
+     */
+    @GetMapping(value = "/{taskId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamTaskEvents(@PathVariable String taskId) {
+        Optional<TaskEvent> initialEvent = taskEventPublisher.latest(taskId)
+                .or(() -> taskRepository.findById(taskId).map(TaskEvent::fromTask));
+        if (initialEvent.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        TaskEventStream stream = new TaskEventStream(taskId, new SseEmitter(eventStreamTimeoutMs));
+        if (!stream.sendStatus(initialEvent.get()) || initialEvent.get().isTerminal()) {
+            stream.emitter.complete();
+            return ResponseEntity.ok(stream.emitter);
+        }
+
+        Runnable unsubscribe = taskEventPublisher.subscribe(taskId, stream);
+        stream.catchUpPartialBlocks();
+        ScheduledFuture<?> remotePoll = taskScheduler.scheduleWithFixedDelay(() -> {
+            if (taskEventPublisher.latest(taskId).isPresent()) {
+                return; // 任务正在本节点运行，事件会被直接推送
+            }
+            taskRepository.findById(taskId).map(TaskEvent::fromTask).ifPresent(stream::onStatus);
+        }, Duration.ofMillis(remotePollIntervalMs));
+
+        Runnable cleanup = () -> {
+            unsubscribe.run();
+            remotePoll.cancel(false);
+        };
+        stream.emitter.onCompletion(cleanup);
+        stream.emitter.onTimeout(cleanup);
+        stream.emitter.onError(error -> cleanup.run());
+        return ResponseEntity.ok(stream.emitter);
+    }
+
     @GetMapping("/{taskId}/result")
     public ResponseEntity<Object> getTaskResult(@PathVariable String taskId) {
         // 1. 先从数据库查找 Task
@@ -43,11 +136,87 @@ public class TaskController {
 
         // 4. 根据 Task 的状态，决定返回什么内容
         if ("COMPLETED".equals(task.getStatus()) && task.getResultNote() != null) {
-            // 如果已完成，返回 Note
-            return ResponseEntity.ok(task.getResultNote());
+            // 如果已完成，返回笔记。resultNote 是懒加载的代理，且 open-in-view 已关闭，查询 Task 的会话此时已经关闭，
+            // 不能再初始化它；只取 ID (不会触发加载)，另起一次查询读出笔记，并以 DTO 返回
+            return noteRepository.findById(task.getResultNote().getId())
+                    .<ResponseEntity<Object>>map(note -> ResponseEntity.ok(NoteDto.fromNote(note)))
+                    .orElse(ResponseEntity.notFound().build());
         } else {
             // 如果未完成或失败，返回 Task 状态本身
             return ResponseEntity.ok(task);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 一个 SSE 连接。状态事件与上一次发送的内容相同时跳过；部分笔记块严格按 index 顺序发送，不重复也不遗漏。
+     */
+    private final class TaskEventStream implements TaskEventPublisher.Listener {
+
+        private final String taskId;
+        private final SseEmitter emitter;
+        private TaskEvent lastSent;
+        private int nextPartialIndex = 0;
+
+        private TaskEventStream(String taskId, SseEmitter emitter) {
+            this.taskId = taskId;
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void onStatus(TaskEvent event) {
+            if (sendStatus(event) && event.isTerminal()) {
+                emitter.complete();
+            }
+        }
+
+        @Override
+        public void onPartialBlock(PartialNoteBlock block) {
+            catchUpPartialBlocks();
+        }
+
+        @Override
+        public synchronized void onPartialReset(String ignored) {
+            nextPartialIndex = 0;
+            send(SseEmitter.event().name("partial_reset").data(taskId));
+        }
+
+        /**
+         * 把发布者中尚未发送的部分笔记块按顺序补发出去。
+         */
+        private synchronized void catchUpPartialBlocks() {
+            for (PartialNoteBlock block : taskEventPublisher.partialBlocks(taskId)) {
+                if (block.index() < nextPartialIndex) {
+                    continue;
+                }
+                if (!send(SseEmitter.event().name("partial").data(block, MediaType.APPLICATION_JSON))) {
+                    return;
+                }
+                nextPartialIndex = block.index() + 1;
+            }
+        }
+
+        /**
+         * @return 连接是否仍然可用
+         */
+        private synchronized boolean sendStatus(TaskEvent event) {
+            if (Objects.equals(lastSent, event)) {
+                return true;
+            }
+            if (!send(SseEmitter.event().name("status").data(event, MediaType.APPLICATION_JSON))) {
+                return false;
+            }
+            lastSent = event;
+            return true;
+        }
+
+        private boolean send(SseEmitter.SseEventBuilder event) {
+            try {
+                emitter.send(event);
+                return true;
+            } catch (IOException | IllegalStateException e) {
+                // 客户端已断开或连接已结束
+                return false;
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.fan.aivideonotes.controller.dto;
 
+import com.fan.aivideonotes.model.Note;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import lombok.Data;
 import java.time.LocalDateTime;
@@ -11,4 +12,16 @@ public class NoteDto {
     private String content; // 未来可以是一个结构化的 NoteContent 对象
     @JsonFormat(pattern="yyyy-MM-dd HH:mm:ss")
     private LocalDateTime createdAt;
+
+    /**
+     * content 序列化为 JSON 字符串 ({"notes": [...]})，前端直接 JSON.parse。
+     */
+    public static NoteDto fromNote(Note note) {
+        NoteDto dto = new NoteDto();
+        dto.setId(note.getId());
+        dto.setVideoUrl(note.getVideoUrl());
+        dto.setContent(note.getContent() != null ? note.getContent().toJson() : null);
+        dto.setCreatedAt(note.getCreatedAt());
+        return dto;
+    }
 }
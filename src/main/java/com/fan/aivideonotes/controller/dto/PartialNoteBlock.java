@@ -0,0 +1,9 @@
+package com.fan.aivideonotes.controller.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * 流式生成过程中已经完整解析出的一个笔记块，index 为它在最终笔记中的位置。
+ */
+public record PartialNoteBlock(String taskId, int index, JsonNode block) {
+}
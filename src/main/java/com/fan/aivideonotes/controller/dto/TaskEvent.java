@@ -0,0 +1,23 @@
+package com.fan.aivideonotes.controller.dto;
+
+import com.fan.aivideonotes.model.Task;
+
+/**
+ * 通过 SSE 推送给前端的任务事件。
+ * 每次状态/阶段变化都会推送一次；任务完成时 noteId 为生成的笔记 ID。
+ * 下载/转码阶段还会周期性推送进度 (progressPercent 等)，无法得知时为 null。
+ */
+public record TaskEvent(String taskId, String status, String message, String cacheStatus, Long noteId,
+                        Double progressPercent, Double progressBytesPerSecond, Long progressEtaSeconds) {
+
+    public static TaskEvent fromTask(Task task) {
+        // resultNote 是懒加载的，这里只取 ID，不会触发笔记内容的加载
+        Long noteId = task.getResultNote() != null ? task.getResultNote().getId() : null;
+        return new TaskEvent(task.getId(), task.getStatus(), task.getStatusMessage(), task.getCacheStatus(), noteId,
+                task.getProgressPercent(), task.getProgressBytesPerSecond(), task.getProgressEtaSeconds());
+    }
+
+    public boolean isTerminal() {
+        return "COMPLETED".equals(status) || "FAILED".equals(status) || "CANCELLED".equals(status);
+    }
+}
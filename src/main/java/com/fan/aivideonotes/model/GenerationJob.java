@@ -0,0 +1,52 @@
+package com.fan.aivideonotes.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.OffsetDateTime;
+
+/**
+ * 持久化在 PostgreSQL 中的笔记生成作业。
+ * 作业 ID 与 Task ID 相同；任意节点上的 JobWorker 通过 FOR UPDATE SKIP LOCKED 认领作业，
+ * 并在处理期间持续续约 (leaseExpiresAt)。租约过期的作业会被其他节点重新认领。
+ * 时间列都是 timestamptz (OffsetDateTime)：租约由数据库的 now() 写入和比较，不能受各节点 JVM 时区 (会话 TimeZone) 的影响。
+ */
+@Data
+@Entity
+@Table(name = "generation_job", indexes = @Index(name = "idx_generation_job_state", columnList = "state, createdAt"))
+public class GenerationJob {
+
+    public static final String STATE_QUEUED = "QUEUED";
+    public static final String STATE_RUNNING = "RUNNING";
+    public static final String STATE_DONE = "DONE";
+    public static final String STATE_FAILED = "FAILED";
+    public static final String STATE_CANCELLED = "CANCELLED";
+
+    @Id
+    private String id;
+
+    // 序列化后的 VideoLinkRequest (不含用户的 API Key)
+    @Lob
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String payload;
+
+    @Column(nullable = false, length = 16)
+    private String state;
+
+    // 当前持有租约的节点 ID
+    private String leaseOwner;
+
+    private OffsetDateTime leaseExpiresAt;
+
+    private int attempts;
+
+    private OffsetDateTime createdAt;
+
+    private OffsetDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = OffsetDateTime.now();
+        updatedAt = createdAt;
+    }
+}
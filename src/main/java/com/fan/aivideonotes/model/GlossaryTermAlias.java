@@ -0,0 +1,41 @@
+package com.fan.aivideonotes.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 术语别名：把写法不同但指同一概念的术语 (如 "SpringBoot"、"Spring Boot框架") 指向已有的规范术语，
+ * 解释时直接复用规范术语的 GlossaryTerm，不再单独调用 LLM 和新建一行。由 GlossaryTermIndex 在匹配成功时写入。
+ */
+@Data
+@Entity
+@Table(name = "glossary_term_alias")
+public class GlossaryTermAlias {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(unique = true, nullable = false, length = 255)
+    private String alias;
+
+    // 对应 GlossaryTerm.term
+    @Column(nullable = false, length = 255)
+    private String canonicalTerm;
+
+    // 匹配方式：normalized (规范化后完全相同) 或 similar (字符 n-gram 相似度达到阈值)
+    @Column(nullable = false, length = 16)
+    private String matchType;
+
+    // 匹配时的 Jaccard 相似度
+    private double similarity;
+
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -1,13 +1,17 @@
 package com.fan.aivideonotes.model;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import io.hypersistence.utils.hibernate.type.json.JsonType;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.Type;
 
 import java.time.LocalDateTime;
 
 @Data
 @Entity
+@Table(indexes = @Index(name = "idx_note_cache_key", columnList = "cacheKey"))
 public class Note {
 
     @Id
@@ -17,15 +21,19 @@ public class Note {
     private Long userId; // 建议保留，为未来的用户系统做准备
     private String videoUrl;
 
+    // 规范化链接 + 生成模式 + 模型提供商，用于复用相同视频的笔记 (见 NoteCacheService)
+    @Column(length = 512)
+    private String cacheKey;
+
     /**
-     * 【核心修改】
-     * 现在这个字段将存储由AI生成的、代表笔记结构的完整JSON字符串。
-     * 例如：'{"notes": [{"type": "heading", "content": "..."}, ...]}'
-     * 注解 @Lob 和 @Column(columnDefinition = "TEXT") 保持不变，非常适合存储长文本/JSON。
+     * 由AI生成的、代表笔记结构的内容，以 jsonb 存储：{"notes": [{"type": "heading", "content": "..."}, ...]}。
+     * 导出和解释直接读取类型化的 NoteBlock，不再每次解析字符串；knowledge_point 术语上有 GIN 索引 (见 NoteContentMigration)。
+     * API 响应中仍序列化为 JSON 字符串，兼容浏览器插件。
      */
-    @Lob
-    @Column(columnDefinition = "TEXT")
-    private String content;
+    @Type(JsonType.class)
+    @Column(columnDefinition = "jsonb")
+    @JsonSerialize(using = NoteContent.AsJsonString.class)
+    private NoteContent content;
 
     @JsonFormat(pattern="yyyy-MM-dd HH:mm:ss")
     private LocalDateTime createdAt;
@@ -0,0 +1,62 @@
+package com.fan.aivideonotes.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 笔记中的一个块。JSON 形式与模型输出保持一致：{"type": "heading", "content": "..."}，
+ * knowledge_point 的 content 是 {"term": "...", "explanation": "..."}。
+ *
+ * @param type           heading / paragraph / list_item / knowledge_point (其他类型原样保留)
+ * @param text           文本块的内容
+ * @param knowledgePoint 知识点块的内容；content 是对象时才有值
+ */
+public record NoteBlock(String type, String text, KnowledgePoint knowledgePoint) {
+
+    public static final String HEADING = "heading";
+    public static final String PARAGRAPH = "paragraph";
+    public static final String LIST_ITEM = "list_item";
+    public static final String KNOWLEDGE_POINT = "knowledge_point";
+
+    public record KnowledgePoint(String term, String explanation) {
+    }
+
+    @JsonCreator
+    public static NoteBlock fromJson(@JsonProperty("type") String type, @JsonProperty("content") JsonNode content) {
+        if (content != null && content.isObject()) {
+            return new NoteBlock(type, null, new KnowledgePoint(textOf(content.get("term")), textOf(content.get("explanation"))));
+        }
+        return new NoteBlock(type, textOf(content), null);
+    }
+
+    @JsonValue
+    public Map<String, Object> toJson() {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("type", type);
+        if (knowledgePoint != null) {
+            Map<String, String> content = new LinkedHashMap<>();
+            content.put("term", knowledgePoint.term());
+            content.put("explanation", knowledgePoint.explanation());
+            json.put("content", content);
+        } else {
+            json.put("content", text);
+        }
+        return json;
+    }
+
+    public boolean isKnowledgePoint() {
+        return KNOWLEDGE_POINT.equals(type) && knowledgePoint != null;
+    }
+
+    private static String textOf(JsonNode node) {
+        if (node == null || node.isNull()) {
+            return null;
+        }
+        return node.isValueNode() ? node.asText() : node.toString();
+    }
+}
@@ -0,0 +1,67 @@
+package com.fan.aivideonotes.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 结构化的笔记内容 {"notes": [...]}，以 jsonb 存在 note.content 中。
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record NoteContent(@JsonProperty("notes") List<NoteBlock> notes) {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public NoteContent {
+        notes = notes == null ? List.of() : notes.stream().filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * 解析 {"notes": [...]} 形式的笔记 JSON (NotesJsonNormalizer 的输出)。
+     */
+    public static NoteContent fromJson(String json) throws IOException {
+        return MAPPER.readValue(json, NoteContent.class);
+    }
+
+    public String toJson() {
+        try {
+            return MAPPER.writeValueAsString(this);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize note content", e);
+        }
+    }
+
+    /**
+     * 所有知识点术语，按出现顺序去重。
+     */
+    public List<String> knowledgePointTerms() {
+        Set<String> terms = new LinkedHashSet<>();
+        for (NoteBlock block : notes) {
+            if (block.isKnowledgePoint() && block.knowledgePoint().term() != null && !block.knowledgePoint().term().isBlank()) {
+                terms.add(block.knowledgePoint().term());
+            }
+        }
+        return new ArrayList<>(terms);
+    }
+
+    /**
+     * 在 API 响应中把内容写成 JSON 字符串 (与改为 jsonb 之前的格式相同，浏览器插件用 JSON.parse(note.content) 读取)。
+     */
+    public static class AsJsonString extends JsonSerializer<NoteContent> {
+        @Override
+        public void serialize(NoteContent value, JsonGenerator generator, SerializerProvider serializers) throws IOException {
+            generator.writeString(value.toJson());
+        }
+    }
+}
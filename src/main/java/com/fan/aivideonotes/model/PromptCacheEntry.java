@@ -0,0 +1,40 @@
+package com.fan.aivideonotes.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 提示词级别的 LLM 回复缓存 (PromptResponseCache 的持久层)，重启后和其他节点都能复用。
+ * 键是 provider + model + 提示词的 SHA-256，不保存提示词本身。
+ */
+@Data
+@Entity
+@Table(name = "llm_prompt_cache", indexes = @Index(name = "idx_llm_prompt_cache_expires", columnList = "expiresAt"))
+public class PromptCacheEntry {
+
+    @Id
+    @Column(length = 64)
+    private String cacheKey;
+
+    @Column(nullable = false, length = 32)
+    private String provider;
+
+    @Column(nullable = false, length = 128)
+    private String model;
+
+    @Lob
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String response;
+
+    // 生成这条回复时的提示词长度和耗时，命中时用于统计省下的开销
+    private int promptChars;
+
+    private long latencyMillis;
+
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -10,15 +10,30 @@ public class Task {
     @Id
     private String id; // 我们将使用前端生成的 UUID 作为主键
 
-    private String status; // 例如: PENDING, PROCESSING, COMPLETED, FAILED
+    private String status; // 例如: PENDING, PROCESSING, COMPLETED, FAILED, CANCELLED
 
     @Lob
     @Column(columnDefinition = "TEXT")
     private String statusMessage; // 用于存放更详细的状态信息或错误信息
 
+    // 笔记缓存的命中情况: MISS (完整执行了管线), HIT (直接复用已有笔记), COALESCED (挂在同一视频正在运行的管线上)
+    private String cacheStatus;
+
+    // 音频预处理的结果，用于对比不同配置下的上传体积和模型耗时
+    private String audioProfile;         // 使用的预处理配置, e.g., "speech-opus@1.25x"
+    private Long audioBytes;             // 交给 LLM 的音频总字节数
+    private Double audioDurationSeconds; // 预处理后的音频时长 (秒)
+    private Long llmLatencyMs;           // LLM 阶段 (含上传) 的耗时 (毫秒)
+
+    // 当前阶段 (下载/转码) 的实时进度，来自 yt-dlp / ffmpeg 的输出；无法得知或阶段切换后为 null
+    private Double progressPercent;        // 完成百分比 (0 ~ 100)
+    private Double progressBytesPerSecond; // 下载速度 (字节/秒)
+    private Long progressEtaSeconds;       // 预计剩余秒数
+
     // 关键：建立与 Note 实体的“一对一”关联
     // fetch = FetchType.LAZY 表示在查询 Task 时，不立即加载 Note，提升性能
-    @OneToOne(fetch = FetchType.EAGER)
+    // (状态查询/SSE 只需要笔记 ID，不应每次都把笔记的 TEXT 内容一起读出来)
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "note_id") // 在 task 表里创建一个外键列 note_id
     private Note resultNote;
 }
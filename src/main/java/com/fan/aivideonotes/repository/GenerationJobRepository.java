@@ -0,0 +1,72 @@
+package com.fan.aivideonotes.repository;
+
+import com.fan.aivideonotes.model.GenerationJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface GenerationJobRepository extends JpaRepository<GenerationJob, String> {
+
+    // 锁定一批可认领的作业：排队中的，或租约已过期的 (持有者节点已宕机)。
+    // SKIP LOCKED 保证多个节点并发认领时互不阻塞，也不会拿到同一行。
+    @Query(value = """
+            SELECT id FROM generation_job
+            WHERE state = 'QUEUED'
+               OR (state = 'RUNNING' AND lease_expires_at < now())
+            ORDER BY created_at
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<String> lockClaimableIds(@Param("limit") int limit);
+
+    // 时间统一取数据库的 now()，避免各节点之间的时钟偏差影响租约判断
+    @Modifying
+    @Query(value = """
+            UPDATE generation_job
+            SET state = 'RUNNING', lease_owner = :owner,
+                lease_expires_at = now() + (:leaseSeconds * interval '1 second'),
+                attempts = attempts + 1, updated_at = now()
+            WHERE id IN (:ids)
+            """, nativeQuery = true)
+    int markClaimed(@Param("ids") Collection<String> ids, @Param("owner") String owner, @Param("leaseSeconds") int leaseSeconds);
+
+    @Modifying
+    @Query(value = """
+            UPDATE generation_job
+            SET lease_expires_at = now() + (:leaseSeconds * interval '1 second'), updated_at = now()
+            WHERE id = :id AND lease_owner = :owner AND state = 'RUNNING'
+            """, nativeQuery = true)
+    int renewLease(@Param("id") String id, @Param("owner") String owner, @Param("leaseSeconds") int leaseSeconds);
+
+    // 只有仍持有租约的节点才能结束作业
+    @Modifying
+    @Query(value = """
+            UPDATE generation_job
+            SET state = :state, lease_owner = NULL, lease_expires_at = NULL, updated_at = now()
+            WHERE id = :id AND lease_owner = :owner AND state = 'RUNNING'
+            """, nativeQuery = true)
+    int finish(@Param("id") String id, @Param("owner") String owner, @Param("state") String state);
+
+    // 取消排队中或运行中的作业。运行中作业的持有者会在下次续约失败时停止处理
+    @Modifying
+    @Query(value = """
+            UPDATE generation_job
+            SET state = 'CANCELLED', lease_owner = NULL, lease_expires_at = NULL, updated_at = now()
+            WHERE id = :id AND state IN ('QUEUED', 'RUNNING')
+            """, nativeQuery = true)
+    int cancel(@Param("id") String id);
+
+    // 优雅停机时把尚未完成的作业交还队列，让其他节点立即接手 (不计入失败次数)
+    @Modifying
+    @Query(value = """
+            UPDATE generation_job
+            SET state = 'QUEUED', lease_owner = NULL, lease_expires_at = NULL,
+                attempts = GREATEST(attempts - 1, 0), updated_at = now()
+            WHERE id = :id AND lease_owner = :owner AND state = 'RUNNING'
+            """, nativeQuery = true)
+    int release(@Param("id") String id, @Param("owner") String owner);
+}
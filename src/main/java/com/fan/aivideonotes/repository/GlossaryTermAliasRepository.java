@@ -0,0 +1,24 @@
+package com.fan.aivideonotes.repository;
+
+import com.fan.aivideonotes.model.GlossaryTermAlias;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface GlossaryTermAliasRepository extends JpaRepository<GlossaryTermAlias, Long> {
+
+    // 记录别名；别名已存在时保留原来的映射 (多个节点同时匹配到同一别名时不会违反唯一约束)
+    @Modifying
+    @Transactional
+    @Query(value = """
+            INSERT INTO glossary_term_alias (alias, canonical_term, match_type, similarity, created_at)
+            VALUES (:alias, :canonicalTerm, :matchType, :similarity, now())
+            ON CONFLICT (alias) DO NOTHING
+            """, nativeQuery = true)
+    int insertIfAbsent(@Param("alias") String alias,
+                       @Param("canonicalTerm") String canonicalTerm,
+                       @Param("matchType") String matchType,
+                       @Param("similarity") double similarity);
+}
@@ -2,10 +2,38 @@ package com.fan.aivideonotes.repository;
 
 import com.fan.aivideonotes.model.GlossaryTerm;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface GlossaryTermRepository extends JpaRepository<GlossaryTerm, Long> {
 
     // 根据术语名称精确查找
     Optional<GlossaryTerm> findByTerm(String term);
-}
\ No newline at end of file
+
+    // 批量查找 (导出笔记时一次取出所有术语)
+    List<GlossaryTerm> findByTermIn(Collection<String> terms);
+
+    // 只取术语名称，按创建顺序 (用于构建 GlossaryTermIndex，先出现的术语作为规范术语)
+    @Query("SELECT g.term FROM GlossaryTerm g ORDER BY g.id")
+    List<String> findAllTerms();
+
+    // 原子地插入或更新长解释，自带一个很短的事务。并发生成同一个术语时后写入的覆盖先写入的，不会违反唯一约束；
+    // 简短解释只在首次插入时写入
+    @Modifying
+    @Transactional
+    @Query(value = """
+            INSERT INTO glossary_term (term, short_explanation, long_explanation)
+            VALUES (:term, :shortExplanation, :longExplanation)
+            ON CONFLICT (term) DO UPDATE
+            SET long_explanation = EXCLUDED.long_explanation,
+                short_explanation = COALESCE(glossary_term.short_explanation, EXCLUDED.short_explanation)
+            """, nativeQuery = true)
+    int upsertExplanation(@Param("term") String term,
+                          @Param("shortExplanation") String shortExplanation,
+                          @Param("longExplanation") String longExplanation);
+}
@@ -2,7 +2,25 @@ package com.fan.aivideonotes.repository;
 
 import com.fan.aivideonotes.model.Note;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
 
 public interface NoteRepository extends JpaRepository<Note, Long> {
 
+    // 根据缓存键查找最近一次生成的笔记，用于复用相同视频的结果
+    Optional<Note> findFirstByCacheKeyOrderByCreatedAtDesc(String cacheKey);
+
+    // 查找包含某个知识点术语的笔记 (最多 100 条，最新的在前)。
+    // 条件写成对 content -> 'notes' 的 @> 包含查询，才能用上 idx_note_knowledge_point_terms (GIN, jsonb_path_ops)
+    @Query(value = """
+            SELECT * FROM note
+            WHERE content -> 'notes' @> jsonb_build_array(jsonb_build_object(
+                    'type', 'knowledge_point', 'content', jsonb_build_object('term', CAST(:term AS text))))
+            ORDER BY created_at DESC
+            LIMIT 100
+            """, nativeQuery = true)
+    List<Note> findByKnowledgePointTerm(@Param("term") String term);
 }
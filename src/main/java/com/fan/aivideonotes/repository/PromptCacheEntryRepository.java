@@ -0,0 +1,40 @@
+package com.fan.aivideonotes.repository;
+
+import com.fan.aivideonotes.model.PromptCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+public interface PromptCacheEntryRepository extends JpaRepository<PromptCacheEntry, String> {
+
+    // 写入或覆盖一条缓存 (并发写同一个键时后写入的覆盖先写入的)
+    @Modifying
+    @Transactional
+    @Query(value = """
+            INSERT INTO llm_prompt_cache (cache_key, provider, model, response, prompt_chars, latency_millis, created_at, expires_at)
+            VALUES (:cacheKey, :provider, :model, :response, :promptChars, :latencyMillis, now(), :expiresAt)
+            ON CONFLICT (cache_key) DO UPDATE
+            SET response = EXCLUDED.response,
+                prompt_chars = EXCLUDED.prompt_chars,
+                latency_millis = EXCLUDED.latency_millis,
+                created_at = EXCLUDED.created_at,
+                expires_at = EXCLUDED.expires_at
+            """, nativeQuery = true)
+    int upsert(@Param("cacheKey") String cacheKey,
+               @Param("provider") String provider,
+               @Param("model") String model,
+               @Param("response") String response,
+               @Param("promptChars") int promptChars,
+               @Param("latencyMillis") long latencyMillis,
+               @Param("expiresAt") LocalDateTime expiresAt);
+
+    // 清理过期条目
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM PromptCacheEntry e WHERE e.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -2,12 +2,38 @@ package com.fan.aivideonotes.service;
 
 import com.fan.aivideonotes.model.GlossaryTerm;
 import com.fan.aivideonotes.repository.GlossaryTermRepository;
+import com.fan.aivideonotes.service.cache.GlossaryNearCache;
+import com.fan.aivideonotes.service.cache.GlossaryTermIndex;
+import com.fan.aivideonotes.service.cache.GlossaryTermNormalizer;
 import com.fan.aivideonotes.service.llm.LLMService; // 【注意】导入新的接口
+import com.fan.aivideonotes.service.llm.PromptCachePolicy;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class AiInteractionService {
@@ -15,12 +41,33 @@ public class AiInteractionService {
     // 注入新的 LLMServiceProvider
     private final LLMServiceProvider llmServiceProvider;
     private final GlossaryTermRepository glossaryRepository;
+    private final ObjectMapper objectMapper;
+    private final GlossaryNearCache glossaryCache;
+    private final GlossaryTermIndex termIndex;
+
+    // 批量解释时每次请求包含的术语数
+    @Value("${app.explain.batch-size:10}")
+    private int batchSize = 10;
+    // 同时在途的解释请求数上限，以及整个导出等待解释的截止时间 (秒)
+    @Value("${app.explain.max-concurrency:4}")
+    private int maxConcurrency = 4;
+    @Value("${app.explain.deadline-seconds:90}")
+    private long deadlineSeconds = 90;
+    // 解释类提示词在提示词缓存中的有效期 (小时)：同一术语 + 上下文的解释很少变化，比默认 TTL 更长
+    @Value("${app.explain.prompt-cache-ttl-hours:168}")
+    private long promptCacheTtlHours = 168;
 
     @Autowired
     public AiInteractionService(LLMServiceProvider llmServiceProvider,
-                                GlossaryTermRepository glossaryRepository) {
+                                GlossaryTermRepository glossaryRepository,
+                                ObjectMapper objectMapper,
+                                GlossaryNearCache glossaryCache,
+                                GlossaryTermIndex termIndex) {
         this.llmServiceProvider = llmServiceProvider;
         this.glossaryRepository = glossaryRepository;
+        this.objectMapper = objectMapper;
+        this.glossaryCache = glossaryCache;
+        this.termIndex = termIndex;
     }
 
     /**
@@ -28,47 +75,266 @@ public class AiInteractionService {
      * 获取术语的深度解释，实现“缓存优先”策略。
      * 此方法现在通过 LLMServiceProvider 动态选择 AI 模型。
      *
-     * @param term             要解释的术语
+     * @param requestedTerm    要解释的术语 (近似重复的写法会解析为已有的规范术语)
      * @param shortExplanation 术语的简短解释 (用于首次存储)
      * @param context          笔记上下文
      * @param providerKey      用户选择的模型提供商 (e.g., "GEMINI", "KIMI")
      * @return 高质量的深度解释字符串
      */
-    @Transactional
-    public String getExplanation(String term, String shortExplanation, String context, String providerKey) {
-        // 1. 先尝试从数据库中查找
-        Optional<GlossaryTerm> existingTermOpt = glossaryRepository.findByTerm(term);
-
-        GlossaryTerm termEntity;
-
-        // 【核心修正逻辑】
-        if (existingTermOpt.isPresent()) {
-            termEntity = existingTermOpt.get();
-            // 如果已经存在，并且已经有长解释了，直接返回，不再执行后续操作
-            if (termEntity.getLongExplanation() != null && !termEntity.getLongExplanation().isBlank()) {
-                System.out.println("CACHE HIT: Found explanation for '" + term + "' in database.");
-                return termEntity.getLongExplanation();
+    // 【注意】这里故意不加 @Transactional：LLM 调用可能持续几十秒，不能在此期间占着事务和连接池里的连接。
+    // 查询和写回各自是一个很短的事务，写回用 upsert，两个请求同时生成同一个术语时不会违反唯一约束。
+    public String getExplanation(String requestedTerm, String shortExplanation, String context, String providerKey) {
+        // 0. 近似重复的写法 ("SpringBoot"、"Spring Boot框架") 解析到已有的规范术语，复用它的解释
+        String term = termIndex.resolve(requestedTerm);
+
+        // 1. 先查进程内近端缓存，未命中时查数据库 (“没有长解释”也会被短暂缓存)
+        Optional<String> cached = glossaryCache.get(term);
+        if (cached.isPresent()) {
+            System.out.println("CACHE HIT: Found explanation for '" + term + "'.");
+            return cached.get();
+        }
+
+        // 2. 如果代码能执行到这里，说明需要调用 AI 生成 (不在任何事务中)。
+        // 同一术语的并发请求只生成一次，其余请求等待同一个结果
+        return glossaryCache.generateOnce(term, () -> {
+            System.out.println("CACHE MISS or EXPLANATION NEEDED: Generating new explanation for '" + term + "' via AI.");
+            String prompt = buildPrompt(term, context);
+
+            LLMService selectedLlmService = llmServiceProvider.getProvider(providerKey);
+            String longExplanation = selectedLlmService.generateTextResponse(prompt, promptCachePolicy());
+
+            // 3. 原子地写回：术语不存在时插入，已存在时更新长解释 (简短解释只在首次存储时写入)
+            glossaryRepository.upsertExplanation(term, shortExplanation, longExplanation);
+            termIndex.register(term);
+            System.out.println("SAVED/UPDATED: Explanation for '" + term + "' has been saved to the database.");
+            return longExplanation;
+        });
+    }
+
+    /**
+     * 批量获取多个术语的深度解释 (导出笔记时使用)。
+     * 数据库中已有长解释的术语直接返回；其余术语每 batchSize 个合并为一次请求，要求模型返回 {术语: 解释} 的 JSON，
+     * 拆分后逐个存入 GlossaryTerm。批量结果中缺失或格式不对的术语 (以及整批失败时的所有术语) 再单独走 getExplanation。
+     * 各组请求和单独重试都在虚拟线程上并发执行 (最多 maxConcurrency 个同时在途)，整体不超过 deadlineSeconds。
+     * 单个术语最终仍然失败或超时时不抛异常，结果中不包含该术语，由调用方显示占位文本。
+     * 近似重复的术语先解析为规范术语 (见 GlossaryTermIndex)，同一规范术语只查询和生成一次。
+     *
+     * @return 术语 -> 深度解释，保持 terms 的顺序
+     */
+    public Map<String, String> getExplanations(List<String> terms, String context, String providerKey) {
+        Set<String> uniqueTerms = new LinkedHashSet<>();
+        for (String term : terms) {
+            if (term != null && !term.isBlank()) {
+                uniqueTerms.add(term);
             }
-        } else {
-            // 如果不存在，创建一个新的实例
-            termEntity = new GlossaryTerm();
-            termEntity.setTerm(term);
-            termEntity.setShortExplanation(shortExplanation);
+        }
+        Map<String, String> explanations = new ConcurrentHashMap<>();
+        if (uniqueTerms.isEmpty()) {
+            return Map.of();
+        }
+
+        // 0. 解析规范术语；同一次导出中都还没入库的近似写法 (如 "SpringBoot" 和 "Spring Boot") 按规范化形式合并
+        Map<String, String> canonicalOf = new HashMap<>();
+        Map<String, String> byNormalized = new HashMap<>();
+        Set<String> canonicalTerms = new LinkedHashSet<>();
+        for (String term : uniqueTerms) {
+            String resolved = termIndex.resolve(term);
+            String normalized = GlossaryTermNormalizer.normalize(resolved);
+            String canonical = normalized.isEmpty() ? resolved : byNormalized.computeIfAbsent(normalized, key -> resolved);
+            canonicalOf.put(term, canonical);
+            canonicalTerms.add(canonical);
         }
 
-        // 2. 如果代码能执行到这里，说明需要调用 AI 生成
-        System.out.println("CACHE MISS or EXPLANATION NEEDED: Generating new explanation for '" + term + "' via AI.");
-        String prompt = buildPrompt(term, context);
+        // 1. 先查近端缓存，其余术语一次查询从数据库取出，并回填缓存
+        List<String> notCached = new ArrayList<>();
+        for (String term : canonicalTerms) {
+            glossaryCache.peek(term).ifPresentOrElse(explanation -> explanations.put(term, explanation), () -> notCached.add(term));
+        }
+        Map<String, GlossaryTerm> existing = new HashMap<>();
+        if (!notCached.isEmpty()) {
+            for (GlossaryTerm entity : glossaryRepository.findByTermIn(notCached)) {
+                existing.put(entity.getTerm(), entity);
+            }
+        }
+        List<String> missing = new ArrayList<>();
+        for (String term : notCached) {
+            GlossaryTerm entity = existing.get(term);
+            String explanation = entity != null ? entity.getLongExplanation() : null;
+            glossaryCache.putLoaded(term, explanation);
+            if (explanation != null && !explanation.isBlank()) {
+                explanations.put(term, explanation);
+            } else {
+                missing.add(term);
+            }
+        }
+        System.out.println("Batch explanation: " + explanations.size() + " cached, " + missing.size() + " to generate.");
 
+        // 2. 未命中的术语分组批量生成，各组在虚拟线程上并发执行
         LLMService selectedLlmService = llmServiceProvider.getProvider(providerKey);
-        String longExplanation = selectedLlmService.generateTextResponse(prompt);
+        Queue<String> retryIndividually = new ConcurrentLinkedQueue<>();
+        Semaphore llmPermits = new Semaphore(Math.max(1, maxConcurrency));
+        long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(deadlineSeconds);
+        int groupSize = Math.max(1, batchSize);
+        ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("explain-", 0).factory());
+        try {
+            List<Future<?>> batches = new ArrayList<>();
+            for (int start = 0; start < missing.size(); start += groupSize) {
+                List<String> group = missing.subList(start, Math.min(start + groupSize, missing.size()));
+                batches.add(executor.submit(() -> {
+                    Map<String, String> generated;
+                    try {
+                        String response = withPermit(llmPermits,
+                                () -> selectedLlmService.generateTextResponse(buildBatchPrompt(group, context), promptCachePolicy()));
+                        generated = parseBatchResponse(response, group);
+                    } catch (Exception e) {
+                        System.err.println("Batch explanation failed for " + group.size() + " terms, retrying individually: " + e.getMessage());
+                        generated = Map.of();
+                    }
+                    for (String term : group) {
+                        String explanation = generated.get(term);
+                        if (explanation == null) {
+                            retryIndividually.add(term);
+                            continue;
+                        }
+                        saveExplanation(term, null, explanation);
+                        explanations.put(term, explanation);
+                    }
+                }));
+            }
+            awaitAll(batches, deadlineNanos);
+
+            // 3. 批量结果中缺失或格式不对的术语单独重试，同样并发执行
+            List<Future<?>> retries = new ArrayList<>();
+            for (String term : retryIndividually) {
+                retries.add(executor.submit(() -> {
+                    try {
+                        String explanation = withPermit(llmPermits, () -> getExplanation(term, null, context, providerKey));
+                        if (explanation != null) {
+                            explanations.put(term, explanation);
+                        }
+                    } catch (Exception e) {
+                        System.err.println("Failed to generate explanation for '" + term + "': " + e.getMessage());
+                    }
+                }));
+            }
+            awaitAll(retries, deadlineNanos);
+        } finally {
+            // 超过截止时间仍未完成的请求直接中断，对应术语显示占位文本
+            executor.shutdownNow();
+        }
+
+        // 按输入顺序返回
+        Map<String, String> ordered = new LinkedHashMap<>();
+        for (String term : uniqueTerms) {
+            String explanation = explanations.get(canonicalOf.get(term));
+            if (explanation != null) {
+                ordered.put(term, explanation);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * 等待所有任务完成，最多等到 deadlineNanos；超时的任务留给调用方中断。
+     */
+    private static void awaitAll(List<Future<?>> futures, long deadlineNanos) {
+        for (Future<?> future : futures) {
+            long remaining = deadlineNanos - System.nanoTime();
+            if (remaining <= 0) {
+                System.err.println("Explanation deadline reached, " + futures.stream().filter(f -> !f.isDone()).count() + " tasks unfinished.");
+                return;
+            }
+            try {
+                future.get(remaining, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // 下一轮循环会发现已经超时
+            } catch (ExecutionException e) {
+                System.err.println("Explanation task failed: " + e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
 
-        // 3. 将新生成的解释设置到实体上，然后保存（这时JPA会智能判断是 INSERT 还是 UPDATE）
-        termEntity.setLongExplanation(longExplanation);
-        glossaryRepository.save(termEntity);
+    private static <T> T withPermit(Semaphore permits, Callable<T> call) throws Exception {
+        permits.acquire();
+        try {
+            return call.call();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private PromptCachePolicy promptCachePolicy() {
+        return PromptCachePolicy.ttl(Duration.ofHours(promptCacheTtlHours));
+    }
+
+    private void saveExplanation(String term, String shortExplanation, String longExplanation) {
+        glossaryRepository.upsertExplanation(term, shortExplanation, longExplanation);
+        glossaryCache.put(term, longExplanation);
+        termIndex.register(term);
         System.out.println("SAVED/UPDATED: Explanation for '" + term + "' has been saved to the database.");
+    }
 
-        return longExplanation;
+    /**
+     * 解析批量请求的回复：{术语: 解释}。模型可能包一层 ```json 代码块或改变术语的大小写/空白，按规范化后的术语匹配。
+     * 只返回 group 中的术语，且解释必须是非空字符串。
+     */
+    Map<String, String> parseBatchResponse(String response, List<String> group) throws Exception {
+        int begin = response.indexOf('{');
+        int end = response.lastIndexOf('}');
+        if (begin < 0 || end <= begin) {
+            throw new IllegalArgumentException("Batch explanation response is not a JSON object.");
+        }
+        JsonNode root = objectMapper.readTree(response.substring(begin, end + 1));
+
+        Map<String, String> byNormalizedTerm = new HashMap<>();
+        for (Map.Entry<String, JsonNode> field : root.properties()) {
+            JsonNode value = field.getValue();
+            if (value.isTextual() && !value.asText().isBlank()) {
+                byNormalizedTerm.put(normalizeTerm(field.getKey()), value.asText().trim());
+            }
+        }
+        Map<String, String> result = new HashMap<>();
+        for (String term : group) {
+            String explanation = byNormalizedTerm.get(normalizeTerm(term));
+            if (explanation != null) {
+                result.put(term, explanation);
+            }
+        }
+        return result;
+    }
+
+    private static String normalizeTerm(String term) {
+        return term.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private String buildBatchPrompt(List<String> terms, String context) {
+        StringBuilder termList = new StringBuilder();
+        for (String term : terms) {
+            termList.append("- ").append(term).append("\n");
+        }
+        return String.format(
+                """
+                你是一位资深的软件架构师和技术导师。一位学生正在学习以下术语，这是他/她学习笔记的上下文：
+
+                --- 笔记上下文 ---
+                %s
+                --- 结束 ---
+
+                --- 术语列表 ---
+                %s--- 结束 ---
+
+                请你用通俗易懂、循循诱导的方式，分别向这位学生详细解释上面的每一个术语。每个解释请专注于以下几点：
+                1. 它的核心思想或解决了什么问题？
+                2. 为什么在上述笔记的上下文中会提到它？
+                3. (可选) 给出一个简单的例子或比喻来帮助理解。
+
+                请只返回一个 JSON 对象，不要有任何其他文字：键是术语 (与术语列表中完全一致)，值是该术语的解释 (Markdown 字符串)。
+                """,
+                context, termList
+        );
     }
 
     private String buildPrompt(String term, String context) {
@@ -0,0 +1,64 @@
+package com.fan.aivideonotes.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 一套音频预处理参数 (编码、采样率、声道、静音裁剪、变速)，决定交给 LLM 的音频体积和时长。
+ *
+ * @param name          配置名，会记录在任务上，便于对比不同配置的上传体积和模型耗时
+ * @param codecArgs     ffmpeg 编码参数，e.g., ["-c:a", "libopus", "-b:a", "24k"]
+ * @param extension     输出文件扩展名 (不含点)，同时决定上传时的 MIME 类型
+ * @param sampleRate    输出采样率，0 表示保持原样
+ * @param channels      输出声道数，0 表示保持原样
+ * @param removeSilence 是否裁掉较长的静音段
+ * @param tempo         播放速度倍数，1.0 表示不变速
+ */
+public record AudioProfile(String name, List<String> codecArgs, String extension,
+                           int sampleRate, int channels, boolean removeSilence, double tempo) {
+
+    // 裁掉所有超过 1 秒、低于 -40dB 的静音段
+    private static final String SILENCE_FILTER = "silenceremove=stop_periods=-1:stop_duration=1:stop_threshold=-40dB";
+
+    public AudioProfile withTempo(double newTempo) {
+        return new AudioProfile(name, codecArgs, extension, sampleRate, channels, removeSilence, newTempo);
+    }
+
+    /**
+     * 记录到任务上的名称，变速时带上倍数，e.g., "speech-opus@1.25x"。
+     */
+    public String label() {
+        return tempo == 1.0 ? name : name + String.format(Locale.ROOT, "@%.2fx", tempo);
+    }
+
+    /**
+     * 拼接在 "-i input" 之后、输出文件之前的 ffmpeg 参数。
+     */
+    public List<String> ffmpegOutputArgs() {
+        List<String> args = new ArrayList<>();
+        args.add("-vn");
+        if (channels > 0) {
+            args.add("-ac");
+            args.add(String.valueOf(channels));
+        }
+        if (sampleRate > 0) {
+            args.add("-ar");
+            args.add(String.valueOf(sampleRate));
+        }
+        List<String> filters = new ArrayList<>();
+        if (removeSilence) {
+            filters.add(SILENCE_FILTER);
+        }
+        if (tempo != 1.0) {
+            // atempo 单级只支持 0.5 ~ 2.0 倍
+            filters.add(String.format(Locale.ROOT, "atempo=%.3f", Math.max(0.5, Math.min(2.0, tempo))));
+        }
+        if (!filters.isEmpty()) {
+            args.add("-af");
+            args.add(String.join(",", filters));
+        }
+        args.addAll(codecArgs);
+        return args;
+    }
+}
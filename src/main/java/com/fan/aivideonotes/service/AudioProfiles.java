@@ -0,0 +1,70 @@
+package com.fan.aivideonotes.service;
+
+import com.fan.aivideonotes.controller.dto.VideoLinkRequest;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 内置的音频预处理配置，以及 GenerationMode 到配置的映射 (见 app.audio.profile.*)。
+ */
+@Component
+public class AudioProfiles {
+
+    /**
+     * 旧的默认行为：双声道 MP3 VBR (-q:a 2，约 190 kbps)。
+     */
+    public static final AudioProfile ORIGINAL = new AudioProfile("original",
+            List.of("-c:a", "libmp3lame", "-q:a", "2"), "mp3", 0, 0, false, 1.0);
+
+    /**
+     * 面向语音识别的低码率配置：16 kHz 单声道 Opus，裁掉静音。体积约为 ORIGINAL 的 1/8。
+     */
+    public static final AudioProfile SPEECH_OPUS = new AudioProfile("speech-opus",
+            List.of("-c:a", "libopus", "-b:a", "24k", "-application", "voip"), "ogg", 16000, 1, true, 1.0);
+
+    /**
+     * 保真度更高的语音配置：24 kHz 单声道 MP3 64 kbps，保留静音段。
+     */
+    public static final AudioProfile SPEECH_MP3 = new AudioProfile("speech-mp3",
+            List.of("-c:a", "libmp3lame", "-b:a", "64k"), "mp3", 24000, 1, false, 1.0);
+
+    private static final Map<String, AudioProfile> PROFILES = Map.of(
+            ORIGINAL.name(), ORIGINAL,
+            SPEECH_OPUS.name(), SPEECH_OPUS,
+            SPEECH_MP3.name(), SPEECH_MP3
+    );
+
+    @Value("${app.audio.profile.flash:speech-opus}")
+    private String flashProfile = SPEECH_OPUS.name();
+    @Value("${app.audio.profile.pro:speech-mp3}")
+    private String proProfile = SPEECH_MP3.name();
+    // FLASH 模式可选的变速倍数 (e.g., 1.25 ~ 1.5)，缩短音频时长以减少 token 和耗时
+    @Value("${app.audio.tempo.flash:1.0}")
+    private double flashTempo = 1.0;
+
+    // 启动时校验配置名，避免到运行任务时才发现拼写错误
+    @PostConstruct
+    void validate() {
+        byName(flashProfile);
+        byName(proProfile);
+    }
+
+    public AudioProfile forMode(VideoLinkRequest.GenerationMode mode) {
+        if (mode == VideoLinkRequest.GenerationMode.PRO) {
+            return byName(proProfile);
+        }
+        return byName(flashProfile).withTempo(flashTempo);
+    }
+
+    public AudioProfile byName(String name) {
+        AudioProfile profile = PROFILES.get(name);
+        if (profile == null) {
+            throw new IllegalArgumentException("Unknown audio profile: " + name + ", available: " + PROFILES.keySet());
+        }
+        return profile;
+    }
+}
@@ -0,0 +1,163 @@
+package com.fan.aivideonotes.service;
+
+import com.fan.aivideonotes.controller.dto.VideoLinkRequest;
+import com.fan.aivideonotes.service.llm.LLMService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 长音频的分段生成模式。
+ * 把音频切成带少量重叠的定长片段，每个片段作为 LLM 阶段线程池上的一个独立任务调用
+ * LLMService.generateNotesFromAudio，再按时间顺序合并各片段的笔记。单个片段失败只会重试该片段本身。
+ * 这样单次请求的耗时只和片段长度有关，而不会随视频总长度增长，避免触发 5 分钟的读超时。
+ */
+@Service
+public class ChunkedNoteGenerationService {
+
+    private final VideoProcessingService videoProcessingService;
+    private final NoteBlockMerger noteBlockMerger;
+
+    @Value("${app.generation.chunking.enabled:true}")
+    private boolean chunkingEnabled;
+    @Value("${app.generation.chunking.threshold-seconds:1200}")
+    private double thresholdSeconds;
+    @Value("${app.generation.chunking.segment-seconds:600}")
+    private double segmentSeconds;
+    @Value("${app.generation.chunking.overlap-seconds:15}")
+    private double overlapSeconds;
+    @Value("${app.generation.chunking.max-attempts:3}")
+    private int maxAttempts;
+    // 单段生成时是否使用流式接口，边生成边推送已完成的笔记块
+    @Value("${app.generation.streaming.enabled:true}")
+    private boolean streamingEnabled;
+
+    @Autowired
+    public ChunkedNoteGenerationService(VideoProcessingService videoProcessingService,
+                                        NoteBlockMerger noteBlockMerger) {
+        this.videoProcessingService = videoProcessingService;
+        this.noteBlockMerger = noteBlockMerger;
+    }
+
+    /**
+     * 【转码阶段】按需把音频切分为片段。短音频 (或关闭了分段模式时) 原样返回整段音频。
+     *
+     * @param audioFile       提取好的音频文件
+     * @param durationSeconds 音频时长 (秒)
+     * @param workDirectory   片段文件的输出目录 (任务私有)
+     * @return 按时间顺序排列的待生成音频文件
+     */
+    public List<File> prepareSegments(File audioFile, double durationSeconds, File workDirectory) {
+        if (!chunkingEnabled || durationSeconds <= thresholdSeconds) {
+            return List.of(audioFile);
+        }
+        List<VideoProcessingService.AudioSegment> segments =
+                videoProcessingService.splitAudio(audioFile, durationSeconds, segmentSeconds, overlapSeconds, workDirectory);
+        System.out.println("Audio is " + Math.round(durationSeconds) + "s long, split into " + segments.size() + " segments.");
+        return segments.stream().map(VideoProcessingService.AudioSegment::file).toList();
+    }
+
+    /**
+     * 【LLM 阶段】为每个片段提交一个生成任务，全部完成后按顺序合并。
+     * 该方法不会阻塞调用线程；任何一个片段最终失败时，返回的 future 会立即以异常结束，其余未开始的片段被取消。
+     *
+     * @param segments         prepareSegments 返回的音频片段
+     * @param request          原始的笔记生成请求
+     * @param llmService       选中的模型服务
+     * @param listener         用于汇报分段进度和推送部分笔记块的回调
+     * @param llmExecutor      LLM 阶段的线程池
+     * @return 笔记 JSON，格式为 {"notes": [...]}
+     */
+    public CompletableFuture<String> generateNotesAsync(List<File> segments, VideoLinkRequest request, LLMService llmService,
+                                                        GenerationListener listener, Executor llmExecutor) {
+        if (segments.size() == 1) {
+            return CompletableFuture.supplyAsync(() -> generateSingle(segments.get(0), request, llmService, listener), llmExecutor);
+        }
+
+        AtomicInteger finished = new AtomicInteger();
+        CompletableFuture<Void> firstFailure = new CompletableFuture<>();
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < segments.size(); i++) {
+            final int index = i;
+            CompletableFuture<String> future = CompletableFuture.supplyAsync(() -> {
+                String notes = generateSegmentWithRetry(index, segments.get(index), request, llmService);
+                listener.onProgress(String.format("Step 3: Generating notes with AI (%d/%d segments done)...",
+                        finished.incrementAndGet(), segments.size()));
+                return notes;
+            }, llmExecutor);
+            future.exceptionally(error -> {
+                firstFailure.completeExceptionally(error);
+                return null;
+            });
+            futures.add(future);
+        }
+
+        return CompletableFuture.anyOf(CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])), firstFailure)
+                .thenApply(ignored -> {
+                    try {
+                        return noteBlockMerger.merge(futures.stream().map(CompletableFuture::join).toList());
+                    } catch (IOException e) {
+                        throw new CompletionException("Failed to merge segment notes: " + e.getMessage(), e);
+                    }
+                })
+                .whenComplete((notes, error) -> {
+                    if (error != null) {
+                        futures.forEach(future -> future.cancel(false));
+                    }
+                });
+    }
+
+    /**
+     * 整段生成。开启流式时边生成边推送笔记块；流式调用失败时改用普通接口 (带自动重试) 重新生成。
+     * 分段模式下各片段并发完成、顺序不定，因此只在单段时使用流式输出。
+     */
+    private String generateSingle(File audioFile, VideoLinkRequest request, LLMService llmService, GenerationListener listener) {
+        if (!streamingEnabled) {
+            return llmService.generateNotesFromAudio(audioFile, request);
+        }
+        AtomicBoolean emitted = new AtomicBoolean(false);
+        try {
+            return llmService.generateNotesFromAudioStreaming(audioFile, request, block -> {
+                emitted.set(true);
+                listener.onPartialBlock(block);
+            });
+        } catch (RuntimeException e) {
+            System.err.println("Streaming generation failed, retrying without streaming: " + e.getMessage());
+            if (emitted.get()) {
+                listener.onPartialReset();
+            }
+            return llmService.generateNotesFromAudio(audioFile, request);
+        }
+    }
+
+    private String generateSegmentWithRetry(int index, File segment, VideoLinkRequest request, LLMService llmService) {
+        RuntimeException lastError = null;
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                return llmService.generateNotesFromAudio(segment, request);
+            } catch (RuntimeException e) {
+                lastError = e;
+                System.err.println("Segment " + index + " failed (attempt " + attempt + "/" + maxAttempts + "): " + e.getMessage());
+                if (attempt < maxAttempts) {
+                    try {
+                        Thread.sleep(2000L * attempt);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException("Interrupted while retrying segment " + index, ie);
+                    }
+                }
+            }
+        }
+        throw new RuntimeException("Segment " + index + " failed after " + maxAttempts + " attempts: " + lastError.getMessage(), lastError);
+    }
+}
@@ -0,0 +1,24 @@
+package com.fan.aivideonotes.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * 笔记生成过程中的回调，由 NoteGenerationService 转发为任务状态和 SSE 事件。
+ */
+public interface GenerationListener {
+
+    /**
+     * 阶段内的进度描述 (e.g., 分段生成的完成数)。
+     */
+    void onProgress(String message);
+
+    /**
+     * 流式生成时，每解析出一个完整的笔记块回调一次。
+     */
+    void onPartialBlock(JsonNode block);
+
+    /**
+     * 流式生成中途失败、改为重新生成时回调，之前推送的部分结果作废。
+     */
+    void onPartialReset();
+}
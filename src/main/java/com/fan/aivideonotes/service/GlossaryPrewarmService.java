@@ -0,0 +1,197 @@
+package com.fan.aivideonotes.service;
+
+import com.fan.aivideonotes.model.GlossaryTerm;
+import com.fan.aivideonotes.model.Note;
+import com.fan.aivideonotes.model.NoteBlock;
+import com.fan.aivideonotes.model.NoteContent;
+import com.fan.aivideonotes.repository.GlossaryTermRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 笔记生成完成后，在后台为其中的 knowledge_point 术语预先生成长解释，使之后的导出和点击解释直接命中缓存。
+ * - 低优先级：单个最低优先级的后台线程，按笔记排队处理；
+ * - 只用富余配额：每次请求前检查 LLMServiceProvider.hasSpareTextCapacity，没有富余时等待，不与前台生成和解释请求争抢；
+ * - 已有长解释的术语直接跳过，其余按组交给 AiInteractionService.getExplanations (批量生成、写库、写近端缓存)。
+ * 指标：glossary.prewarm.backlog.notes / backlog.terms、glossary.prewarm.terms (result=generated|skipped|failed)、
+ * glossary.prewarm.notes (result=completed|dropped)、glossary.prewarm.deferrals。
+ */
+@Service
+public class GlossaryPrewarmService {
+
+    private static final int MAX_CONTEXT_CHARS = 2000;
+
+    private record Job(Long noteId, NoteContent content, String providerKey) {
+    }
+
+    private final AiInteractionService aiInteractionService;
+    private final GlossaryTermRepository glossaryRepository;
+    private final LLMServiceProvider llmServiceProvider;
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final long pollMillis;
+    private final BlockingQueue<Job> queue;
+    private final AtomicLong pendingTerms = new AtomicLong();
+
+    private final Counter generatedCounter;
+    private final Counter skippedCounter;
+    private final Counter failedCounter;
+    private final Counter completedCounter;
+    private final Counter droppedCounter;
+    private final Counter deferralCounter;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    @Autowired
+    public GlossaryPrewarmService(AiInteractionService aiInteractionService,
+                                  GlossaryTermRepository glossaryRepository,
+                                  LLMServiceProvider llmServiceProvider,
+                                  Environment environment,
+                                  MeterRegistry meterRegistry) {
+        this.aiInteractionService = aiInteractionService;
+        this.glossaryRepository = glossaryRepository;
+        this.llmServiceProvider = llmServiceProvider;
+        this.enabled = environment.getProperty("app.glossary.prewarm.enabled", Boolean.class, true);
+        this.batchSize = Math.max(1, environment.getProperty("app.glossary.prewarm.batch-size", Integer.class, 10));
+        this.pollMillis = environment.getProperty("app.glossary.prewarm.poll-ms", Long.class, 2000L);
+        this.queue = new LinkedBlockingQueue<>(environment.getProperty("app.glossary.prewarm.queue-capacity", Integer.class, 500));
+
+        Gauge.builder("glossary.prewarm.backlog.notes", queue, BlockingQueue::size).register(meterRegistry);
+        Gauge.builder("glossary.prewarm.backlog.terms", pendingTerms, AtomicLong::get).register(meterRegistry);
+        this.generatedCounter = meterRegistry.counter("glossary.prewarm.terms", "result", "generated");
+        this.skippedCounter = meterRegistry.counter("glossary.prewarm.terms", "result", "skipped");
+        this.failedCounter = meterRegistry.counter("glossary.prewarm.terms", "result", "failed");
+        this.completedCounter = meterRegistry.counter("glossary.prewarm.notes", "result", "completed");
+        this.droppedCounter = meterRegistry.counter("glossary.prewarm.notes", "result", "dropped");
+        this.deferralCounter = meterRegistry.counter("glossary.prewarm.deferrals");
+    }
+
+    /**
+     * 登记一篇刚生成的笔记。队列满时直接丢弃 (之后导出时照常按需生成)，不会阻塞调用方。
+     */
+    public void schedule(Note note, String providerKey) {
+        if (!enabled || note == null || note.getContent() == null) {
+            return;
+        }
+        if (!queue.offer(new Job(note.getId(), note.getContent(), providerKey))) {
+            droppedCounter.increment();
+            System.err.println("Glossary pre-warm queue is full, skipping note " + note.getId() + ".");
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        worker = Thread.ofPlatform().daemon().name("glossary-prewarm").priority(Thread.MIN_PRIORITY).start(this::runLoop);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    private void runLoop() {
+        while (running) {
+            try {
+                prewarm(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                System.err.println("Glossary pre-warm failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void prewarm(Job job) throws InterruptedException {
+        List<String> terms = job.content().knowledgePointTerms();
+        StringBuilder context = new StringBuilder();
+        for (NoteBlock block : job.content().notes()) {
+            if ((NoteBlock.HEADING.equals(block.type()) || NoteBlock.PARAGRAPH.equals(block.type()))
+                    && block.text() != null && context.length() < MAX_CONTEXT_CHARS) {
+                context.append(block.text()).append("\n");
+            }
+        }
+        if (terms.isEmpty()) {
+            completedCounter.increment();
+            return;
+        }
+
+        // 已有长解释的术语跳过
+        Set<String> explained = new HashSet<>();
+        for (GlossaryTerm entity : glossaryRepository.findByTermIn(terms)) {
+            if (entity.getLongExplanation() != null && !entity.getLongExplanation().isBlank()) {
+                explained.add(entity.getTerm());
+            }
+        }
+        List<String> missing = new ArrayList<>();
+        for (String term : terms) {
+            if (explained.contains(term)) {
+                skippedCounter.increment();
+            } else {
+                missing.add(term);
+            }
+        }
+        String noteContext = context.length() > MAX_CONTEXT_CHARS ? context.substring(0, MAX_CONTEXT_CHARS) : context.toString();
+        System.out.println("Pre-warming " + missing.size() + " glossary terms of note " + job.noteId()
+                + " (" + explained.size() + " already explained).");
+
+        pendingTerms.addAndGet(missing.size());
+        int processed = 0;
+        try {
+            while (processed < missing.size()) {
+                List<String> group = missing.subList(processed, Math.min(processed + batchSize, missing.size()));
+                awaitSpareCapacity(job.providerKey());
+                int generated = 0;
+                try {
+                    generated = aiInteractionService.getExplanations(group, noteContext, job.providerKey()).size();
+                } catch (RuntimeException e) {
+                    System.err.println("Glossary pre-warm batch failed for note " + job.noteId() + ": " + e.getMessage());
+                }
+                generatedCounter.increment(generated);
+                failedCounter.increment(group.size() - generated);
+                processed += group.size();
+                pendingTerms.addAndGet(-group.size());
+            }
+            completedCounter.increment();
+        } finally {
+            // 关闭时被中断：未处理的术语不再计入积压
+            pendingTerms.addAndGet(processed - missing.size());
+        }
+    }
+
+    /**
+     * 等到提供商有富余配额时再继续。
+     */
+    private void awaitSpareCapacity(String providerKey) throws InterruptedException {
+        boolean deferred = false;
+        while (!llmServiceProvider.hasSpareTextCapacity(providerKey)) {
+            if (!deferred) {
+                deferralCounter.increment();
+                deferred = true;
+            }
+            Thread.sleep(pollMillis);
+        }
+    }
+}
@@ -1,28 +1,107 @@
 package com.fan.aivideonotes.service;
 
+import com.fan.aivideonotes.service.cache.PromptResponseCache;
+import com.fan.aivideonotes.service.llm.CachingLLMService;
+import com.fan.aivideonotes.service.llm.FailoverLLMService;
 import com.fan.aivideonotes.service.llm.LLMService;
+import com.fan.aivideonotes.service.llm.ProviderCircuitBreaker;
+import com.fan.aivideonotes.service.llm.RateLimitedLLMService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 public class LLMServiceProvider {
-    private final Map<String, LLMService> providerMap;
+    private final Map<String, LLMService> providerMap = new LinkedHashMap<>();
+    private final Map<String, ProviderCircuitBreaker> breakers = new LinkedHashMap<>();
+    private final Map<String, LLMService> limited = new LinkedHashMap<>();
     private static final String DEFAULT_PROVIDER = "GEMINI";
 
-    public LLMServiceProvider(List<LLMService> services) {
-        this.providerMap = services.stream()
-                .collect(Collectors.toMap(
-                        llmService -> llmService.getProviderKey().toUpperCase(),
-                        llmService -> llmService
-                ));
+    public LLMServiceProvider(List<LLMService> services, Environment environment, MeterRegistry meterRegistry,
+                              PromptResponseCache promptCache) {
+        // 【准入控制】每个提供商都包一层自适应限流，429 时排队重试而不是让任务失败
+        boolean limitsEnabled = environment.getProperty("app.llm.limits.enabled", Boolean.class, true);
+        for (LLMService llmService : services) {
+            String key = llmService.getProviderKey().toUpperCase();
+            limited.put(key, limitsEnabled ? new RateLimitedLLMService(llmService, environment, meterRegistry) : llmService);
+            breakers.put(key, new ProviderCircuitBreaker(key, breakerSettings(environment), meterRegistry));
+        }
+
+        // 【故障转移】getProvider(key) 返回以 key 为首、后接 app.llm.failover.<key> 的链，每个成员带自己的熔断器
+        FailoverLLMService.HedgeSettings hedgeSettings = new FailoverLLMService.HedgeSettings(
+                environment.getProperty("app.llm.hedge.enabled", Boolean.class, false),
+                environment.getProperty("app.llm.hedge.max-prompt-chars", Integer.class, 4000),
+                Duration.ofMillis(environment.getProperty("app.llm.hedge.delay-ms", Long.class, 3000L)));
+        for (String key : limited.keySet()) {
+            List<FailoverLLMService.Member> chain = new ArrayList<>();
+            chain.add(new FailoverLLMService.Member(limited.get(key), breakers.get(key)));
+            String fallbacks = environment.getProperty("app.llm.failover." + key.toLowerCase(Locale.ROOT), "");
+            Arrays.stream(fallbacks.split(","))
+                    .map(String::trim)
+                    .map(String::toUpperCase)
+                    .filter(fallback -> !fallback.isEmpty() && !fallback.equals(key))
+                    .forEach(fallback -> {
+                        if (!limited.containsKey(fallback)) {
+                            throw new IllegalStateException("Unknown LLM provider in app.llm.failover." + key.toLowerCase(Locale.ROOT) + ": " + fallback);
+                        }
+                        chain.add(new FailoverLLMService.Member(limited.get(fallback), breakers.get(fallback)));
+                    });
+            LLMService failover = new FailoverLLMService(chain, hedgeSettings, meterRegistry);
+            // 【提示词缓存】最外层：命中时不占限流配额，也不经过熔断器
+            providerMap.put(key, promptCache.isEnabled() ? new CachingLLMService(failover, promptCache) : failover);
+        }
     }
 
     public LLMService getProvider(String providerKey) {
-        final String key = (providerKey == null || providerKey.isBlank()) ? DEFAULT_PROVIDER : providerKey.toUpperCase();
+        final String key = resolveProviderKey(providerKey);
         return Optional.ofNullable(providerMap.get(key))
                 .orElseThrow(() -> new IllegalArgumentException("Unsupported LLM provider: " + key));
     }
-}
\ No newline at end of file
+
+    /**
+     * 把用户传入的 provider 规范化为 providerMap 中使用的大写键，未指定时返回默认提供商。
+     */
+    public String resolveProviderKey(String providerKey) {
+        return (providerKey == null || providerKey.isBlank()) ? DEFAULT_PROVIDER : providerKey.toUpperCase();
+    }
+
+    /**
+     * 提供商当前是否有富余的文本生成配额 (熔断器关闭，且限流器没有排队、留有余量)。
+     * 低优先级的后台任务只在此时发请求，不与前台生成和解释请求争抢配额。
+     */
+    public boolean hasSpareTextCapacity(String providerKey) {
+        String key = resolveProviderKey(providerKey);
+        ProviderCircuitBreaker breaker = breakers.get(key);
+        if (breaker == null || breaker.getState() != ProviderCircuitBreaker.State.CLOSED) {
+            return false;
+        }
+        return !(limited.get(key) instanceof RateLimitedLLMService rateLimited) || rateLimited.hasSpareTextCapacity();
+    }
+
+    /**
+     * 各提供商的熔断器，供 actuator 端点 (llmproviders) 展示。
+     */
+    public List<ProviderCircuitBreaker> getCircuitBreakers() {
+        return List.copyOf(breakers.values());
+    }
+
+    private static ProviderCircuitBreaker.Settings breakerSettings(Environment environment) {
+        return new ProviderCircuitBreaker.Settings(
+                Duration.ofSeconds(environment.getProperty("app.llm.breaker.window-seconds", Long.class, 60L)),
+                environment.getProperty("app.llm.breaker.minimum-calls", Integer.class, 5),
+                environment.getProperty("app.llm.breaker.failure-rate-threshold", Double.class, 0.5),
+                Duration.ofSeconds(environment.getProperty("app.llm.breaker.slow-call-seconds", Long.class, 120L)),
+                environment.getProperty("app.llm.breaker.slow-call-rate-threshold", Double.class, 0.8),
+                Duration.ofSeconds(environment.getProperty("app.llm.breaker.open-seconds", Long.class, 30L)),
+                environment.getProperty("app.llm.breaker.half-open-probes", Integer.class, 1));
+    }
+}
@@ -0,0 +1,73 @@
+package com.fan.aivideonotes.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 按顺序合并分段生成的笔记 ({"notes": [...]})。
+ * 相邻片段之间有音频重叠，模型会在两边重复输出同一个标题或知识点，这里负责去重：
+ * - heading: 与上一个片段中出现过的标题相同则丢弃；
+ * - knowledge_point: 同一个术语在整篇笔记中只保留第一次出现。
+ */
+@Component
+public class NoteBlockMerger {
+
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public NoteBlockMerger(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @param segmentNotes 按时间顺序排列的各片段笔记 JSON
+     * @return 合并后的笔记 JSON，格式为 {"notes": [...]}
+     */
+    public String merge(List<String> segmentNotes) throws IOException {
+        ArrayNode merged = objectMapper.createArrayNode();
+        Set<String> seenTerms = new HashSet<>();
+        Set<String> previousHeadings = new HashSet<>();
+
+        for (String segmentJson : segmentNotes) {
+            JsonNode notes = objectMapper.readTree(segmentJson).path("notes");
+            if (!notes.isArray()) {
+                throw new IOException("Segment notes are missing the required top-level 'notes' array.");
+            }
+            Set<String> currentHeadings = new HashSet<>();
+            for (JsonNode block : notes) {
+                String type = block.path("type").asText();
+                if ("heading".equals(type)) {
+                    String key = normalize(block.path("content").asText());
+                    if (previousHeadings.contains(key) || !currentHeadings.add(key)) {
+                        continue;
+                    }
+                } else if ("knowledge_point".equals(type)) {
+                    String key = normalize(block.path("content").path("term").asText());
+                    if (!key.isEmpty() && !seenTerms.add(key)) {
+                        continue;
+                    }
+                }
+                merged.add(block);
+            }
+            previousHeadings = currentHeadings;
+        }
+
+        ObjectNode root = objectMapper.createObjectNode();
+        root.set("notes", merged);
+        return objectMapper.writeValueAsString(root);
+    }
+
+    private String normalize(String text) {
+        return text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
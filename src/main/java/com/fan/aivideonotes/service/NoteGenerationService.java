@@ -1,103 +1,472 @@
 package com.fan.aivideonotes.service;
 
+import com.fan.aivideonotes.controller.dto.TaskEvent;
 import com.fan.aivideonotes.controller.dto.VideoLinkRequest;
 import com.fan.aivideonotes.model.Note;
+import com.fan.aivideonotes.model.NoteContent;
 import com.fan.aivideonotes.model.Task;
 import com.fan.aivideonotes.repository.NoteRepository;
 import com.fan.aivideonotes.repository.TaskRepository;
+import com.fan.aivideonotes.service.cache.LocalArtifactStore;
+import com.fan.aivideonotes.service.cache.NoteCacheService;
+import com.fan.aivideonotes.service.cache.VideoUrlNormalizer;
+import com.fan.aivideonotes.service.event.TaskEventPublisher;
 import com.fan.aivideonotes.service.llm.LLMService; // 【注意】导入新的接口
-import jakarta.transaction.Transactional;
+import com.fan.aivideonotes.service.process.ProcessProgress;
+import com.fan.aivideonotes.service.process.ProcessRunner;
+import com.fan.aivideonotes.service.transcript.Transcript;
+import com.fan.aivideonotes.service.transcript.TranscriptNoteService;
+import com.fasterxml.jackson.databind.JsonNode;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 @Service
 public class NoteGenerationService {
 
+    public static final String STATUS_CANCELLED = "CANCELLED";
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(2);
+
     // 注入新的 LLMServiceProvider
     private final LLMServiceProvider llmServiceProvider;
     private final NoteRepository noteRepository;
     private final VideoProcessingService videoProcessingService;
     private final TaskRepository taskRepository;
+    private final NoteCacheService noteCacheService;
+    private final ChunkedNoteGenerationService chunkedNoteGenerationService;
+    private final TaskEventPublisher taskEventPublisher;
+    private final AudioProfiles audioProfiles;
+    private final LocalArtifactStore localArtifactStore;
+    private final ProcessRunner processRunner;
+    private final TranscriptNoteService transcriptNoteService;
+    private final GlossaryPrewarmService glossaryPrewarmService;
+
+    // 本节点上正在运行的流水线，用于取消
+    private final Map<String, PipelineRun> activeRuns = new ConcurrentHashMap<>();
+
+    // 流水线各阶段的线程池 (见 AsyncConfig)
+    private final Executor downloadExecutor;
+    private final Executor transcodeExecutor;
+    private final Executor llmExecutor;
+
+    // 是否优先使用“纯音频 + 管道转码”的流式摄取，失败时回退到先下载视频再提取音频
+    @Value("${app.ingest.streaming.enabled:true}")
+    private boolean streamingIngestEnabled;
+    // 是否先尝试字幕快速路径：有字幕时直接用文字稿生成笔记，跳过整个音频流水线
+    @Value("${app.ingest.subtitles.enabled:true}")
+    private boolean subtitleIngestEnabled;
 
     @Autowired
     public NoteGenerationService(LLMServiceProvider llmServiceProvider,
                                  NoteRepository noteRepository,
                                  VideoProcessingService videoProcessingService,
-                                 TaskRepository taskRepository) {
+                                 TaskRepository taskRepository,
+                                 NoteCacheService noteCacheService,
+                                 ChunkedNoteGenerationService chunkedNoteGenerationService,
+                                 TaskEventPublisher taskEventPublisher,
+                                 AudioProfiles audioProfiles,
+                                 LocalArtifactStore localArtifactStore,
+                                 ProcessRunner processRunner,
+                                 TranscriptNoteService transcriptNoteService,
+                                 GlossaryPrewarmService glossaryPrewarmService,
+                                 @Qualifier("downloadExecutor") Executor downloadExecutor,
+                                 @Qualifier("transcodeExecutor") Executor transcodeExecutor,
+                                 @Qualifier("llmExecutor") Executor llmExecutor) {
         this.llmServiceProvider = llmServiceProvider;
         this.noteRepository = noteRepository;
         this.videoProcessingService = videoProcessingService;
         this.taskRepository = taskRepository;
+        this.noteCacheService = noteCacheService;
+        this.chunkedNoteGenerationService = chunkedNoteGenerationService;
+        this.taskEventPublisher = taskEventPublisher;
+        this.audioProfiles = audioProfiles;
+        this.localArtifactStore = localArtifactStore;
+        this.processRunner = processRunner;
+        this.transcriptNoteService = transcriptNoteService;
+        this.glossaryPrewarmService = glossaryPrewarmService;
+        this.downloadExecutor = downloadExecutor;
+        this.transcodeExecutor = transcodeExecutor;
+        this.llmExecutor = llmExecutor;
     }
 
     /**
      * [重构后]
-     * 异步为视频生成笔记。
+     * 异步为视频生成笔记，由 JobWorker 在认领到作业后调用。
      * 此方法现在通过 LLMServiceProvider 动态选择 AI 模型。
+     * 相同视频 (规范化链接 + 模式 + 提供商) 的请求会先查笔记缓存：
+     * 已有笔记直接复用，正在生成的则挂在同一条管线上等待，不会重复调用 yt-dlp/ffmpeg/LLM。
+     * 缓存未命中时，任务依次流经 下载 → 转码 → LLM 三个阶段，每个阶段运行在各自的有界线程池上；
+     * 下游队列满时，上游线程会在交接处阻塞，从而形成背压。视频有字幕时跳过转码阶段，直接用文字稿生成。
+     * 注意：这里不能加 @Transactional，否则整个管线期间都会占用一个数据库连接，
+     * 而且中间的状态更新在提交前对轮询方不可见。
      *
      * @param taskId      任务的唯一ID
      * @param request     包含视频URL、用户ID、模式等信息的请求对象
+     * @return 任务结束 (成功或失败) 时完成的 future；失败时以异常结束
      */
-    @Async("taskExecutor")
-    @Transactional
-    public void generateNotesForVideo(String taskId, VideoLinkRequest request) {
+    public CompletableFuture<Void> generateNotesForVideo(String taskId, VideoLinkRequest request) {
 
-        updateTaskStatus(taskId, "PROCESSING", "Starting video processing...");
+        String providerKey = llmServiceProvider.resolveProviderKey(request.getProvider());
+        String cacheKey = noteCacheService.buildCacheKey(request, providerKey);
+        NoteCacheService.Registration registration = noteCacheService.register(cacheKey);
 
-        File videoFile = null;
-        File audioFile = null;
-        File tempDirectory = null;
+        if (!registration.leader()) {
+            System.out.println("Task " + taskId + " coalesced onto an in-flight pipeline for key: " + cacheKey);
+            updateTaskStatus(taskId, "PROCESSING", "An identical video is already being processed, waiting for its result...", NoteCacheService.STATUS_COALESCED);
+            return registration.future().whenComplete((sourceNote, error) -> {
+                if (error != null) {
+                    updateTaskStatus(taskId, "FAILED", error.getMessage(), NoteCacheService.STATUS_COALESCED);
+                } else {
+                    completeTask(taskId, saveNote(request, cacheKey, sourceNote.getContent()), NoteCacheService.STATUS_COALESCED);
+                }
+            }).thenApply(sourceNote -> null);
+        }
 
+        PipelineRun run = new PipelineRun(taskId, request, audioProfiles.forMode(request.getMode()));
         try {
-            updateTaskStatus(taskId, "PROCESSING", "Step 1: Downloading video from URL...");
-            videoFile = videoProcessingService.downloadVideo(request.getUrl());
-            tempDirectory = videoFile.getParentFile();
-
-            updateTaskStatus(taskId, "PROCESSING", "Step 2: Extracting audio...");
-            audioFile = videoProcessingService.extractAudio(videoFile);
+            Optional<Note> cachedNote = noteCacheService.findCompleted(cacheKey);
+            if (cachedNote.isPresent()) {
+                System.out.println("Task " + taskId + " hit the note cache for key: " + cacheKey);
+                Note savedNote = saveNote(request, cacheKey, cachedNote.get().getContent());
+                noteCacheService.complete(registration, savedNote);
+                completeTask(taskId, savedNote, NoteCacheService.STATUS_HIT);
+                return CompletableFuture.completedFuture(null);
+            }
 
-            updateTaskStatus(taskId, "PROCESSING", "Step 3: Generating notes from audio with AI...");
+            updateTaskStatus(taskId, "PENDING", "Waiting for a free download slot...", NoteCacheService.STATUS_MISS);
 
             // 通过 provider 动态获取 LLM 服务并调用
             // 注意：request.getProvider() 暂时可能为 null，工厂类会返回默认的 "GEMINI"
-            LLMService selectedLlmService = llmServiceProvider.getProvider(request.getProvider());
-            String generatedNotes = selectedLlmService.generateNotesFromAudio(audioFile, request);
-
-            updateTaskStatus(taskId, "PROCESSING", "Step 4: Saving generated notes to the database...");
-            Note note = new Note();
-            note.setUserId(request.getUserId());
-            note.setVideoUrl(request.getUrl());
-            note.setContent(generatedNotes);
-            Note savedNote = noteRepository.save(note);
-
-            Task finalTask = taskRepository.findById(taskId).orElseThrow(() -> new IllegalStateException("Task not found with id: " + taskId));
-            finalTask.setStatus("COMPLETED");
-            finalTask.setStatusMessage("Note generated successfully.");
-            finalTask.setResultNote(savedNote);
-            taskRepository.save(finalTask);
-            System.out.println("Task " + taskId + " completed successfully.");
+            LLMService selectedLlmService = llmServiceProvider.getProvider(providerKey);
+            activeRuns.put(taskId, run);
+
+            // 阶段之间使用非 Async 的 thenCompose / thenApplyAsync 交接：提交动作发生在上游阶段的线程上，
+            // 下游队列满时阻塞的是上游线程，而不是下游线程
+            // 下载、转码阶段启动的外部进程都登记在本任务名下，取消任务时会被立即杀掉
+            // yt-dlp / ffmpeg 的进度会实时写到任务上
+            return CompletableFuture.supplyAsync(() -> processRunner.runAs(taskId, progress -> updateTaskProgress(run, progress), () -> ingest(run)), downloadExecutor)
+                    .thenCompose(media -> media.transcript() != null
+                            ? CompletableFuture.completedFuture(List.<File>of())
+                            : CompletableFuture.supplyAsync(() -> processRunner.runAs(taskId, progress -> updateTaskProgress(run, progress), () -> prepareAudio(run, media)), transcodeExecutor))
+                    .thenCompose(segments -> {
+                        ensureNotCancelled(run);
+                        long llmStartNanos = System.nanoTime();
+                        CompletableFuture<String> generation;
+                        if (run.transcript != null) {
+                            updateTaskStatus(taskId, "PROCESSING", "Step 3: Generating notes from subtitles with AI...");
+                            generation = CompletableFuture.supplyAsync(
+                                    () -> transcriptNoteService.generateNotes(run.transcript, selectedLlmService), llmExecutor);
+                        } else {
+                            updateTaskStatus(taskId, "PROCESSING", "Step 3: Generating notes from audio with AI...");
+                            // 长音频会被切分为多个片段并发生成，再按顺序合并
+                            generation = chunkedNoteGenerationService.generateNotesAsync(segments, request, selectedLlmService,
+                                    taskListener(taskId), llmExecutor);
+                        }
+                        return generation
+                                .whenComplete((notes, error) -> {
+                                    if (error == null) {
+                                        long latencyMs = (System.nanoTime() - llmStartNanos) / 1_000_000;
+                                        updateTaskMetrics(taskId, task -> task.setLlmLatencyMs(latencyMs));
+                                    }
+                                });
+                    })
+                    .thenApply(generatedNotes -> {
+                        ensureNotCancelled(run);
+                        updateTaskStatus(taskId, "PROCESSING", "Step 4: Saving generated notes to the database...");
+                        return saveNote(request, cacheKey, parseNotes(generatedNotes));
+                    })
+                    .whenComplete((savedNote, error) -> finishPipeline(run, registration, savedNote, error))
+                    .thenApply(savedNote -> null);
 
         } catch (Exception e) {
-            System.err.println("An error occurred during the pipeline for task " + taskId + ": " + e.getMessage());
-            e.printStackTrace();
-            updateTaskStatus(taskId, "FAILED", e.getMessage());
+            finishPipeline(run, registration, null, e);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * 【下载阶段】获取字幕或音频。先尝试只下载字幕，有可用字幕时直接返回文字稿；
+     * 否则查本地产物缓存 (同一视频 + 同一预处理配置的音频、同一视频的原始文件)，
+     * 未命中时优先走纯音频的流式摄取，失败时回退为下载完整视频。新产物都会放入缓存供后续任务复用。
+     */
+    private IngestedMedia ingest(PipelineRun run) {
+        if (subtitleIngestEnabled) {
+            enterStep(run, "Step 1: Looking for subtitles...");
+            try {
+                Optional<Transcript> transcript = transcriptNoteService.fetchTranscript(run.request.getUrl(), run.workDirectory());
+                if (transcript.isPresent()) {
+                    run.transcript = transcript.get();
+                    recordTranscriptMetrics(run, transcript.get());
+                    return IngestedMedia.ofTranscript(transcript.get());
+                }
+            } catch (CancellationException e) {
+                throw e;
+            } catch (Exception e) {
+                System.err.println("Subtitle lookup failed for task " + run.taskId + ", falling back to audio: " + e.getMessage());
+            }
+        }
+
+        Optional<LocalArtifactStore.Lease> cachedAudio = localArtifactStore.acquire(LocalArtifactStore.KIND_AUDIO, run.audioKey);
+        if (cachedAudio.isPresent()) {
+            enterStep(run, "Step 1: Reusing previously prepared audio...");
+            return new IngestedMedia(run.hold(cachedAudio.get()).file(), true, null);
+        }
+
+        if (streamingIngestEnabled) {
+            enterStep(run, "Step 1: Streaming audio-only track from URL...");
+            try {
+                File audioFile = videoProcessingService.streamAudio(run.request.getUrl(), run.audioProfile);
+                run.tempDirectories.add(audioFile.getParentFile());
+                LocalArtifactStore.Lease lease = localArtifactStore.put(LocalArtifactStore.KIND_AUDIO, run.audioKey, audioFile);
+                return new IngestedMedia(run.hold(lease).file(), true, null);
+            } catch (CancellationException e) {
+                throw e;
+            } catch (Exception e) {
+                System.err.println("Streaming ingest failed for task " + run.taskId + ", falling back to full download: " + e.getMessage());
+            }
+        }
+
+        Optional<LocalArtifactStore.Lease> cachedMedia = localArtifactStore.acquire(LocalArtifactStore.KIND_MEDIA, run.mediaKey);
+        if (cachedMedia.isPresent()) {
+            enterStep(run, "Step 1: Reusing previously downloaded video...");
+            return new IngestedMedia(run.hold(cachedMedia.get()).file(), false, null);
+        }
+
+        enterStep(run, "Step 1: Downloading video from URL...");
+        File videoFile = videoProcessingService.downloadVideo(run.request.getUrl());
+        run.tempDirectories.add(videoFile.getParentFile());
+        LocalArtifactStore.Lease lease = localArtifactStore.put(LocalArtifactStore.KIND_MEDIA, run.mediaKey, videoFile);
+        return new IngestedMedia(run.hold(lease).file(), false, null);
+    }
+
+    /**
+     * 【转码阶段】从视频中提取音频 (流式摄取时已经是音频)，并按需切分为片段。
+     * 同时把预处理配置、音频体积和时长记录到任务上。
+     */
+    private List<File> prepareAudio(PipelineRun run, IngestedMedia media) {
+        File audioFile = media.file();
+        if (!media.audioOnly()) {
+            enterStep(run, "Step 2: Extracting audio...");
+            File extractedAudio = videoProcessingService.extractAudio(media.file(), run.audioProfile, run.workDirectory());
+            audioFile = run.hold(localArtifactStore.put(LocalArtifactStore.KIND_AUDIO, run.audioKey, extractedAudio)).file();
+        }
+        double durationSeconds = videoProcessingService.probeDurationSeconds(audioFile);
+        long audioBytes = audioFile.length();
+        System.out.println("Task " + run.taskId + " audio prepared with profile " + run.audioProfile.label()
+                + ": " + audioBytes + " bytes, " + Math.round(durationSeconds) + "s.");
+        updateTaskMetrics(run.taskId, task -> {
+            task.setAudioProfile(run.audioProfile.label());
+            task.setAudioBytes(audioBytes);
+            task.setAudioDurationSeconds(durationSeconds);
+        });
+        return chunkedNoteGenerationService.prepareSegments(audioFile, durationSeconds, run.workDirectory());
+    }
+
+    /**
+     * 字幕快速路径没有音频，记录送给模型的文字稿体积，便于和音频路径对比。
+     */
+    private void recordTranscriptMetrics(PipelineRun run, Transcript transcript) {
+        long transcriptBytes = transcript.text().getBytes(StandardCharsets.UTF_8).length;
+        System.out.println("Task " + run.taskId + " uses " + transcript.language() + " subtitles: " + transcriptBytes + " bytes.");
+        updateTaskMetrics(run.taskId, task -> {
+            task.setAudioProfile("subtitles:" + transcript.language());
+            task.setAudioBytes(transcriptBytes);
+            task.setAudioDurationSeconds(transcript.durationSeconds());
+        });
+    }
+
+    /**
+     * 进入流水线的一个新步骤。记下步骤描述，之后的进度更新会附加在它后面。
+     */
+    private void enterStep(PipelineRun run, String message) {
+        run.currentStep = message;
+        updateTaskStatus(run.taskId, "PROCESSING", message);
+    }
+
+    /**
+     * 把外部进程的进度写到任务上并推送 SSE 事件，例如 "Step 1: Downloading video from URL... (45.3%, 2.3 MB/s, ETA 27s)"。
+     * 每个任务最多每 2 秒写一次数据库。
+     */
+    private void updateTaskProgress(PipelineRun run, ProcessProgress progress) {
+        long now = System.nanoTime();
+        if (run.currentStep == null || now - run.lastProgressNanos < PROGRESS_INTERVAL_NANOS) {
+            return;
+        }
+        run.lastProgressNanos = now;
+        Task task = taskRepository.findById(run.taskId).orElse(null);
+        if (task == null || !"PROCESSING".equals(task.getStatus())) {
+            return; // 已取消或已结束
+        }
+        String details = progress.describe();
+        task.setStatusMessage(details.isEmpty() ? run.currentStep : run.currentStep + " (" + details + ")");
+        task.setProgressPercent(progress.percent());
+        task.setProgressBytesPerSecond(progress.bytesPerSecond());
+        task.setProgressEtaSeconds(progress.etaSeconds());
+        taskRepository.save(task);
+        taskEventPublisher.publish(TaskEvent.fromTask(task));
+    }
+
+    /**
+     * 把生成过程中的回调转发为任务状态更新和 SSE 事件。部分笔记块只推送到内存，不写数据库。
+     */
+    private GenerationListener taskListener(String taskId) {
+        return new GenerationListener() {
+            @Override
+            public void onProgress(String message) {
+                updateTaskStatus(taskId, "PROCESSING", message);
+            }
+
+            @Override
+            public void onPartialBlock(JsonNode block) {
+                taskEventPublisher.publishPartialBlock(taskId, block);
+            }
+
+            @Override
+            public void onPartialReset() {
+                taskEventPublisher.resetPartialBlocks(taskId);
+            }
+        };
+    }
+
+    /**
+     * 取消本节点上正在运行的任务：杀掉它的外部进程，后续阶段不再执行，LLM 返回的结果也不会保存。
+     * @return 任务不在本节点运行时返回 false
+     */
+    public boolean cancel(String taskId) {
+        if (!activeRuns.containsKey(taskId)) {
+            return false;
+        }
+        System.out.println("Cancelling task " + taskId + " on this node.");
+        processRunner.cancel(taskId);
+        return true;
+    }
+
+    private void ensureNotCancelled(PipelineRun run) {
+        if (processRunner.isCancelled(run.taskId)) {
+            throw new CancellationException("Task " + run.taskId + " was cancelled.");
+        }
+    }
+
+    private void finishPipeline(PipelineRun run, NoteCacheService.Registration registration, Note savedNote, Throwable error) {
+        try {
+            if (error == null) {
+                noteCacheService.complete(registration, savedNote);
+                completeTask(run.taskId, savedNote, NoteCacheService.STATUS_MISS);
+                // 后台利用富余配额预生成知识点的长解释
+                glossaryPrewarmService.schedule(savedNote, run.request.getProvider());
+                return;
+            }
+            Throwable cause = (error instanceof CompletionException && error.getCause() != null) ? error.getCause() : error;
+            if (cause instanceof CancellationException) {
+                System.out.println("Pipeline for task " + run.taskId + " stopped: " + cause.getMessage());
+                noteCacheService.fail(registration, cause);
+                updateTaskStatus(run.taskId, STATUS_CANCELLED, "Task was cancelled.");
+                return;
+            }
+            System.err.println("An error occurred during the pipeline for task " + run.taskId + ": " + cause.getMessage());
+            cause.printStackTrace();
+            ProcessRunner.printOutput("Recent process output of task " + run.taskId + ":", processRunner.recentOutput(run.taskId));
+            noteCacheService.fail(registration, cause);
+            updateTaskStatus(run.taskId, "FAILED", cause.getMessage());
         } finally {
-            if (tempDirectory != null && tempDirectory.exists()) {
-                deleteDirectory(tempDirectory);
-                System.out.println("Cleaned up temporary directory for task " + taskId);
+            activeRuns.remove(run.taskId);
+            processRunner.clearOwner(run.taskId);
+            // 缓存中的产物只释放引用，由 LocalArtifactStore 按 LRU 淘汰；任务私有的临时目录直接删除
+            run.leases.forEach(LocalArtifactStore.Lease::close);
+            for (File tempDirectory : run.tempDirectories) {
+                if (tempDirectory != null && tempDirectory.exists()) {
+                    deleteDirectory(tempDirectory);
+                }
             }
+            System.out.println("Cleaned up temporary directories for task " + run.taskId);
+        }
+    }
+
+    /**
+     * 为当前请求的用户保存一份笔记。缓存命中时也会复制一份，保证每个任务/用户都拥有独立的 Note 记录。
+     */
+    private Note saveNote(VideoLinkRequest request, String cacheKey, NoteContent content) {
+        Note note = new Note();
+        note.setUserId(request.getUserId());
+        note.setVideoUrl(request.getUrl());
+        note.setCacheKey(cacheKey);
+        note.setContent(content);
+        return noteRepository.save(note);
+    }
+
+    private static NoteContent parseNotes(String generatedNotes) {
+        try {
+            return NoteContent.fromJson(generatedNotes);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to parse generated notes: " + e.getMessage(), e);
+        }
+    }
+
+    private void completeTask(String taskId, Note savedNote, String cacheStatus) {
+        Task finalTask = taskRepository.findById(taskId).orElseThrow(() -> new IllegalStateException("Task not found with id: " + taskId));
+        if (STATUS_CANCELLED.equals(finalTask.getStatus())) {
+            return; // 用户已取消，不再覆盖状态
         }
+        finalTask.setStatus("COMPLETED");
+        finalTask.setStatusMessage(NoteCacheService.STATUS_MISS.equals(cacheStatus)
+                ? "Note generated successfully."
+                : "Note reused from cache (" + cacheStatus + ").");
+        finalTask.setCacheStatus(cacheStatus);
+        finalTask.setResultNote(savedNote);
+        taskRepository.save(finalTask);
+        taskEventPublisher.publish(TaskEvent.fromTask(finalTask));
+        System.out.println("Task " + taskId + " completed successfully (cache: " + cacheStatus + ").");
     }
 
     private void updateTaskStatus(String taskId, String status, String message) {
+        updateTaskStatus(taskId, status, message, null);
+    }
+
+    private void updateTaskStatus(String taskId, String status, String message, String cacheStatus) {
         Task task = taskRepository.findById(taskId)
                 .orElseThrow(() -> new IllegalStateException("Attempted to update a non-existent task with id: " + taskId));
+        if (STATUS_CANCELLED.equals(task.getStatus())) {
+            return; // 用户已取消，不再覆盖状态
+        }
         task.setStatus(status);
         task.setStatusMessage(message);
+        // 进度只对当前步骤有效，状态/步骤变化时清空
+        task.setProgressPercent(null);
+        task.setProgressBytesPerSecond(null);
+        task.setProgressEtaSeconds(null);
+        if (cacheStatus != null) {
+            task.setCacheStatus(cacheStatus);
+        }
         taskRepository.save(task);
+        // 同时推送给本节点上的 SSE 订阅者
+        taskEventPublisher.publish(TaskEvent.fromTask(task));
+    }
+
+    /**
+     * 更新任务上的统计字段，不推送状态事件。
+     */
+    private void updateTaskMetrics(String taskId, Consumer<Task> updater) {
+        taskRepository.findById(taskId).ifPresent(task -> {
+            updater.accept(task);
+            taskRepository.save(task);
+        });
     }
 
     private void deleteDirectory(File directory) {
@@ -109,4 +478,61 @@ public class NoteGenerationService {
         }
         directory.delete();
     }
-}
\ No newline at end of file
+
+    /**
+     * 一次流水线运行中在各阶段之间共享的状态。
+     */
+    private static final class PipelineRun {
+        private final String taskId;
+        private final VideoLinkRequest request;
+        private final AudioProfile audioProfile;
+        // 本地产物缓存的 key：原始媒体按规范化链接，音频再加上预处理配置
+        private final String mediaKey;
+        private final String audioKey;
+        private final List<File> tempDirectories = new CopyOnWriteArrayList<>();
+        private final List<LocalArtifactStore.Lease> leases = new CopyOnWriteArrayList<>();
+        private File workDirectory;
+        // 当前步骤的描述和上次写入进度的时间，会在下载线程和转码线程之间交接
+        private volatile String currentStep;
+        private volatile long lastProgressNanos;
+        // 字幕快速路径取到的文字稿，为 null 时走音频流水线
+        private volatile Transcript transcript;
+
+        private PipelineRun(String taskId, VideoLinkRequest request, AudioProfile audioProfile) {
+            this.taskId = taskId;
+            this.request = request;
+            this.audioProfile = audioProfile;
+            this.mediaKey = VideoUrlNormalizer.normalize(request.getUrl());
+            this.audioKey = mediaKey + "|" + audioProfile.label();
+        }
+
+        private LocalArtifactStore.Lease hold(LocalArtifactStore.Lease lease) {
+            leases.add(lease);
+            return lease;
+        }
+
+        /**
+         * 任务私有的工作目录 (提取的音频、切分的片段)，任务结束时删除。
+         */
+        private synchronized File workDirectory() {
+            if (workDirectory == null) {
+                try {
+                    workDirectory = Files.createTempDirectory("note-task-" + taskId).toFile();
+                } catch (IOException e) {
+                    throw new RuntimeException("Failed to create work directory for task " + taskId, e);
+                }
+                tempDirectories.add(workDirectory);
+            }
+            return workDirectory;
+        }
+    }
+
+    /**
+     * 下载阶段的产物：字幕文字稿 (快速路径)、音频文件 (流式摄取) 或完整视频文件 (回退路径)。
+     */
+    private record IngestedMedia(File file, boolean audioOnly, Transcript transcript) {
+        private static IngestedMedia ofTranscript(Transcript transcript) {
+            return new IngestedMedia(null, false, transcript);
+        }
+    }
+}
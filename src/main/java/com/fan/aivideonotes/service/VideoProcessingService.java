@@ -1,19 +1,31 @@
 package com.fan.aivideonotes.service;
 
+import com.fan.aivideonotes.service.process.ProcessRunner;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
 import java.util.stream.Stream;
 
 @Service
 public class VideoProcessingService {
 
+    // 所有外部进程都通过 ProcessRunner 启动 (并发上限、超时、取消)
+    private final ProcessRunner processRunner;
+
+    @Autowired
+    public VideoProcessingService(ProcessRunner processRunner) {
+        this.processRunner = processRunner;
+    }
+
     /**
      * 从给定的 URL 下载视频，并智能地尝试使用不同浏览器的 Cookies.
      * @param videoUrl 视频的 URL (例如 YouTube 链接)
@@ -33,6 +45,7 @@ public class VideoProcessingService {
             ProcessBuilder processBuilder = new ProcessBuilder(
                     "yt-dlp",
                     "--no-playlist",
+                    "--newline", // 每次进度更新单独输出一行，便于解析
                     "-o", tempDir.resolve("%(title)s.%(ext)s").toString(),
                     "-f", "bestvideo[ext=mp4]+bestaudio[ext=m4a]/best[ext=mp4]/best",
                     "--max-filesize", "500m",
@@ -42,6 +55,8 @@ public class VideoProcessingService {
             executeCommand(processBuilder);
             return findDownloadedFile(tempDir);
 
+        } catch (CancellationException e) {
+            throw e;
         } catch (Exception e) {
             System.err.println("!!!!!! DETAILED DOWNLOAD ERROR !!!!!!");
             e.printStackTrace();
@@ -51,25 +66,110 @@ public class VideoProcessingService {
     }
 
     /**
-     * 从视频文件中提取 MP3 音频.
-     * @param videoFile 本地视频文件
-     * @return 提取出的音频文件对象
+     * 【流式摄取】只请求纯音频格式，并把 yt-dlp 的 stdout 直接管道给 ffmpeg 的 stdin 按预处理配置转码,
+     * 整个过程不会在磁盘上落地完整的视频文件。
+     * 如果站点没有可用的纯音频格式，yt-dlp 会以非 0 退出码结束，此时抛出异常，由调用方回退到
+     * {@link #downloadVideo(String)} + {@link #extractAudio(File, AudioProfile)} 的两步流程。
+     * @param videoUrl 视频的 URL
+     * @param profile  音频预处理配置
+     * @return 转码好的音频文件对象 (位于一个新的临时目录中)
      */
-    public File extractAudio(File videoFile) {
-        System.out.println("Attempting to extract audio from: " + videoFile.getAbsolutePath());
+    public File streamAudio(String videoUrl, AudioProfile profile) {
+        Path tempDir = null;
         try {
-            String outputFileName = videoFile.getName().replaceFirst("[.][^.]+$", "") + ".mp3";
-            File audioFile = new File(videoFile.getParentFile(), outputFileName);
+            tempDir = Files.createTempDirectory("audio-processing-" + UUID.randomUUID());
+            File audioFile = tempDir.resolve("audio." + profile.extension()).toFile();
+            System.out.println("Attempting to stream audio-only track: " + videoUrl);
 
-            ProcessBuilder processBuilder = new ProcessBuilder(
-                    "ffmpeg",
-                    "-i", videoFile.getAbsolutePath(),
-                    "-vn",
-                    "-acodec", "libmp3lame",
-                    "-q:a", "2",
-                    "-y", // Overwrite output file if it exists
-                    audioFile.getAbsolutePath()
+            ProcessBuilder downloader = new ProcessBuilder(
+                    "yt-dlp",
+                    "--no-playlist",
+                    "--no-part",
+                    "-f", "bestaudio[ext=m4a]/bestaudio",
+                    "--max-filesize", "500m",
+                    "-o", "-",
+                    videoUrl
             );
+            List<String> transcodeCommand = new ArrayList<>(List.of("ffmpeg", "-hide_banner", "-i", "pipe:0"));
+            transcodeCommand.addAll(profile.ffmpegOutputArgs());
+            transcodeCommand.addAll(List.of("-y", audioFile.getAbsolutePath()));
+            ProcessBuilder transcoder = new ProcessBuilder(transcodeCommand);
+
+            // yt-dlp 的 stdout 直接接到 ffmpeg 的 stdin；任何一端失败 (或超时被杀) 都会抛出 IOException
+            processRunner.runPipeline(List.of(downloader, transcoder));
+
+            if (!audioFile.exists() || audioFile.length() == 0) {
+                throw new IOException("Streaming pipeline finished, but output audio file was not created or is empty.");
+            }
+            System.out.println("Audio-only streaming ingest finished: " + audioFile.length() + " bytes.");
+            return audioFile;
+
+        } catch (IOException | InterruptedException | CancellationException e) {
+            if (tempDir != null) {
+                deleteDirectory(tempDir.toFile());
+            }
+            if (e instanceof CancellationException cancellation) {
+                throw cancellation;
+            }
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new RuntimeException("Failed to stream audio from the provided URL: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 【字幕快速路径】只下载字幕 (上传者字幕优先，其次自动生成的字幕)，不下载任何音视频.
+     * 找不到所需语言的字幕时 yt-dlp 仍以 0 退出，此时返回空列表.
+     * @param videoUrl        视频的 URL
+     * @param languages       按优先级排列的字幕语言, e.g., ["zh-Hans", "en"]
+     * @param outputDirectory 字幕文件的输出目录 (任务私有)
+     * @return 下载到的 .vtt / .srt 字幕文件，文件名形如 "subtitles.zh-Hans.vtt"
+     */
+    public List<File> downloadSubtitles(String videoUrl, List<String> languages, File outputDirectory) {
+        System.out.println("Looking for subtitles: " + videoUrl);
+        ProcessBuilder processBuilder = new ProcessBuilder(
+                "yt-dlp",
+                "--no-playlist",
+                "--skip-download",
+                "--write-subs",
+                "--write-auto-subs",
+                "--sub-langs", String.join(",", languages),
+                "--sub-format", "vtt/srt/best",
+                "-o", new File(outputDirectory, "subtitles.%(ext)s").getAbsolutePath(),
+                videoUrl
+        );
+        try {
+            executeCommand(processBuilder);
+            File[] files = outputDirectory.listFiles((dir, name) ->
+                    name.startsWith("subtitles.") && (name.endsWith(".vtt") || name.endsWith(".srt")));
+            return files == null ? List.of() : List.of(files);
+        } catch (IOException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new RuntimeException("Failed to download subtitles: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 按预处理配置从视频文件中提取音频.
+     * @param videoFile       本地视频文件
+     * @param profile         音频预处理配置
+     * @param outputDirectory 输出目录 (视频可能来自共享的产物缓存，不能写在视频旁边)
+     * @return 提取出的音频文件对象
+     */
+    public File extractAudio(File videoFile, AudioProfile profile, File outputDirectory) {
+        System.out.println("Attempting to extract audio (" + profile.label() + ") from: " + videoFile.getAbsolutePath());
+        try {
+            String outputFileName = videoFile.getName().replaceFirst("[.][^.]+$", "") + ".audio." + profile.extension();
+            File audioFile = new File(outputDirectory, outputFileName);
+
+            List<String> command = new ArrayList<>(List.of("ffmpeg", "-i", videoFile.getAbsolutePath()));
+            command.addAll(profile.ffmpegOutputArgs());
+            command.add("-y"); // Overwrite output file if it exists
+            command.add(audioFile.getAbsolutePath());
+            ProcessBuilder processBuilder = new ProcessBuilder(command);
 
             executeCommand(processBuilder);
 
@@ -84,6 +184,80 @@ public class VideoProcessingService {
         }
     }
 
+    /**
+     * 使用 ffprobe 读取媒体文件的时长.
+     * @param mediaFile 本地音频/视频文件
+     * @return 时长 (秒)
+     */
+    public double probeDurationSeconds(File mediaFile) {
+        ProcessBuilder processBuilder = new ProcessBuilder(
+                "ffprobe",
+                "-v", "error",
+                "-show_entries", "format=duration",
+                "-of", "default=noprint_wrappers=1:nokey=1",
+                mediaFile.getAbsolutePath()
+        );
+        try {
+            String output = executeCommandForOutput(processBuilder).trim();
+            return Double.parseDouble(output);
+        } catch (IOException | InterruptedException | NumberFormatException e) {
+            throw new RuntimeException("Failed to probe media duration of " + mediaFile.getName(), e);
+        }
+    }
+
+    /**
+     * 把音频切分为带少量重叠的定长片段，片段文件写到指定的目录下.
+     * 使用 "-c copy" 直接拷贝码流，不会重新编码.
+     * @param audioFile       本地音频文件
+     * @param durationSeconds 音频总时长 (秒)
+     * @param segmentSeconds  每个片段的目标时长 (秒，不含重叠)
+     * @param overlapSeconds  相邻片段之间的重叠时长 (秒)
+     * @param outputDirectory 片段的输出目录
+     * @return 按时间顺序排列的片段
+     */
+    public List<AudioSegment> splitAudio(File audioFile, double durationSeconds, double segmentSeconds, double overlapSeconds,
+                                         File outputDirectory) {
+        String baseName = audioFile.getName().replaceFirst("[.][^.]+$", "");
+        String extension = audioFile.getName().substring(audioFile.getName().lastIndexOf('.'));
+        List<AudioSegment> segments = new ArrayList<>();
+        try {
+            int index = 0;
+            for (double start = 0; start < durationSeconds; start += segmentSeconds) {
+                double end = Math.min(durationSeconds, start + segmentSeconds + overlapSeconds);
+                File segmentFile = new File(outputDirectory, String.format("%s.part%03d%s", baseName, index, extension));
+
+                ProcessBuilder processBuilder = new ProcessBuilder(
+                        "ffmpeg",
+                        "-hide_banner",
+                        "-ss", String.format(Locale.ROOT, "%.3f", start),
+                        "-t", String.format(Locale.ROOT, "%.3f", end - start),
+                        "-i", audioFile.getAbsolutePath(),
+                        "-c", "copy",
+                        "-y",
+                        segmentFile.getAbsolutePath()
+                );
+                executeCommand(processBuilder);
+                if (!segmentFile.exists() || segmentFile.length() == 0) {
+                    throw new IOException("ffmpeg finished, but audio segment " + index + " was not created or is empty.");
+                }
+                segments.add(new AudioSegment(index, segmentFile, start, end));
+                index++;
+                if (end >= durationSeconds) {
+                    break; // 重叠部分已经覆盖到结尾，避免再切出一个很短的尾巴
+                }
+            }
+            return segments;
+        } catch (IOException | InterruptedException e) {
+            throw new RuntimeException("Failed to split audio into segments", e);
+        }
+    }
+
+    /**
+     * 音频切分后的一个片段.
+     */
+    public record AudioSegment(int index, File file, double startSeconds, double endSeconds) {
+    }
+
     /**
      * 在指定目录下查找第一个非 .part 的文件.
      * @param directory 搜索的目录
@@ -100,28 +274,33 @@ public class VideoProcessingService {
     }
 
     /**
-     * 执行一个命令行进程，并实时打印其输出.
+     * 执行一个命令行进程 (输出由 ProcessRunner 解析进度并缓冲，失败时才打印).
      * @param processBuilder 已经配置好的 ProcessBuilder 对象
-     * @throws IOException 如果命令执行失败 (退出码非0)
+     * @throws IOException 如果命令执行失败 (退出码非0) 或超时被杀
      * @throws InterruptedException 如果线程被中断
      */
     private void executeCommand(ProcessBuilder processBuilder) throws IOException, InterruptedException {
-        System.out.println("Executing command: " + String.join(" ", processBuilder.command()));
+        processRunner.run(processBuilder);
+    }
 
-        processBuilder.redirectErrorStream(true);
-        Process process = processBuilder.start();
+    /**
+     * 执行一个命令行进程，并返回其标准输出的全部内容 (适用于 ffprobe 这类输出很短的命令).
+     * @param processBuilder 已经配置好的 ProcessBuilder 对象
+     * @return 进程的标准输出
+     * @throws IOException 如果命令执行失败 (退出码非0) 或超时被杀
+     * @throws InterruptedException 如果线程被中断
+     */
+    private String executeCommandForOutput(ProcessBuilder processBuilder) throws IOException, InterruptedException {
+        return processRunner.runForOutput(processBuilder);
+    }
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                System.out.println("[CMD Output] " + line);
+    private void deleteDirectory(File directory) {
+        File[] allContents = directory.listFiles();
+        if (allContents != null) {
+            for (File file : allContents) {
+                deleteDirectory(file);
             }
         }
-
-        int exitCode = process.waitFor();
-        if (exitCode != 0) {
-            throw new IOException("Command execution failed with exit code " + exitCode);
-        }
-        System.out.println("Command executed successfully.");
+        directory.delete();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,273 @@
+package com.fan.aivideonotes.service.cache;
+
+import com.fan.aivideonotes.model.GlossaryTerm;
+import com.fan.aivideonotes.repository.GlossaryTermRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * GlossaryTermRepository 前面的进程内近端缓存 (Caffeine，W-TinyLFU 频率感知淘汰，有容量和 TTL 上限)。
+ * - 负缓存：数据库中没有长解释的术语也会缓存一小段时间，重复点击不再每次查库；
+ * - 单飞 (single-flight)：同一术语的并发未命中只触发一次 LLM 生成，其余请求等待同一个结果；
+ * - 跨节点失效：写入新解释后通过 Postgres NOTIFY 广播，其他节点 LISTEN 到后丢弃本地条目。
+ * 指标：cache.gets / cache.size 等 (cache=glossary)、glossary.cache.hit.ratio、glossary.cache.coalesced、
+ * glossary.cache.load (source=db|llm)、glossary.cache.invalidations、glossary.cache.listener.connected (LISTEN 连接是否可用)。
+ */
+@Component
+public class GlossaryNearCache {
+
+    private static final String CHANNEL = "glossary_term_changed";
+
+    /**
+     * 缓存条目：explanation 为 null 表示负缓存 (已知数据库中没有长解释)。
+     */
+    private record Entry(String explanation) {
+    }
+
+    private final GlossaryTermRepository glossaryRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+    private final Cache<String, Entry> cache;
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    // 通知里带上本节点 ID，收到自己发出的通知时跳过
+    private final String nodeId = UUID.randomUUID().toString();
+    private final boolean listenEnabled;
+
+    private final Counter coalescedCounter;
+    private final Counter invalidationCounter;
+    private final Timer dbLoadTimer;
+    private final Timer llmLoadTimer;
+
+    private volatile boolean running;
+    private volatile boolean listening;
+    private Thread listenerThread;
+
+    @Autowired
+    public GlossaryNearCache(GlossaryTermRepository glossaryRepository, JdbcTemplate jdbcTemplate, DataSource dataSource,
+                             Environment environment, MeterRegistry meterRegistry) {
+        this.glossaryRepository = glossaryRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSource = dataSource;
+        this.listenEnabled = environment.getProperty("app.glossary.cache.listen.enabled", Boolean.class, true);
+
+        Duration ttl = Duration.ofMinutes(environment.getProperty("app.glossary.cache.ttl-minutes", Long.class, 60L));
+        Duration negativeTtl = Duration.ofSeconds(environment.getProperty("app.glossary.cache.negative-ttl-seconds", Long.class, 60L));
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(environment.getProperty("app.glossary.cache.max-size", Long.class, 10_000L))
+                .expireAfter(Expiry.writing((String term, Entry entry) -> entry.explanation() != null ? ttl : negativeTtl))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "glossary");
+        Gauge.builder("glossary.cache.hit.ratio", cache, c -> c.stats().hitRate()).register(meterRegistry);
+        Gauge.builder("glossary.cache.listener.connected", this, c -> c.listening ? 1 : 0).register(meterRegistry);
+        this.coalescedCounter = meterRegistry.counter("glossary.cache.coalesced");
+        this.invalidationCounter = meterRegistry.counter("glossary.cache.invalidations");
+        this.dbLoadTimer = Timer.builder("glossary.cache.load").tag("source", "db").register(meterRegistry);
+        this.llmLoadTimer = Timer.builder("glossary.cache.load").tag("source", "llm").register(meterRegistry);
+    }
+
+    /**
+     * 查找术语的长解释：先查本地缓存，未命中时查数据库 (同一术语的并发查询只查一次) 并缓存结果，包括“没有”。
+     */
+    public Optional<String> get(String term) {
+        Entry entry = cache.get(term, key -> dbLoadTimer.record(() -> new Entry(glossaryRepository.findByTerm(key)
+                .map(GlossaryTerm::getLongExplanation)
+                .filter(explanation -> !explanation.isBlank())
+                .orElse(null))));
+        return Optional.ofNullable(entry.explanation());
+    }
+
+    /**
+     * 只查本地缓存，不查数据库，也不计入命中率统计。负缓存和未缓存都返回 empty。
+     */
+    public Optional<String> peek(String term) {
+        Entry entry = cache.policy().getIfPresentQuietly(term);
+        return entry == null ? Optional.empty() : Optional.ofNullable(entry.explanation());
+    }
+
+    /**
+     * 同一术语同时只运行一次 generator (调用 LLM 并写回数据库)，其余并发请求等待同一个结果。
+     * 生成成功后写入本地缓存并通知其他节点。
+     */
+    public String generateOnce(String term, Supplier<String> generator) {
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(term, mine);
+        if (existing != null) {
+            coalescedCounter.increment();
+            System.out.println("GLOSSARY COALESCED: Waiting for in-flight explanation of '" + term + "'.");
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
+            }
+        }
+        try {
+            // 上一个生成者可能刚刚完成
+            Optional<String> fresh = peek(term);
+            if (fresh.isPresent()) {
+                mine.complete(fresh.get());
+                return fresh.get();
+            }
+            String explanation = llmLoadTimer.record(generator);
+            put(term, explanation);
+            mine.complete(explanation);
+            return explanation;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(term, mine);
+        }
+    }
+
+    /**
+     * 新解释已写入数据库：更新本地缓存，并通知其他节点丢弃旧条目 (包括负缓存)。
+     */
+    public void put(String term, String explanation) {
+        cache.put(term, new Entry(explanation));
+        notifyChanged(term);
+    }
+
+    /**
+     * 从数据库批量读到的结果直接放入本地缓存 (不需要通知其他节点)。
+     */
+    public void putLoaded(String term, String explanation) {
+        cache.put(term, new Entry(explanation != null && !explanation.isBlank() ? explanation : null));
+    }
+
+    public void invalidate(String term) {
+        cache.invalidate(term);
+        invalidationCounter.increment();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!listenEnabled) {
+            return;
+        }
+        running = true;
+        listenerThread = Thread.ofPlatform().daemon().name("glossary-listener").start(this::listenLoop);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+    }
+
+    private void notifyChanged(String term) {
+        if (!listenEnabled) {
+            return;
+        }
+        try {
+            jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", CHANNEL, nodeId + "|" + term);
+        } catch (RuntimeException e) {
+            // 通知失败只影响其他节点的缓存新鲜度 (最多 TTL)，不影响本次请求
+            System.err.println("Failed to publish glossary invalidation for '" + term + "': " + e.getMessage());
+        }
+    }
+
+    /**
+     * LISTEN 连接使用的连接参数，取自应用实际使用的连接池 (而不是 spring.datasource.* 属性，应用的 DataSource 并不读取它们)。
+     * 连接池不是 HikariDataSource 时返回 null，此时从连接池借一个连接长期占用。
+     */
+    record ListenerConnectionSettings(String jdbcUrl, String username, String password) {
+
+        static ListenerConnectionSettings of(DataSource dataSource) throws SQLException {
+            if (dataSource == null || !dataSource.isWrapperFor(HikariDataSource.class)) {
+                return null;
+            }
+            HikariDataSource hikari = dataSource.unwrap(HikariDataSource.class);
+            return new ListenerConnectionSettings(hikari.getJdbcUrl(), hikari.getUsername(), hikari.getPassword());
+        }
+    }
+
+    private Connection openListenerConnection() throws SQLException {
+        ListenerConnectionSettings settings = ListenerConnectionSettings.of(dataSource);
+        if (settings == null) {
+            return dataSource.getConnection();
+        }
+        // 独立连接，不占用连接池的名额
+        return DriverManager.getConnection(settings.jdbcUrl(), settings.username(), settings.password());
+    }
+
+    /**
+     * 用一个独立连接 LISTEN 失效通知。断线重连期间可能漏掉通知，所以重连后清空整个本地缓存。
+     */
+    private void listenLoop() {
+        boolean reconnect = false;
+        while (running) {
+            try (Connection connection = openListenerConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                if (reconnect) {
+                    cache.invalidateAll();
+                }
+                listening = true;
+                System.out.println("Glossary near-cache is listening for invalidations on channel '" + CHANNEL + "'.");
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(10_000);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        handleNotification(notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                listening = false;
+                if (!running) {
+                    return;
+                }
+                System.err.println("Glossary invalidation listener disconnected, retrying in 5s: " + e.getMessage());
+                reconnect = true;
+                try {
+                    Thread.sleep(5000);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void handleNotification(String payload) {
+        int separator = payload.indexOf('|');
+        if (separator < 0 || payload.substring(0, separator).equals(nodeId)) {
+            return;
+        }
+        invalidate(payload.substring(separator + 1));
+    }
+}
@@ -0,0 +1,262 @@
+package com.fan.aivideonotes.service.cache;
+
+import com.fan.aivideonotes.model.GlossaryTermAlias;
+import com.fan.aivideonotes.repository.GlossaryTermAliasRepository;
+import com.fan.aivideonotes.repository.GlossaryTermRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 术语相似度索引：在调用 LLM 之前，把写法不同的同一术语解析到已有的规范术语上，复用它的解释和 GlossaryTerm 行。
+ * 解析顺序：
+ * 1. 术语本身已存在 -> 原样返回；
+ * 2. 已记录的别名 (glossary_term_alias) -> 对应的规范术语；
+ * 3. 规范化后 (见 GlossaryTermNormalizer) 与已有术语相同 -> 该术语 ("SpringBoot" -> "Spring Boot")；
+ * 4. 字符二元组的 MinHash 签名做 LSH 分桶找候选，精确 Jaccard 相似度达到阈值且版本号不冲突 -> 最相似的术语 ("spring boot 3" -> "Spring Boot")。
+ * 3、4 的匹配结果会写入别名表。都没有匹配时返回原术语，由调用方按新术语生成并在写库后 register。
+ * 其他节点新增的术语在定期 refresh 后可见。
+ * 指标：glossary.alias.lookups (match=exact|alias|normalized|similar|none)，除 exact 和 none 以外的每次匹配都省掉一次 LLM 调用。
+ */
+@Component
+public class GlossaryTermIndex {
+
+    private static final int BANDS = 16;
+    private static final int ROWS_PER_BAND = 4;
+    private static final int NUM_HASHES = BANDS * ROWS_PER_BAND;
+
+    /**
+     * 一次完整构建的索引。refresh 时整体替换，register 直接写入当前快照。
+     */
+    private static final class Snapshot {
+        final Set<String> terms = ConcurrentHashMap.newKeySet();
+        final Map<String, String> aliases = new ConcurrentHashMap<>();
+        // 规范化形式 -> 最早出现的术语
+        final Map<String, String> byNormalized = new ConcurrentHashMap<>();
+        // 每个 band 一个桶表：band 内 ROWS_PER_BAND 个签名值的哈希 -> 规范化形式
+        final List<Map<Long, Set<String>>> buckets = new ArrayList<>(BANDS);
+
+        Snapshot() {
+            for (int band = 0; band < BANDS; band++) {
+                buckets.add(new ConcurrentHashMap<>());
+            }
+        }
+    }
+
+    private record Match(String canonicalTerm, double similarity) {
+    }
+
+    private final GlossaryTermRepository glossaryRepository;
+    private final GlossaryTermAliasRepository aliasRepository;
+    private final double similarityThreshold;
+    private final int minFuzzyLength;
+    // MinHash 的各个哈希函数的种子，固定随机数种子保证各节点、各次构建一致
+    private final long[] seeds = new long[NUM_HASHES];
+
+    private final Counter exactCounter;
+    private final Counter aliasCounter;
+    private final Counter normalizedCounter;
+    private final Counter similarCounter;
+    private final Counter noneCounter;
+
+    private volatile Snapshot snapshot = new Snapshot();
+
+    @Autowired
+    public GlossaryTermIndex(GlossaryTermRepository glossaryRepository,
+                             GlossaryTermAliasRepository aliasRepository,
+                             Environment environment,
+                             MeterRegistry meterRegistry) {
+        this.glossaryRepository = glossaryRepository;
+        this.aliasRepository = aliasRepository;
+        this.similarityThreshold = environment.getProperty("app.glossary.alias.similarity-threshold", Double.class, 0.8);
+        this.minFuzzyLength = environment.getProperty("app.glossary.alias.min-fuzzy-length", Integer.class, 5);
+        SplittableRandom random = new SplittableRandom(0x5EED_6A1DL);
+        for (int i = 0; i < NUM_HASHES; i++) {
+            seeds[i] = random.nextLong();
+        }
+
+        Gauge.builder("glossary.alias.index.size", this, index -> index.snapshot.terms.size()).register(meterRegistry);
+        this.exactCounter = meterRegistry.counter("glossary.alias.lookups", "match", "exact");
+        this.aliasCounter = meterRegistry.counter("glossary.alias.lookups", "match", "alias");
+        this.normalizedCounter = meterRegistry.counter("glossary.alias.lookups", "match", "normalized");
+        this.similarCounter = meterRegistry.counter("glossary.alias.lookups", "match", "similar");
+        this.noneCounter = meterRegistry.counter("glossary.alias.lookups", "match", "none");
+    }
+
+    /**
+     * 从数据库重新构建索引：启动时一次，之后定期执行，以便看到其他节点新增的术语和别名。
+     */
+    @PostConstruct
+    @Scheduled(initialDelayString = "${app.glossary.alias.refresh-ms:600000}", fixedDelayString = "${app.glossary.alias.refresh-ms:600000}")
+    public void refresh() {
+        try {
+            Snapshot fresh = new Snapshot();
+            for (String term : glossaryRepository.findAllTerms()) {
+                add(fresh, term);
+            }
+            for (GlossaryTermAlias alias : aliasRepository.findAll()) {
+                fresh.aliases.put(alias.getAlias(), alias.getCanonicalTerm());
+            }
+            snapshot = fresh;
+            System.out.println("Glossary term index built: " + fresh.terms.size() + " terms, " + fresh.aliases.size() + " aliases.");
+        } catch (RuntimeException e) {
+            // 构建失败时继续使用旧索引 (最坏情况是近似重复的术语各自生成一次)
+            System.err.println("Failed to build glossary term index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 把术语解析为应当复用的规范术语；没有匹配时返回术语本身。
+     */
+    public String resolve(String term) {
+        Snapshot current = snapshot;
+        if (current.terms.contains(term)) {
+            exactCounter.increment();
+            return term;
+        }
+        String aliased = current.aliases.get(term);
+        if (aliased != null) {
+            aliasCounter.increment();
+            return aliased;
+        }
+        String normalized = GlossaryTermNormalizer.normalize(term);
+        if (normalized.isEmpty()) {
+            noneCounter.increment();
+            return term;
+        }
+
+        String sameNormalized = current.byNormalized.get(normalized);
+        if (sameNormalized != null) {
+            normalizedCounter.increment();
+            recordAlias(current, term, new Match(sameNormalized, 1.0), "normalized");
+            return sameNormalized;
+        }
+        if (normalized.length() >= minFuzzyLength) {
+            Match similar = findSimilar(current, normalized);
+            if (similar != null) {
+                similarCounter.increment();
+                recordAlias(current, term, similar, "similar");
+                return similar.canonicalTerm();
+            }
+        }
+        noneCounter.increment();
+        return term;
+    }
+
+    /**
+     * 新术语已写入 glossary_term：加入索引，之后的近似写法会解析到它。
+     */
+    public void register(String term) {
+        add(snapshot, term);
+    }
+
+    private void add(Snapshot target, String term) {
+        if (!target.terms.add(term)) {
+            return;
+        }
+        String normalized = GlossaryTermNormalizer.normalize(term);
+        if (normalized.isEmpty() || target.byNormalized.putIfAbsent(normalized, term) != null) {
+            // 规范化形式已被更早的术语占用，只作为精确匹配存在
+            return;
+        }
+        if (normalized.length() >= minFuzzyLength) {
+            long[] signature = signature(GlossaryTermNormalizer.shingles(normalized));
+            for (int band = 0; band < BANDS; band++) {
+                target.buckets.get(band).computeIfAbsent(bandKey(signature, band), key -> ConcurrentHashMap.newKeySet()).add(normalized);
+            }
+        }
+    }
+
+    private Match findSimilar(Snapshot current, String normalized) {
+        Set<String> shingles = GlossaryTermNormalizer.shingles(normalized);
+        long[] signature = signature(shingles);
+        Match best = null;
+        Set<String> seen = new HashSet<>();
+        for (int band = 0; band < BANDS; band++) {
+            Set<String> bucket = current.buckets.get(band).get(bandKey(signature, band));
+            if (bucket == null) {
+                continue;
+            }
+            for (String candidate : bucket) {
+                if (!seen.add(candidate)) {
+                    continue;
+                }
+                // 版本号不同的术语不合并 ("Java 8" 和 "Java 17")；只有一方带版本号时可以合并 ("Spring Boot 3" -> "Spring Boot")
+                if (!compatibleDigits(normalized, candidate)) {
+                    continue;
+                }
+                // LSH 只负责找候选，最终用精确 Jaccard 判断，避免签名碰撞造成误合并
+                double similarity = GlossaryTermNormalizer.jaccard(shingles, GlossaryTermNormalizer.shingles(candidate));
+                if (similarity >= similarityThreshold && (best == null || similarity > best.similarity())) {
+                    best = new Match(current.byNormalized.get(candidate), similarity);
+                }
+            }
+        }
+        return best;
+    }
+
+    private static boolean compatibleDigits(String a, String b) {
+        String digitsA = a.replaceAll("\\D", "");
+        String digitsB = b.replaceAll("\\D", "");
+        return digitsA.isEmpty() || digitsB.isEmpty() || digitsA.equals(digitsB);
+    }
+
+    private void recordAlias(Snapshot current, String alias, Match match, String matchType) {
+        current.aliases.put(alias, match.canonicalTerm());
+        System.out.println("GLOSSARY ALIAS: '" + alias + "' -> '" + match.canonicalTerm() + "' (" + matchType
+                + ", similarity " + String.format("%.2f", match.similarity()) + ").");
+        try {
+            aliasRepository.insertIfAbsent(alias, match.canonicalTerm(), matchType, match.similarity());
+        } catch (RuntimeException e) {
+            // 别名只是优化，写入失败不影响本次解析
+            System.err.println("Failed to persist glossary alias '" + alias + "': " + e.getMessage());
+        }
+    }
+
+    /**
+     * MinHash 签名：每个哈希函数取所有二元组哈希值的最小值。两个集合在某一位上相等的概率等于它们的 Jaccard 相似度。
+     */
+    private long[] signature(Set<String> shingles) {
+        long[] signature = new long[NUM_HASHES];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        for (String shingle : shingles) {
+            long base = shingle.hashCode();
+            for (int i = 0; i < NUM_HASHES; i++) {
+                long hash = mix(base ^ seeds[i]);
+                if (hash < signature[i]) {
+                    signature[i] = hash;
+                }
+            }
+        }
+        return signature;
+    }
+
+    private static long bandKey(long[] signature, int band) {
+        long key = 1;
+        for (int row = 0; row < ROWS_PER_BAND; row++) {
+            key = key * 31 + signature[band * ROWS_PER_BAND + row];
+        }
+        return key;
+    }
+
+    // SplitMix64 的混合函数
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
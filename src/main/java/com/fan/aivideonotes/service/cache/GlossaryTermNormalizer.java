@@ -0,0 +1,73 @@
+package com.fan.aivideonotes.service.cache;
+
+import java.text.Normalizer;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 把术语规范化为用于去重比较的形式 (只用于比较，不用于展示或存储)。
+ * - NFKC：全角字母、数字、空格和标点折叠为半角；
+ * - 统一小写，去掉空白和 "-"、"_"、"."、"·" 等连接符 ("Spring Boot" / "spring-boot" / "SpringBoot" 相同)；
+ * - 去掉常见的中文后缀 ("Spring Boot框架"、"HTTP协议"、"依赖注入原理")，词干只有两个字时保留后缀；以及包裹术语的引号和括号。
+ * "C++"、"C#" 中的符号会保留。
+ */
+public final class GlossaryTermNormalizer {
+
+    private static final Pattern SEPARATORS = Pattern.compile("[\\s\\-_.·・]+");
+    private static final Pattern WRAPPING = Pattern.compile("^[\"'“”‘’「」《》()\\[\\]]+|[\"'“”‘’「」《》()\\[\\]]+$");
+
+    // 按长度从长到短匹配，只去掉一个后缀
+    private static final List<String> CJK_SUFFIXES = List.of(
+            "的概念", "的原理", "框架", "技术", "机制", "原理", "概念", "协议", "模式", "思想", "算法", "架构");
+
+    private GlossaryTermNormalizer() {
+    }
+
+    public static String normalize(String term) {
+        if (term == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(term, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT).strip();
+        normalized = WRAPPING.matcher(normalized).replaceAll("");
+        normalized = SEPARATORS.matcher(normalized).replaceAll("");
+        for (String suffix : CJK_SUFFIXES) {
+            // 去掉后缀后至少还剩三个字符：两个字的词干太宽泛，"设计模式"、"设计思想"、"设计原理" 是不同的概念，不能都合并为 "设计"
+            if (normalized.endsWith(suffix) && normalized.length() - suffix.length() > 2) {
+                normalized = normalized.substring(0, normalized.length() - suffix.length());
+                break;
+            }
+        }
+        return normalized;
+    }
+
+    /**
+     * 规范化形式的字符二元组 (bigram) 集合，用于相似度计算。中文术语通常很短，二元组比三元组更能区分。
+     */
+    public static Set<String> shingles(String normalized) {
+        Set<String> shingles = new HashSet<>();
+        if (normalized.length() < 2) {
+            shingles.add(normalized);
+            return shingles;
+        }
+        for (int i = 0; i + 2 <= normalized.length(); i++) {
+            shingles.add(normalized.substring(i, i + 2));
+        }
+        return shingles;
+    }
+
+    public static double jaccard(Set<String> a, Set<String> b) {
+        if (a.isEmpty() && b.isEmpty()) {
+            return 1.0;
+        }
+        int intersection = 0;
+        for (String shingle : a) {
+            if (b.contains(shingle)) {
+                intersection++;
+            }
+        }
+        return (double) intersection / (a.size() + b.size() - intersection);
+    }
+}
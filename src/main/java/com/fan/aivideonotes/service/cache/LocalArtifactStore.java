@@ -0,0 +1,312 @@
+package com.fan.aivideonotes.service.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * 本地磁盘上的媒体产物缓存 (下载的视频、预处理后的音频)。
+ * 每个产物按 key (规范化链接 + 预处理配置) 的 SHA-256 存放在 scratch 目录下的独立子目录中，
+ * 失败重试、FLASH → PRO 重跑等场景可以直接复用，不必重新下载和转码。
+ * - 总大小超过字节预算时按 LRU 淘汰；
+ * - 正在被任务使用 (引用计数 > 0) 的产物永远不会被淘汰；
+ * - 命中数、未命中数、节省的字节数通过 Micrometer 暴露 (artifact.store.*)。
+ * 关闭 (app.artifacts.enabled=false) 时 acquire 总是未命中，put 原样返回源文件，行为与不缓存时一致。
+ */
+@Component
+public class LocalArtifactStore {
+
+    public static final String KIND_MEDIA = "media";
+    public static final String KIND_AUDIO = "audio";
+
+    private static final String TEMP_PREFIX = ".incoming-";
+
+    private final boolean enabled;
+    private final Path rootDirectory;
+    private final long maxBytes;
+    private final MeterRegistry meterRegistry;
+
+    // accessOrder = true：迭代顺序即最近最少使用顺序
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes = 0;
+
+    @Autowired
+    public LocalArtifactStore(@Value("${app.artifacts.enabled:true}") boolean enabled,
+                              @Value("${app.artifacts.dir:${java.io.tmpdir}/ai-video-notes-artifacts}") String directory,
+                              @Value("${app.artifacts.max-bytes:5368709120}") long maxBytes,
+                              MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.rootDirectory = Path.of(directory);
+        this.maxBytes = maxBytes;
+        this.meterRegistry = meterRegistry;
+        if (enabled) {
+            loadExistingEntries();
+            Gauge.builder("artifact.store.bytes", this, LocalArtifactStore::getTotalBytes).register(meterRegistry);
+            Gauge.builder("artifact.store.entries", this, LocalArtifactStore::getEntryCount).register(meterRegistry);
+        }
+    }
+
+    /**
+     * 一次对产物的使用。使用期间产物不会被淘汰，用完必须 close。
+     */
+    public final class Lease implements AutoCloseable {
+        private final Entry entry;
+        private final File file;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Lease(Entry entry, File file) {
+            this.entry = entry;
+            this.file = file;
+        }
+
+        public File file() {
+            return file;
+        }
+
+        @Override
+        public void close() {
+            if (entry != null && released.compareAndSet(false, true)) {
+                release(entry);
+            }
+        }
+    }
+
+    /**
+     * 查找已缓存的产物。命中时引用计数加一，并记为最近使用。
+     */
+    public Optional<Lease> acquire(String kind, String key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(hash(kind, key));
+            if (entry != null && !entry.file.exists()) {
+                // 文件被外部删掉了，丢弃这条索引
+                removeEntry(entry);
+                entry = null;
+            }
+            if (entry != null) {
+                entry.refCount++;
+                // 同步到文件的修改时间，重启后据此恢复 LRU 顺序
+                entry.file.setLastModified(System.currentTimeMillis());
+            }
+        }
+        if (entry == null) {
+            counter("artifact.store.misses", kind).increment();
+            return Optional.empty();
+        }
+        counter("artifact.store.hits", kind).increment();
+        counter("artifact.store.bytes.saved", kind).increment(entry.bytes);
+        System.out.println("Artifact store hit (" + kind + "): " + key + " -> " + entry.file.getName() + " (" + entry.bytes + " bytes)");
+        return Optional.of(new Lease(entry, entry.file));
+    }
+
+    /**
+     * 把新生成的产物移入缓存并返回它的租约 (引用计数为 1)。源文件会被移走，调用方只应使用 lease.file()。
+     * 如果同一个 key 已被其他任务先一步放入，则丢弃源文件，直接复用已有产物。
+     */
+    public Lease put(String kind, String key, File source) {
+        if (!enabled) {
+            return new Lease(null, source);
+        }
+        String hash = hash(kind, key);
+        synchronized (this) {
+            Entry existing = entries.get(hash);
+            if (existing != null && existing.file.exists()) {
+                existing.refCount++;
+                source.delete();
+                return new Lease(existing, existing.file);
+            }
+        }
+
+        Path incoming;
+        try {
+            incoming = moveToIncoming(source);
+        } catch (IOException e) {
+            // 缓存失败不影响本次任务，继续使用原文件
+            System.err.println("Failed to store artifact (" + kind + ") " + key + ": " + e.getMessage());
+            return new Lease(null, source);
+        }
+
+        Entry entry;
+        synchronized (this) {
+            // 移动文件期间可能有其他任务放入了同一个产物
+            Entry existing = entries.get(hash);
+            if (existing != null && existing.file.exists()) {
+                existing.refCount++;
+                deleteDirectory(incoming.toFile());
+                return new Lease(existing, existing.file);
+            }
+            if (existing != null) {
+                removeEntry(existing);
+            }
+            Path finalDirectory = rootDirectory.resolve(hash);
+            try {
+                deleteDirectory(finalDirectory.toFile()); // 没有索引的残留目录
+                Files.move(incoming, finalDirectory, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                System.err.println("Failed to store artifact (" + kind + ") " + key + ": " + e.getMessage());
+                return new Lease(null, incoming.resolve(source.getName()).toFile());
+            }
+            File file = finalDirectory.resolve(source.getName()).toFile();
+            entry = new Entry(hash, finalDirectory, file, file.length());
+            entry.refCount = 1;
+            entries.put(hash, entry);
+            totalBytes += entry.bytes;
+            evictIfNeeded();
+        }
+        System.out.println("Stored artifact (" + kind + "): " + key + " (" + entry.bytes + " bytes)");
+        return new Lease(entry, entry.file);
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    private synchronized void release(Entry entry) {
+        entry.refCount = Math.max(0, entry.refCount - 1);
+        evictIfNeeded();
+    }
+
+    /**
+     * 从最久未使用的产物开始淘汰，跳过正在使用的。全部都在使用时允许暂时超出预算。
+     */
+    private void evictIfNeeded() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Entry candidate = iterator.next();
+            if (candidate.refCount > 0) {
+                continue;
+            }
+            iterator.remove();
+            totalBytes -= candidate.bytes;
+            deleteDirectory(candidate.directory.toFile());
+            counter("artifact.store.evictions", "any").increment();
+            System.out.println("Evicted artifact " + candidate.directory.getFileName() + " (" + candidate.bytes + " bytes)");
+        }
+    }
+
+    private void removeEntry(Entry entry) {
+        entries.remove(entry.hash);
+        totalBytes -= entry.bytes;
+        deleteDirectory(entry.directory.toFile());
+    }
+
+    /**
+     * 先把源文件移动到 scratch 目录下的临时子目录，之后再整体重命名为最终目录，
+     * 保证最终目录要么完整存在、要么不存在。
+     */
+    private Path moveToIncoming(File source) throws IOException {
+        Path incoming = rootDirectory.resolve(TEMP_PREFIX + UUID.randomUUID());
+        Files.createDirectories(incoming);
+        Path target = incoming.resolve(source.getName());
+        try {
+            Files.move(source.toPath(), target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // 临时目录与 scratch 目录不在同一个文件系统上，退化为复制
+            Files.move(source.toPath(), target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return incoming;
+    }
+
+    /**
+     * 启动时重建索引：按最后修改时间恢复 LRU 顺序，并清理上次没写完的临时目录。
+     */
+    private void loadExistingEntries() {
+        try {
+            Files.createDirectories(rootDirectory);
+            List<Entry> loaded = new ArrayList<>();
+            try (Stream<Path> directories = Files.list(rootDirectory)) {
+                for (Path directory : directories.toList()) {
+                    if (directory.getFileName().toString().startsWith(TEMP_PREFIX)) {
+                        deleteDirectory(directory.toFile());
+                        continue;
+                    }
+                    File[] files = directory.toFile().listFiles(File::isFile);
+                    if (files == null || files.length != 1) {
+                        deleteDirectory(directory.toFile());
+                        continue;
+                    }
+                    loaded.add(new Entry(directory.getFileName().toString(), directory, files[0], files[0].length()));
+                }
+            }
+            loaded.sort(Comparator.comparingLong(entry -> entry.file.lastModified()));
+            synchronized (this) {
+                for (Entry entry : loaded) {
+                    entries.put(entry.hash, entry);
+                    totalBytes += entry.bytes;
+                }
+                evictIfNeeded();
+            }
+            System.out.println("Artifact store at " + rootDirectory + ": " + entries.size() + " entries, " + totalBytes + " bytes (budget " + maxBytes + ").");
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to initialize artifact store at " + rootDirectory, e);
+        }
+    }
+
+    private Counter counter(String name, String kind) {
+        return meterRegistry.counter(name, "kind", kind);
+    }
+
+    private static String hash(String kind, String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest((kind + "|" + key).getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] allContents = directory.listFiles();
+        if (allContents != null) {
+            for (File file : allContents) {
+                deleteDirectory(file);
+            }
+        }
+        directory.delete();
+    }
+
+    private static final class Entry {
+        private final String hash;
+        private final Path directory;
+        private final File file;
+        private final long bytes;
+        private int refCount;
+
+        private Entry(String hash, Path directory, File file, long bytes) {
+            this.hash = hash;
+            this.directory = directory;
+            this.file = file;
+            this.bytes = bytes;
+        }
+    }
+}
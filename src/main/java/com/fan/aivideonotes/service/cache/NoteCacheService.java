@@ -0,0 +1,86 @@
+package com.fan.aivideonotes.service.cache;
+
+import com.fan.aivideonotes.controller.dto.VideoLinkRequest;
+import com.fan.aivideonotes.model.Note;
+import com.fan.aivideonotes.repository.NoteRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 笔记生成结果的内容寻址缓存。
+ * 缓存键 = 规范化视频链接 + 生成模式 + 模型提供商：
+ * - 已完成的笔记保存在 note 表中（按 cacheKey 查询），可以被后续请求直接复用；
+ * - 正在生成中的笔记登记在内存里，相同键的并发请求只会挂在同一条管线上等待结果 (single-flight)。
+ */
+@Service
+public class NoteCacheService {
+
+    public static final String STATUS_MISS = "MISS";
+    public static final String STATUS_HIT = "HIT";
+    public static final String STATUS_COALESCED = "COALESCED";
+
+    private final NoteRepository noteRepository;
+    private final ConcurrentHashMap<String, CompletableFuture<Note>> inFlight = new ConcurrentHashMap<>();
+
+    @Autowired
+    public NoteCacheService(NoteRepository noteRepository) {
+        this.noteRepository = noteRepository;
+    }
+
+    /**
+     * 计算请求对应的缓存键。
+     * @param request     笔记生成请求
+     * @param providerKey 已解析好的模型提供商 (e.g., "GEMINI")
+     */
+    public String buildCacheKey(VideoLinkRequest request, String providerKey) {
+        VideoLinkRequest.GenerationMode mode = request.getMode() != null ? request.getMode() : VideoLinkRequest.GenerationMode.FLASH;
+        return VideoUrlNormalizer.normalize(request.getUrl()) + "|" + mode.name() + "|" + providerKey;
+    }
+
+    /**
+     * 查找某个缓存键下最近一次成功生成的笔记。
+     */
+    public Optional<Note> findCompleted(String cacheKey) {
+        return noteRepository.findFirstByCacheKeyOrderByCreatedAtDesc(cacheKey);
+    }
+
+    /**
+     * 为缓存键登记一条正在运行的管线。
+     * 如果已经有同键的管线在运行，返回的 Registration 不是 leader，调用方只需要等待它的 future。
+     */
+    public Registration register(String cacheKey) {
+        CompletableFuture<Note> candidate = new CompletableFuture<>();
+        CompletableFuture<Note> existing = inFlight.putIfAbsent(cacheKey, candidate);
+        if (existing != null) {
+            return new Registration(cacheKey, existing, false);
+        }
+        return new Registration(cacheKey, candidate, true);
+    }
+
+    /**
+     * leader 成功生成笔记后调用，唤醒所有挂起的等待者。
+     */
+    public void complete(Registration registration, Note note) {
+        inFlight.remove(registration.cacheKey(), registration.future());
+        registration.future().complete(note);
+    }
+
+    /**
+     * leader 失败后调用，等待者会收到同样的异常。
+     */
+    public void fail(Registration registration, Throwable error) {
+        inFlight.remove(registration.cacheKey(), registration.future());
+        registration.future().completeExceptionally(error);
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    public record Registration(String cacheKey, CompletableFuture<Note> future, boolean leader) {
+    }
+}
@@ -0,0 +1,180 @@
+package com.fan.aivideonotes.service.cache;
+
+import com.fan.aivideonotes.model.PromptCacheEntry;
+import com.fan.aivideonotes.repository.PromptCacheEntryRepository;
+import com.fan.aivideonotes.service.llm.PromptCachePolicy;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 提示词级别的 LLM 回复缓存，键为 provider + model + 提示词的 SHA-256。两级：
+ * - 内存层：Caffeine，按回复的字符数限制总大小 (max-chars)，每个条目按自己的 TTL 过期；
+ * - 持久层 (可选)：Postgres 表 llm_prompt_cache，重启后和其他节点都能命中，过期条目定期清理。
+ * 每次决策都记入 llm.prompt.cache (provider, decision=hit_memory|hit_db|miss|bypass|no_store)；
+ * 命中时省下的提示词和回复字符数记入 llm.prompt.cache.saved.chars，原始生成耗时记入 llm.prompt.cache.saved.latency。
+ */
+@Component
+public class PromptResponseCache {
+
+    private record Entry(String response, long expiresAtMillis, long latencyNanos) {
+    }
+
+    private final PromptCacheEntryRepository repository;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final boolean persistent;
+    private final Duration defaultTtl;
+    private final Cache<String, Entry> memory;
+
+    @Autowired
+    public PromptResponseCache(PromptCacheEntryRepository repository, Environment environment, MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.meterRegistry = meterRegistry;
+        this.enabled = environment.getProperty("app.llm.prompt-cache.enabled", Boolean.class, true);
+        this.persistent = environment.getProperty("app.llm.prompt-cache.persistent", Boolean.class, true);
+        this.defaultTtl = Duration.ofHours(environment.getProperty("app.llm.prompt-cache.ttl-hours", Long.class, 24L));
+        this.memory = Caffeine.newBuilder()
+                .maximumWeight(environment.getProperty("app.llm.prompt-cache.max-chars", Long.class, 20_000_000L))
+                .weigher((String key, Entry entry) -> entry.response().length())
+                .expireAfter(Expiry.writing((String key, Entry entry) ->
+                        Duration.ofMillis(Math.max(0, entry.expiresAtMillis() - System.currentTimeMillis()))))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, memory, "llm-prompt");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 按 policy 查缓存，未命中 (或不允许读缓存) 时调用 generator 生成，并按 policy 写回。
+     * generator 抛出的异常原样抛出，失败的请求不会被缓存。
+     */
+    public String getOrGenerate(String provider, String model, String prompt, PromptCachePolicy policy, Supplier<String> generator) {
+        if (!enabled || policy == null) {
+            return generator.get();
+        }
+        String key = cacheKey(provider, model, prompt);
+        String decision;
+        if (policy.read()) {
+            Optional<String> memoryHit = lookupMemory(key);
+            if (memoryHit.isPresent()) {
+                record(provider, "hit_memory", prompt, memoryHit.get(), key);
+                return memoryHit.get();
+            }
+            Optional<String> dbHit = lookupDatabase(key);
+            if (dbHit.isPresent()) {
+                record(provider, "hit_db", prompt, dbHit.get(), key);
+                return dbHit.get();
+            }
+            decision = "miss";
+        } else {
+            decision = policy.write() ? "bypass" : "no_store";
+        }
+        meterRegistry.counter("llm.prompt.cache", "provider", provider, "decision", decision).increment();
+
+        long start = System.nanoTime();
+        String response = generator.get();
+        long latencyNanos = System.nanoTime() - start;
+        if (policy.write() && response != null && !response.isBlank()) {
+            store(key, provider, model, prompt, response, latencyNanos, policy.ttl() != null ? policy.ttl() : defaultTtl);
+        }
+        return response;
+    }
+
+    /**
+     * 定期删除持久层中过期的条目 (内存层由 Caffeine 自己过期)。
+     */
+    @Scheduled(fixedDelayString = "${app.llm.prompt-cache.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        if (!enabled || !persistent) {
+            return;
+        }
+        try {
+            int deleted = repository.deleteExpired(LocalDateTime.now());
+            if (deleted > 0) {
+                System.out.println("Purged " + deleted + " expired LLM prompt cache entries.");
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Failed to purge LLM prompt cache: " + e.getMessage());
+        }
+    }
+
+    private Optional<String> lookupMemory(String key) {
+        Entry entry = memory.getIfPresent(key);
+        return entry == null ? Optional.empty() : Optional.of(entry.response());
+    }
+
+    private Optional<String> lookupDatabase(String key) {
+        if (!persistent) {
+            return Optional.empty();
+        }
+        try {
+            Optional<PromptCacheEntry> row = repository.findById(key)
+                    .filter(entry -> entry.getExpiresAt().isAfter(LocalDateTime.now()));
+            // 回填内存层，剩余有效期与数据库中一致
+            row.ifPresent(entry -> memory.put(key, new Entry(entry.getResponse(),
+                    entry.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+                    TimeUnit.MILLISECONDS.toNanos(entry.getLatencyMillis()))));
+            return row.map(PromptCacheEntry::getResponse);
+        } catch (RuntimeException e) {
+            // 持久层不可用时退化为只用内存层
+            System.err.println("LLM prompt cache lookup failed: " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private void store(String key, String provider, String model, String prompt, String response, long latencyNanos, Duration ttl) {
+        long expiresAtMillis = System.currentTimeMillis() + ttl.toMillis();
+        memory.put(key, new Entry(response, expiresAtMillis, latencyNanos));
+        if (!persistent) {
+            return;
+        }
+        try {
+            repository.upsert(key, provider, model, response, prompt.length(), TimeUnit.NANOSECONDS.toMillis(latencyNanos),
+                    LocalDateTime.now().plus(ttl));
+        } catch (RuntimeException e) {
+            System.err.println("Failed to persist LLM prompt cache entry: " + e.getMessage());
+        }
+    }
+
+    private void record(String provider, String decision, String prompt, String response, String key) {
+        meterRegistry.counter("llm.prompt.cache", "provider", provider, "decision", decision).increment();
+        meterRegistry.counter("llm.prompt.cache.saved.chars", "provider", provider).increment(prompt.length() + response.length());
+        Entry entry = memory.policy().getIfPresentQuietly(key);
+        if (entry != null && entry.latencyNanos() > 0) {
+            Timer.builder("llm.prompt.cache.saved.latency").tag("provider", provider).register(meterRegistry)
+                    .record(entry.latencyNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    static String cacheKey(String provider, String model, String prompt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((provider + "\n" + model + "\n").getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest(prompt.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.fan.aivideonotes.service.cache;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 把用户提交的视频链接规范化为稳定的缓存标识。
+ * - YouTube / Bilibili 链接会被折叠成 "youtube:&lt;id&gt;" / "bilibili:&lt;BV号&gt;" 的形式；
+ * - 其他链接去掉 fragment 和追踪参数，剩余参数按名称排序。t、start、from 这类通用参数名只在 YouTube / Bilibili 上
+ *   确定是跳转位置或来源统计，其他站点上可能就是视频本身的参数 (e.g., ?start=2 表示第二集)，所以保留。
+ */
+public final class VideoUrlNormalizer {
+
+    private static final Pattern YOUTUBE_ID = Pattern.compile("^[A-Za-z0-9_-]{11}$");
+    private static final Pattern YOUTUBE_PATH_ID = Pattern.compile("^/(?:shorts|embed|live|v)/([A-Za-z0-9_-]{11})");
+    private static final Pattern BILIBILI_VIDEO_ID = Pattern.compile("^/video/((?:BV|bv)[A-Za-z0-9]{10}|(?:av|AV)\\d+)");
+
+    // 任何站点上都只用于来源统计的参数 (utm_* 按前缀匹配)
+    private static final Set<String> GLOBAL_TRACKING_PARAMS = Set.of("fbclid", "gclid", "igshid");
+    // 只在对应站点上去掉的参数：来源统计或播放起始位置，不影响视频内容
+    private static final Set<String> YOUTUBE_PARAMS = Set.of("si", "feature", "pp", "ab_channel", "t", "start");
+    private static final Set<String> BILIBILI_PARAMS = Set.of(
+            "spm_id_from", "vd_source", "from", "from_spmid", "share_source", "share_medium", "share_plat",
+            "share_session_id", "share_tag", "share_from", "bbid", "ts", "timestamp", "unique_k", "t", "start_progress");
+
+    private VideoUrlNormalizer() {
+    }
+
+    /**
+     * @param rawUrl 用户提交的原始链接
+     * @return 规范化后的标识；无法解析的链接按去除首尾空白后的原样返回
+     */
+    public static String normalize(String rawUrl) {
+        if (rawUrl == null) {
+            return "";
+        }
+        String trimmed = rawUrl.trim();
+        URI uri;
+        try {
+            uri = new URI(trimmed);
+        } catch (URISyntaxException e) {
+            return trimmed;
+        }
+        if (uri.getHost() == null) {
+            return trimmed;
+        }
+
+        String host = uri.getHost().toLowerCase(Locale.ROOT);
+        if (host.startsWith("www.")) {
+            host = host.substring(4);
+        } else if (host.startsWith("m.")) {
+            host = host.substring(2);
+        }
+        String path = uri.getRawPath() == null ? "" : uri.getRawPath();
+        Map<String, String> params = parseQuery(uri.getRawQuery());
+
+        if (host.equals("youtu.be")) {
+            String id = path.startsWith("/") ? path.substring(1) : path;
+            if (YOUTUBE_ID.matcher(id).matches()) {
+                return "youtube:" + id;
+            }
+        }
+        if (host.equals("youtube.com") || host.equals("music.youtube.com") || host.equals("youtube-nocookie.com")) {
+            String id = params.get("v");
+            if (id != null && YOUTUBE_ID.matcher(id).matches()) {
+                return "youtube:" + id;
+            }
+            Matcher matcher = YOUTUBE_PATH_ID.matcher(path);
+            if (matcher.find()) {
+                return "youtube:" + matcher.group(1);
+            }
+        }
+        if (host.equals("bilibili.com")) {
+            Matcher matcher = BILIBILI_VIDEO_ID.matcher(path);
+            if (matcher.find()) {
+                String id = matcher.group(1);
+                // BV 号前缀统一为大写，av 号统一为小写
+                id = id.substring(0, 2).equalsIgnoreCase("bv") ? "BV" + id.substring(2) : "av" + id.substring(2);
+                // 多P视频的不同分P是不同的内容，必须保留在键里
+                String page = params.get("p");
+                return (page == null || page.equals("1")) ? "bilibili:" + id : "bilibili:" + id + "?p=" + page;
+            }
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(uri.getScheme() == null ? "https" : uri.getScheme().toLowerCase(Locale.ROOT))
+                .append("://").append(host);
+        if (uri.getPort() != -1) {
+            builder.append(':').append(uri.getPort());
+        }
+        String normalizedPath = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+        builder.append(normalizedPath);
+        String query = buildQuery(params, siteParams(host));
+        if (!query.isEmpty()) {
+            builder.append('?').append(query);
+        }
+        return builder.toString();
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new TreeMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int idx = pair.indexOf('=');
+            String name = idx >= 0 ? pair.substring(0, idx) : pair;
+            String value = idx >= 0 ? pair.substring(idx + 1) : "";
+            params.putIfAbsent(name, value);
+        }
+        return params;
+    }
+
+    private static Set<String> siteParams(String host) {
+        if (isHost(host, "youtube.com") || isHost(host, "youtu.be") || isHost(host, "youtube-nocookie.com")) {
+            return YOUTUBE_PARAMS;
+        }
+        if (isHost(host, "bilibili.com") || isHost(host, "b23.tv")) {
+            return BILIBILI_PARAMS;
+        }
+        return Set.of();
+    }
+
+    private static boolean isHost(String host, String domain) {
+        return host.equals(domain) || host.endsWith("." + domain);
+    }
+
+    private static String buildQuery(Map<String, String> params, Set<String> siteParams) {
+        StringBuilder builder = new StringBuilder();
+        params.forEach((name, value) -> {
+            String lowerName = name.toLowerCase(Locale.ROOT);
+            if (lowerName.startsWith("utm_") || GLOBAL_TRACKING_PARAMS.contains(lowerName) || siteParams.contains(lowerName)) {
+                return;
+            }
+            if (builder.length() > 0) {
+                builder.append('&');
+            }
+            builder.append(name);
+            if (!value.isEmpty()) {
+                builder.append('=').append(value);
+            }
+        });
+        return builder.toString();
+    }
+}
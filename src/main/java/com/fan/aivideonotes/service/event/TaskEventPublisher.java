@@ -0,0 +1,115 @@
+package com.fan.aivideonotes.service.event;
+
+import com.fan.aivideonotes.controller.dto.PartialNoteBlock;
+import com.fan.aivideonotes.controller.dto.TaskEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 进程内的任务事件发布/订阅。
+ * 流水线在每次状态变化时发布事件，SSE 订阅者直接从内存中收到推送，不需要读数据库。
+ * 只有在本节点上运行的任务才会有事件；其他节点上的任务由订阅方自行回退为低频查询数据库。
+ * 流式生成的部分笔记块也通过这里推送，并在任务结束前保留在内存中，供中途加入的订阅者补齐。
+ */
+@Component
+public class TaskEventPublisher {
+
+    private final Map<String, Set<Listener>> subscribers = new ConcurrentHashMap<>();
+    // 本节点上正在运行的任务的最新事件，供新订阅者获取初始状态
+    private final Map<String, TaskEvent> latestEvents = new ConcurrentHashMap<>();
+    // 本节点上正在流式生成的任务已经解析出的笔记块
+    private final Map<String, List<PartialNoteBlock>> partialBlocks = new ConcurrentHashMap<>();
+
+    public void publish(TaskEvent event) {
+        if (event.isTerminal()) {
+            latestEvents.remove(event.taskId());
+            partialBlocks.remove(event.taskId());
+        } else {
+            latestEvents.put(event.taskId(), event);
+        }
+        notifyListeners(event.taskId(), listener -> listener.onStatus(event));
+    }
+
+    public void publishPartialBlock(String taskId, JsonNode block) {
+        List<PartialNoteBlock> blocks = partialBlocks.computeIfAbsent(taskId, id -> new ArrayList<>());
+        PartialNoteBlock partial;
+        synchronized (blocks) {
+            partial = new PartialNoteBlock(taskId, blocks.size(), block);
+            blocks.add(partial);
+        }
+        notifyListeners(taskId, listener -> listener.onPartialBlock(partial));
+    }
+
+    public void resetPartialBlocks(String taskId) {
+        partialBlocks.remove(taskId);
+        notifyListeners(taskId, listener -> listener.onPartialReset(taskId));
+    }
+
+    /**
+     * 订阅某个任务的事件。
+     * @return 用于取消订阅的回调
+     */
+    public Runnable subscribe(String taskId, Listener listener) {
+        subscribers.computeIfAbsent(taskId, id -> ConcurrentHashMap.newKeySet()).add(listener);
+        return () -> subscribers.computeIfPresent(taskId, (id, listeners) -> {
+            listeners.remove(listener);
+            return listeners.isEmpty() ? null : listeners;
+        });
+    }
+
+    /**
+     * 任务在本节点上运行时，返回它的最新事件。
+     */
+    public Optional<TaskEvent> latest(String taskId) {
+        return Optional.ofNullable(latestEvents.get(taskId));
+    }
+
+    /**
+     * 返回任务目前为止已推送的部分笔记块的快照。
+     */
+    public List<PartialNoteBlock> partialBlocks(String taskId) {
+        List<PartialNoteBlock> blocks = partialBlocks.get(taskId);
+        if (blocks == null) {
+            return List.of();
+        }
+        synchronized (blocks) {
+            return List.copyOf(blocks);
+        }
+    }
+
+    private void notifyListeners(String taskId, Consumer<Listener> action) {
+        Set<Listener> listeners = subscribers.get(taskId);
+        if (listeners == null) {
+            return;
+        }
+        for (Listener listener : listeners) {
+            try {
+                action.accept(listener);
+            } catch (Exception e) {
+                System.err.println("Failed to deliver event of task " + taskId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 任务事件的订阅者。
+     */
+    public interface Listener {
+
+        void onStatus(TaskEvent event);
+
+        default void onPartialBlock(PartialNoteBlock block) {
+        }
+
+        default void onPartialReset(String taskId) {
+        }
+    }
+}
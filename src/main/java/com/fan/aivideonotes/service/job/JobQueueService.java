@@ -0,0 +1,163 @@
+package com.fan.aivideonotes.service.job;
+
+import com.fan.aivideonotes.controller.dto.TaskEvent;
+import com.fan.aivideonotes.controller.dto.VideoLinkRequest;
+import com.fan.aivideonotes.model.GenerationJob;
+import com.fan.aivideonotes.model.Task;
+import com.fan.aivideonotes.repository.GenerationJobRepository;
+import com.fan.aivideonotes.repository.TaskRepository;
+import com.fan.aivideonotes.service.NoteGenerationService;
+import com.fan.aivideonotes.service.event.TaskEventPublisher;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基于 PostgreSQL 的持久化作业队列。
+ * 作业与任务在同一个事务中写入，JVM 重启或节点宕机都不会丢失；
+ * 认领使用 FOR UPDATE SKIP LOCKED，持有者通过心跳续约，租约过期后作业会被重新认领。
+ */
+@Service
+public class JobQueueService {
+
+    private final GenerationJobRepository jobRepository;
+    private final TaskRepository taskRepository;
+    private final ObjectMapper objectMapper;
+    private final TaskEventPublisher taskEventPublisher;
+
+    @Value("${app.jobs.lease-seconds:60}")
+    private int leaseSeconds;
+    @Value("${app.jobs.max-attempts:3}")
+    private int maxAttempts;
+
+    @Autowired
+    public JobQueueService(GenerationJobRepository jobRepository,
+                           TaskRepository taskRepository,
+                           ObjectMapper objectMapper,
+                           TaskEventPublisher taskEventPublisher) {
+        this.jobRepository = jobRepository;
+        this.taskRepository = taskRepository;
+        this.objectMapper = objectMapper;
+        this.taskEventPublisher = taskEventPublisher;
+    }
+
+    /**
+     * 保存任务并把对应的生成作业放入队列。
+     */
+    @Transactional
+    public void submit(Task task, VideoLinkRequest request) {
+        taskRepository.save(task);
+
+        GenerationJob job = new GenerationJob();
+        job.setId(task.getId());
+        job.setPayload(serialize(request));
+        job.setState(GenerationJob.STATE_QUEUED);
+        jobRepository.save(job);
+    }
+
+    /**
+     * 为当前节点认领最多 limit 个作业。超过最大尝试次数的作业 (多次导致节点宕机) 会被直接标记为失败。
+     */
+    @Transactional
+    public List<ClaimedJob> claim(String owner, int limit) {
+        List<String> ids = jobRepository.lockClaimableIds(limit);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        jobRepository.markClaimed(ids, owner, leaseSeconds);
+
+        List<ClaimedJob> claimed = new ArrayList<>();
+        for (GenerationJob job : jobRepository.findAllById(ids)) {
+            if (job.getAttempts() > maxAttempts) {
+                jobRepository.finish(job.getId(), owner, GenerationJob.STATE_FAILED);
+                taskRepository.findById(job.getId()).ifPresent(task -> {
+                    task.setStatus("FAILED");
+                    task.setStatusMessage("Task was abandoned after " + maxAttempts + " attempts.");
+                    taskRepository.save(task);
+                    taskEventPublisher.publish(TaskEvent.fromTask(task));
+                });
+                continue;
+            }
+            if (job.getAttempts() > 1) {
+                System.out.println("Re-claimed job " + job.getId() + " after an expired lease (attempt " + job.getAttempts() + ").");
+            }
+            claimed.add(new ClaimedJob(job.getId(), deserialize(job.getPayload()), job.getAttempts()));
+        }
+        return claimed;
+    }
+
+    /**
+     * 续约。返回 false 表示租约已经不属于当前节点。
+     */
+    @Transactional
+    public boolean renewLease(String jobId, String owner) {
+        return jobRepository.renewLease(jobId, owner, leaseSeconds) > 0;
+    }
+
+    @Transactional
+    public boolean finish(String jobId, String owner, boolean succeeded) {
+        return jobRepository.finish(jobId, owner, succeeded ? GenerationJob.STATE_DONE : GenerationJob.STATE_FAILED) > 0;
+    }
+
+    @Transactional
+    public boolean release(String jobId, String owner) {
+        return jobRepository.release(jobId, owner) > 0;
+    }
+
+    /**
+     * 取消任务：作业不再被认领，正在处理它的节点会在下次续约时发现并停止。
+     */
+    @Transactional
+    public CancelResult cancel(String taskId) {
+        Task task = taskRepository.findById(taskId).orElse(null);
+        if (task == null) {
+            return CancelResult.NOT_FOUND;
+        }
+        if (TaskEvent.fromTask(task).isTerminal() || jobRepository.cancel(taskId) == 0) {
+            return CancelResult.ALREADY_FINISHED;
+        }
+        task.setStatus(NoteGenerationService.STATUS_CANCELLED);
+        task.setStatusMessage("Task was cancelled.");
+        taskRepository.save(task);
+        taskEventPublisher.publish(TaskEvent.fromTask(task));
+        return CancelResult.CANCELLED;
+    }
+
+    private String serialize(VideoLinkRequest request) {
+        // 用户的 API Key 不写入作业表
+        VideoLinkRequest persisted = new VideoLinkRequest();
+        persisted.setUrl(request.getUrl());
+        persisted.setUserId(request.getUserId());
+        persisted.setMode(request.getMode());
+        persisted.setProvider(request.getProvider());
+        try {
+            return objectMapper.writeValueAsString(persisted);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize generation job payload", e);
+        }
+    }
+
+    private VideoLinkRequest deserialize(String payload) {
+        try {
+            return objectMapper.readValue(payload, VideoLinkRequest.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to deserialize generation job payload", e);
+        }
+    }
+
+    public enum CancelResult {
+        CANCELLED, NOT_FOUND, ALREADY_FINISHED
+    }
+
+    /**
+     * 被当前节点认领的作业。
+     */
+    public record ClaimedJob(String id, VideoLinkRequest request, int attempts) {
+    }
+}
@@ -0,0 +1,138 @@
+package com.fan.aivideonotes.service.job;
+
+import com.fan.aivideonotes.service.NoteGenerationService;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 作业队列的工作者。每个应用节点运行一个实例：
+ * - 定时从队列认领作业，交给 NoteGenerationService 的流水线执行 (本节点同时处理的作业数有上限)；
+ * - 定时为正在处理的作业续约；
+ * - 停机时把未完成的作业交还队列。
+ */
+@Component
+public class JobWorker {
+
+    private final JobQueueService jobQueueService;
+    private final NoteGenerationService noteGenerationService;
+    private final String nodeId;
+    private final Set<String> runningJobs = ConcurrentHashMap.newKeySet();
+    private volatile boolean shuttingDown = false;
+
+    // 本节点同时处理的作业数上限
+    @Value("${app.jobs.max-concurrent:8}")
+    private int maxConcurrentJobs;
+
+    @Autowired
+    public JobWorker(JobQueueService jobQueueService,
+                     NoteGenerationService noteGenerationService,
+                     @Value("${app.jobs.node-id:}") String configuredNodeId) {
+        this.jobQueueService = jobQueueService;
+        this.noteGenerationService = noteGenerationService;
+        this.nodeId = configuredNodeId.isBlank() ? defaultNodeId() : configuredNodeId;
+        System.out.println("Job worker started with node id: " + nodeId);
+    }
+
+    @Scheduled(fixedDelayString = "${app.jobs.poll-interval-ms:1000}")
+    public void poll() {
+        int capacity = maxConcurrentJobs - runningJobs.size();
+        if (shuttingDown || capacity <= 0) {
+            return;
+        }
+
+        List<JobQueueService.ClaimedJob> jobs;
+        try {
+            jobs = jobQueueService.claim(nodeId, capacity);
+        } catch (Exception e) {
+            System.err.println("Failed to claim jobs from the queue: " + e.getMessage());
+            return;
+        }
+
+        for (JobQueueService.ClaimedJob job : jobs) {
+            runningJobs.add(job.id());
+            CompletableFuture<Void> completion;
+            try {
+                completion = noteGenerationService.generateNotesForVideo(job.id(), job.request());
+            } catch (Exception e) {
+                completion = CompletableFuture.failedFuture(e);
+            }
+            completion.whenComplete((ignored, error) -> onJobFinished(job.id(), error == null));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.jobs.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        for (String jobId : runningJobs) {
+            try {
+                if (!jobQueueService.renewLease(jobId, nodeId)) {
+                    // 作业被取消，或租约过期后被其他节点重新认领：停止本节点上的处理
+                    System.err.println("Lost the lease of job " + jobId + ", it was cancelled or re-claimed by another node.");
+                    cancel(jobId);
+                }
+            } catch (Exception e) {
+                System.err.println("Failed to renew the lease of job " + jobId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void releaseRunningJobs() {
+        shuttingDown = true;
+        for (String jobId : runningJobs) {
+            try {
+                if (jobQueueService.release(jobId, nodeId)) {
+                    System.out.println("Released job " + jobId + " back to the queue.");
+                }
+            } catch (Exception e) {
+                System.err.println("Failed to release job " + jobId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 停止本节点上的作业：杀掉它的外部进程，并立即腾出并发名额。
+     * @return 作业不在本节点运行时返回 false
+     */
+    public boolean cancel(String jobId) {
+        boolean wasRunning = runningJobs.remove(jobId);
+        return noteGenerationService.cancel(jobId) || wasRunning;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    private void onJobFinished(String jobId, boolean succeeded) {
+        if (!runningJobs.remove(jobId)) {
+            return; // 租约已丢失或已交还，结果由新的持有者负责
+        }
+        try {
+            if (!jobQueueService.finish(jobId, nodeId, succeeded)) {
+                System.err.println("Job " + jobId + " finished, but this node no longer holds its lease.");
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to mark job " + jobId + " as finished: " + e.getMessage());
+        }
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown-host";
+        }
+        return host + "-" + ManagementFactory.getRuntimeMXBean().getPid() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,264 @@
+package com.fan.aivideonotes.service.llm;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 单个提供商 + 模型 (e.g., GEMINI / flash) 的准入限流器：
+ * - 两个令牌桶：每分钟请求数、每分钟输入字节数 (音频大小或提示词长度，作为 token 数的近似)；
+ * - 并发上限按 AIMD 自适应：请求成功时缓慢加一，收到 429 时减半，并在 Retry-After 期间暂停放行；
+ * - 等待者严格按到达顺序 (FIFO) 放行，队头没拿到名额之前，后面的请求不会插队。
+ * 指标 (tag: provider, model)：llm.limiter.concurrency.limit / in.flight / queue.depth、
+ * llm.limiter.wait (排队耗时)、llm.limiter.throttled (收到 429 的次数)。
+ */
+public class AdaptiveRateLimiter {
+
+    // 两次“减半”之间的最小间隔：同一时刻在途的多个请求一起收到 429 时只算一次
+    private static final long DECREASE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // 后台任务只使用“富余”配额：请求令牌至少保留每分钟配额的这一比例给前台请求
+    private static final double SPARE_TOKEN_RESERVE = 0.25;
+
+    /**
+     * @param requestsPerMinute   每分钟请求数，0 表示不限制
+     * @param inputBytesPerMinute 每分钟输入字节数，0 表示不限制
+     * @param initialConcurrency  初始并发上限
+     * @param maxConcurrency      并发上限的上界
+     * @param maxWait             最长排队时间，超时后抛出异常
+     * @param defaultRetryAfter   429 响应没有给出 Retry-After 时的暂停时间
+     */
+    public record Limits(double requestsPerMinute, double inputBytesPerMinute, int initialConcurrency,
+                         int maxConcurrency, Duration maxWait, Duration defaultRetryAfter) {
+    }
+
+    /**
+     * 一次放行。调用结束后必须且只能调用一次 onSuccess / onThrottled / onFailure。
+     */
+    public final class Permit {
+        private boolean released;
+
+        private Permit() {
+        }
+
+        public void onSuccess() {
+            release(() -> concurrencyLimit = Math.min(limits.maxConcurrency(), concurrencyLimit + 1.0 / concurrencyLimit));
+        }
+
+        /**
+         * 收到 429：并发上限减半，并在 retryAfter (为 null 时使用默认值) 内暂停放行。
+         */
+        public void onThrottled(Duration retryAfter) {
+            throttledCounter.increment();
+            Duration pause = retryAfter != null ? retryAfter : limits.defaultRetryAfter();
+            release(() -> {
+                long now = System.nanoTime();
+                if (now - lastDecreaseNanos > DECREASE_INTERVAL_NANOS) {
+                    concurrencyLimit = Math.max(1, concurrencyLimit / 2);
+                    lastDecreaseNanos = now;
+                }
+                pausedUntilNanos = Math.max(pausedUntilNanos, now + pause.toNanos());
+                requestTokens = Math.min(requestTokens, 0); // 暂停结束后不立即突发
+            });
+            System.err.println("LLM " + provider + "/" + model + " throttled (429): concurrency limit now "
+                    + String.format("%.1f", getConcurrencyLimit()) + ", pausing for " + pause.toSeconds() + "s.");
+        }
+
+        public void onFailure() {
+            release(() -> {
+            });
+        }
+
+        private void release(Runnable adjustment) {
+            lock.lock();
+            try {
+                if (released) {
+                    return;
+                }
+                released = true;
+                inFlight--;
+                adjustment.run();
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private final String provider;
+    private final String model;
+    private final Limits limits;
+    private final Timer waitTimer;
+    private final Counter throttledCounter;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final ArrayDeque<Object> waiters = new ArrayDeque<>();
+    private double requestTokens;
+    private double byteTokens;
+    private long lastRefillNanos = System.nanoTime();
+    private double concurrencyLimit;
+    private int inFlight;
+    private long pausedUntilNanos = System.nanoTime();
+    private long lastDecreaseNanos = System.nanoTime() - DECREASE_INTERVAL_NANOS - 1;
+
+    public AdaptiveRateLimiter(String provider, String model, Limits limits, MeterRegistry meterRegistry) {
+        this.provider = provider;
+        this.model = model;
+        this.limits = limits;
+        this.requestTokens = limits.requestsPerMinute();
+        this.byteTokens = limits.inputBytesPerMinute();
+        this.concurrencyLimit = Math.max(1, Math.min(limits.initialConcurrency(), limits.maxConcurrency()));
+
+        this.waitTimer = Timer.builder("llm.limiter.wait")
+                .description("Time spent queueing for LLM admission")
+                .tags("provider", provider, "model", model)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.throttledCounter = Counter.builder("llm.limiter.throttled")
+                .description("HTTP 429 responses received from the LLM provider")
+                .tags("provider", provider, "model", model)
+                .register(meterRegistry);
+        Gauge.builder("llm.limiter.concurrency.limit", this, AdaptiveRateLimiter::getConcurrencyLimit)
+                .tags("provider", provider, "model", model).register(meterRegistry);
+        Gauge.builder("llm.limiter.in.flight", this, AdaptiveRateLimiter::getInFlight)
+                .tags("provider", provider, "model", model).register(meterRegistry);
+        Gauge.builder("llm.limiter.queue.depth", this, AdaptiveRateLimiter::getQueueDepth)
+                .tags("provider", provider, "model", model).register(meterRegistry);
+    }
+
+    /**
+     * 排队等待放行。
+     *
+     * @param estimatedInputBytes 本次请求的输入大小估计
+     * @throws IllegalStateException 超过最长排队时间
+     */
+    public Permit acquire(long estimatedInputBytes) throws InterruptedException {
+        Object ticket = new Object();
+        long start = System.nanoTime();
+        long deadline = start + limits.maxWait().toNanos();
+        // 超过桶容量的大请求按满桶计算，否则永远等不到
+        double byteCost = limits.inputBytesPerMinute() > 0 ? Math.min(estimatedInputBytes, limits.inputBytesPerMinute()) : 0;
+
+        lock.lock();
+        try {
+            waiters.addLast(ticket);
+            try {
+                while (true) {
+                    long now = System.nanoTime();
+                    refill(now);
+                    long delay = waiters.peekFirst() == ticket ? admissionDelay(byteCost, now) : Long.MAX_VALUE;
+                    if (delay == 0) {
+                        requestTokens -= limits.requestsPerMinute() > 0 ? 1 : 0;
+                        byteTokens -= byteCost;
+                        inFlight++;
+                        break;
+                    }
+                    long remaining = deadline - now;
+                    if (remaining <= 0) {
+                        throw new IllegalStateException("Timed out after " + limits.maxWait().toSeconds()
+                                + "s waiting for LLM capacity (" + provider + "/" + model + ").");
+                    }
+                    changed.awaitNanos(Math.min(delay, remaining));
+                }
+            } finally {
+                waiters.remove(ticket);
+                // 队头变了，让新的队头重新检查
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+        waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return new Permit();
+    }
+
+    /**
+     * 是否有富余配额：没有人排队、没有在 429 暂停期、至少空出一个并发名额，且请求令牌高于保留量。
+     * 供低优先级的后台任务 (e.g., 术语解释预热) 在发请求前检查，避免挤占前台请求。
+     */
+    public boolean hasSpareCapacity() {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            refill(now);
+            if (!waiters.isEmpty() || now < pausedUntilNanos) {
+                return false;
+            }
+            if (inFlight + 1 >= (int) Math.floor(concurrencyLimit)) {
+                return false;
+            }
+            return limits.requestsPerMinute() <= 0 || requestTokens >= 1 + limits.requestsPerMinute() * SPARE_TOKEN_RESERVE;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getConcurrencyLimit() {
+        lock.lock();
+        try {
+            return concurrencyLimit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return waiters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 队头还需要等待多久 (纳秒)。0 表示可以立即放行；在途请求已满时返回 Long.MAX_VALUE，等待释放时被唤醒。
+     */
+    private long admissionDelay(double byteCost, long now) {
+        if (now < pausedUntilNanos) {
+            return pausedUntilNanos - now;
+        }
+        if (inFlight >= (int) Math.floor(concurrencyLimit)) {
+            return Long.MAX_VALUE;
+        }
+        long delay = 0;
+        if (limits.requestsPerMinute() > 0 && requestTokens < 1) {
+            delay = Math.max(delay, nanosUntil(1 - requestTokens, limits.requestsPerMinute()));
+        }
+        if (limits.inputBytesPerMinute() > 0 && byteTokens < byteCost) {
+            delay = Math.max(delay, nanosUntil(byteCost - byteTokens, limits.inputBytesPerMinute()));
+        }
+        return delay;
+    }
+
+    private void refill(long now) {
+        double minutes = (now - lastRefillNanos) / (double) TimeUnit.MINUTES.toNanos(1);
+        lastRefillNanos = now;
+        if (limits.requestsPerMinute() > 0) {
+            requestTokens = Math.min(limits.requestsPerMinute(), requestTokens + minutes * limits.requestsPerMinute());
+        }
+        if (limits.inputBytesPerMinute() > 0) {
+            byteTokens = Math.min(limits.inputBytesPerMinute(), byteTokens + minutes * limits.inputBytesPerMinute());
+        }
+    }
+
+    private static long nanosUntil(double missingTokens, double tokensPerMinute) {
+        return Math.max(1, (long) Math.ceil(missingTokens / tokensPerMinute * TimeUnit.MINUTES.toNanos(1)));
+    }
+}
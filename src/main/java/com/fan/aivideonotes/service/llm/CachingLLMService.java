@@ -0,0 +1,61 @@
+package com.fan.aivideonotes.service.llm;
+
+import com.fan.aivideonotes.controller.dto.VideoLinkRequest;
+import com.fan.aivideonotes.service.cache.PromptResponseCache;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.File;
+import java.util.function.Consumer;
+
+/**
+ * 提示词缓存装饰器，由 LLMServiceProvider 包在故障转移链的最外层：
+ * 相同的文本提示词 (e.g., 不同导出中相同的术语 + 上下文、失败后的重试) 直接返回缓存的回复，不占用限流配额，也不经过熔断器。
+ * 缓存键使用调用方请求的提供商和它的文本模型；故障转移到其他提供商得到的回复同样记在请求的提供商名下。
+ * 音频接口不缓存。
+ */
+public class CachingLLMService implements LLMService {
+
+    private final LLMService delegate;
+    private final PromptResponseCache cache;
+
+    public CachingLLMService(LLMService delegate, PromptResponseCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public String generateNotesFromAudio(File audioFile, VideoLinkRequest request) {
+        return delegate.generateNotesFromAudio(audioFile, request);
+    }
+
+    @Override
+    public String generateNotesFromAudioStreaming(File audioFile, VideoLinkRequest request, Consumer<JsonNode> onBlock) {
+        return delegate.generateNotesFromAudioStreaming(audioFile, request, onBlock);
+    }
+
+    @Override
+    public String generateTextResponse(String prompt) {
+        return generateTextResponse(prompt, PromptCachePolicy.DEFAULT);
+    }
+
+    @Override
+    public String generateTextResponse(String prompt, PromptCachePolicy policy) {
+        return cache.getOrGenerate(delegate.getProviderKey(), delegate.getTextModel(), prompt, policy,
+                () -> delegate.generateTextResponse(prompt));
+    }
+
+    @Override
+    public String getProviderKey() {
+        return delegate.getProviderKey();
+    }
+
+    @Override
+    public String getTextModel() {
+        return delegate.getTextModel();
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return delegate.isAvailable();
+    }
+}
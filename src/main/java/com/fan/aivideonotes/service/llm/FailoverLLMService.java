@@ -0,0 +1,279 @@
+package com.fan.aivideonotes.service.llm;
+
+import com.fan.aivideonotes.controller.dto.VideoLinkRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 按顺序排列的提供商故障转移链，由 LLMServiceProvider 为每个提供商组装 (e.g., GEMINI -> OPENAI)。
+ * - 每个提供商的熔断器打开时直接跳过，不再等满超时；
+ * - 某个提供商失败 (5xx、超时、网络错误等) 后记入其熔断器，并转到链上的下一个；
+ *   请求本身的问题 (e.g., 400) 不算提供商故障，也不转移；
+ * - 提供商不支持的能力 (UnsupportedOperationException，e.g., OpenAI 不支持音频) 直接跳过；
+ * - 短文本请求可选“对冲”：第一个请求被限流器放行后 hedge.delay 内没有返回，且提供商有富余配额时，再发一个相同请求，
+ *   取先返回的结果并中断另一个。两个请求各自计入熔断器。
+ */
+public class FailoverLLMService implements LLMService {
+
+    /**
+     * 对冲请求配置：只对不超过 maxPromptChars 的文本请求生效。
+     */
+    public record HedgeSettings(boolean enabled, int maxPromptChars, Duration delay) {
+    }
+
+    public record Member(LLMService service, ProviderCircuitBreaker breaker) {
+    }
+
+    /**
+     * 一次对冲中的一个请求。cancelled 在中断之前设置，被中断而失败的请求不计入熔断器。
+     */
+    private record Attempt(Thread thread, AtomicBoolean cancelled) {
+
+        void cancel() {
+            if (thread.isAlive()) {
+                cancelled.set(true);
+                thread.interrupt();
+            }
+        }
+    }
+
+    private final List<Member> chain;
+    private final HedgeSettings hedgeSettings;
+    private final MeterRegistry meterRegistry;
+
+    public FailoverLLMService(List<Member> chain, HedgeSettings hedgeSettings, MeterRegistry meterRegistry) {
+        if (chain.isEmpty()) {
+            throw new IllegalArgumentException("Failover chain must contain at least one provider.");
+        }
+        this.chain = List.copyOf(chain);
+        this.hedgeSettings = hedgeSettings;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public String generateNotesFromAudio(File audioFile, VideoLinkRequest request) {
+        return invoke(direct(service -> service.generateNotesFromAudio(audioFile, request)), null);
+    }
+
+    @Override
+    public String generateNotesFromAudioStreaming(File audioFile, VideoLinkRequest request, Consumer<JsonNode> onBlock) {
+        // 已经推送过笔记块后不能再换提供商，否则前端会收到两份不一致的笔记
+        AtomicBoolean emitted = new AtomicBoolean(false);
+        Consumer<JsonNode> tracking = block -> {
+            emitted.set(true);
+            onBlock.accept(block);
+        };
+        return invoke(direct(service -> service.generateNotesFromAudioStreaming(audioFile, request, tracking)), emitted);
+    }
+
+    @Override
+    public String generateTextResponse(String prompt) {
+        boolean hedge = hedgeSettings.enabled() && prompt.length() <= hedgeSettings.maxPromptChars();
+        return invoke(hedge ? member -> hedged(member, prompt) : direct(service -> service.generateTextResponse(prompt)), null);
+    }
+
+    @Override
+    public String getProviderKey() {
+        return chain.get(0).service().getProviderKey();
+    }
+
+    @Override
+    public String getTextModel() {
+        return chain.get(0).service().getTextModel();
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return chain.stream().anyMatch(member -> member.service().isAvailable());
+    }
+
+    /**
+     * 依次尝试链上的提供商。call 负责把每次请求的结果记入该提供商的熔断器 (见 record)，这里只决定是否转到下一个。
+     */
+    private <T> T invoke(Function<Member, T> call, AtomicBoolean emitted) {
+        RuntimeException lastFailure = null;
+        RuntimeException unsupported = null;
+        for (Member member : chain) {
+            LLMService service = member.service();
+            ProviderCircuitBreaker breaker = member.breaker();
+            if (!service.isAvailable()) {
+                continue;
+            }
+            if (!breaker.tryAcquire()) {
+                System.out.println("Skipping LLM provider " + service.getProviderKey() + ": circuit is " + breaker.getState() + ".");
+                continue;
+            }
+            if (lastFailure != null) {
+                meterRegistry.counter("llm.provider.failovers", "provider", service.getProviderKey()).increment();
+                System.out.println("Failing over to LLM provider " + service.getProviderKey() + "...");
+            }
+            try {
+                return call.apply(member);
+            } catch (UnsupportedOperationException e) {
+                unsupported = e;
+            } catch (RuntimeException e) {
+                if (!isProviderFailure(e) || (emitted != null && emitted.get())) {
+                    throw e;
+                }
+                System.err.println("LLM provider " + service.getProviderKey() + " failed: " + e.getMessage());
+                lastFailure = e;
+            }
+        }
+        if (lastFailure != null) {
+            throw lastFailure;
+        }
+        if (unsupported != null) {
+            throw unsupported;
+        }
+        throw new IllegalStateException("No LLM provider available for " + getProviderKey()
+                + ": all circuits in the failover chain are open or unconfigured.");
+    }
+
+    private <T> Function<Member, T> direct(Function<LLMService, T> call) {
+        return member -> record(member, () -> call.apply(member.service()), () -> false);
+    }
+
+    /**
+     * 执行一次已经通过 breaker.tryAcquire 的请求，并把结果记入熔断器：
+     * 成功、失败 (提供商故障)，或者忽略 (不支持的能力、请求本身的问题、对冲中被取消的一方)。
+     */
+    private <T> T record(Member member, Supplier<T> call, BooleanSupplier cancelled) {
+        ProviderCircuitBreaker breaker = member.breaker();
+        long start = System.nanoTime();
+        try {
+            T result = call.get();
+            breaker.onSuccess(System.nanoTime() - start);
+            return result;
+        } catch (UnsupportedOperationException e) {
+            breaker.onIgnored();
+            throw e;
+        } catch (RuntimeException e) {
+            if (cancelled.getAsBoolean() || !isProviderFailure(e)) {
+                breaker.onIgnored();
+            } else {
+                breaker.onFailure(System.nanoTime() - start, e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 对冲：先发一个请求，它被限流器放行 (不再排队) 后 hedge.delay 内没有返回时，再发一个，返回先成功的结果。
+     * - 第一个请求还在排队说明提供商已经饱和或被限流，此时不计时也不对冲，以免加剧 429；
+     * - 没有富余配额 (hasSpareTextCapacity) 或熔断器不再放行时也不对冲；
+     * - 有结果后中断另一个请求，释放它的并发名额；两个都失败时抛出后失败的异常。
+     */
+    private String hedged(Member member, String prompt) {
+        LLMService service = member.service();
+        CompletableFuture<Void> admitted = new CompletableFuture<>();
+        Supplier<String> call = service instanceof RateLimitedLLMService limited
+                ? () -> limited.generateTextResponseWhenAdmitted(prompt, () -> admitted.complete(null))
+                : () -> {
+                    admitted.complete(null); // 没有准入控制时直接发出
+                    return service.generateTextResponse(prompt);
+                };
+        CompletableFuture<String> result = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        Attempt primary = launch(member, call, result, outstanding);
+        Attempt hedge = null;
+        try {
+            CompletableFuture.anyOf(admitted, result).get();
+            if (!result.isDone() && !completesWithin(result, hedgeSettings.delay())) {
+                if (hasSpareCapacity(service) && member.breaker().tryAcquire()) {
+                    outstanding.incrementAndGet();
+                    meterRegistry.counter("llm.provider.hedges", "provider", service.getProviderKey()).increment();
+                    hedge = launch(member, () -> service.generateTextResponse(prompt), result, outstanding);
+                } else {
+                    meterRegistry.counter("llm.provider.hedges.skipped", "provider", service.getProviderKey()).increment();
+                }
+            }
+            return result.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for LLM response.", e);
+        } finally {
+            primary.cancel();
+            if (hedge != null) {
+                hedge.cancel();
+            }
+        }
+    }
+
+    private static boolean completesWithin(CompletableFuture<String> result, Duration delay) throws InterruptedException {
+        try {
+            result.get(delay.toMillis(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            return true; // 失败也是结束，由调用方从 result 中取出异常
+        }
+    }
+
+    private static boolean hasSpareCapacity(LLMService service) {
+        return !(service instanceof RateLimitedLLMService limited) || limited.hasSpareTextCapacity();
+    }
+
+    /**
+     * 在虚拟线程上执行一个请求 (等待响应不占平台线程)，结果写入 result。
+     */
+    private Attempt launch(Member member, Supplier<String> call, CompletableFuture<String> result, AtomicInteger outstanding) {
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        Thread thread = Thread.ofVirtual().name("llm-hedge").start(() -> {
+            try {
+                result.complete(record(member, call, cancelled::get));
+            } catch (RuntimeException e) {
+                if (outstanding.decrementAndGet() == 0) {
+                    result.completeExceptionally(e);
+                }
+            }
+        });
+        return new Attempt(thread, cancelled);
+    }
+
+    private static RuntimeException unwrap(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof RuntimeException runtime ? runtime : new RuntimeException(cause);
+    }
+
+    /**
+     * 请求参数错误等 4xx 是调用方的问题，换提供商也无济于事；
+     * 401 / 403 (Key 失效或无权限)、408 / 429 以及其他错误视为该提供商不可用。
+     */
+    private static boolean isProviderFailure(Throwable error) {
+        if (error instanceof IllegalArgumentException) {
+            return false;
+        }
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            int status = 0;
+            if (current instanceof HttpStatusCodeException e) {
+                status = e.getStatusCode().value();
+            } else if (current instanceof WebClientResponseException e) {
+                status = e.getStatusCode().value();
+            }
+            if (status != 0) {
+                return status >= 500 || status == 401 || status == 403 || status == 408 || status == 429;
+            }
+        }
+        return true;
+    }
+}
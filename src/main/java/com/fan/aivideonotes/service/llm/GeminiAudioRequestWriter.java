@@ -0,0 +1,80 @@
+package com.fan.aivideonotes.service.llm;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+/**
+ * 以流的方式把 Gemini 的音频请求 JSON 直接写到 HTTP 连接上：
+ * {"contents":[{"parts":[{"text": prompt}, {"inlineData": {"mimeType": ..., "data": <Base64>}}]}]}
+ * 音频文件由 JsonGenerator.writeBinary 边读边做 Base64 编码，不会生成 byte[]、编码后的 String 或 Map 结构，
+ * 因此无论文件多大，每个请求的内存占用都只有几个固定大小的缓冲区。
+ */
+public class GeminiAudioRequestWriter {
+
+    private final JsonFactory jsonFactory;
+
+    public GeminiAudioRequestWriter(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * 写出内联音频的请求体。
+     */
+    public void writeInline(OutputStream out, String prompt, File audioFile, String mimeType) throws IOException {
+        try (JsonGenerator generator = startRequest(out, prompt);
+             InputStream audio = Files.newInputStream(audioFile.toPath())) {
+            generator.writeStartObject();
+            generator.writeObjectFieldStart("inlineData");
+            generator.writeStringField("mimeType", mimeType);
+            generator.writeFieldName("data");
+            generator.writeBinary(audio, -1);
+            generator.writeEndObject();
+            generator.writeEndObject();
+            endRequest(generator);
+        }
+    }
+
+    /**
+     * 写出通过 Files API 引用音频的请求体。
+     */
+    public void writeFileReference(OutputStream out, String prompt, String fileUri, String mimeType) throws IOException {
+        try (JsonGenerator generator = startRequest(out, prompt)) {
+            generator.writeStartObject();
+            generator.writeObjectFieldStart("fileData");
+            generator.writeStringField("mimeType", mimeType);
+            generator.writeStringField("fileUri", fileUri);
+            generator.writeEndObject();
+            generator.writeEndObject();
+            endRequest(generator);
+        }
+    }
+
+    private JsonGenerator startRequest(OutputStream out, String prompt) throws IOException {
+        JsonGenerator generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8);
+        // 输出流由 HTTP 客户端管理，这里只负责 flush
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("contents");
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("parts");
+        generator.writeStartObject();
+        generator.writeStringField("text", prompt);
+        generator.writeEndObject();
+        return generator;
+    }
+
+    private void endRequest(JsonGenerator generator) throws IOException {
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.flush();
+    }
+}
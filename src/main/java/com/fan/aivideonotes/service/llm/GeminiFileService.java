@@ -0,0 +1,152 @@
+package com.fan.aivideonotes.service.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Gemini Files API 客户端。
+ * 采用 resumable 协议上传：先发起上传会话拿到上传地址，再把文件从磁盘按块流式写出，
+ * 整个过程不会把文件读进内存，因此堆占用与媒体大小无关。
+ * 上传后的文件通过 fileUri 在 generateContent 请求中引用，用完即删 (服务端 48 小时后也会自动过期)。
+ */
+@Component
+public class GeminiFileService {
+
+    private static final String STATE_ACTIVE = "ACTIVE";
+    private static final String STATE_PROCESSING = "PROCESSING";
+
+    private final WebClient webClient;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.api.gemini.key}")
+    private String geminiApiKey;
+    @Value("${app.api.gemini.file-upload-url:https://generativelanguage.googleapis.com/upload/v1beta/files}")
+    private String fileUploadUrl;
+    // 文件元数据接口的根地址，文件名形如 "files/abc123"
+    @Value("${app.api.gemini.files-base-url:https://generativelanguage.googleapis.com/v1beta}")
+    private String filesBaseUrl;
+    // 上传后等待文件变为 ACTIVE 的最长时间
+    @Value("${app.api.gemini.file-activation-timeout-seconds:120}")
+    private long activationTimeoutSeconds;
+
+    public GeminiFileService(WebClient webClient, ObjectMapper objectMapper) {
+        this.webClient = webClient;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 上传后的远端文件。name 用于查询/删除，uri 用于在生成请求中引用。
+     */
+    public record UploadedFile(String name, String uri, String mimeType) {
+    }
+
+    public UploadedFile upload(File file, String mimeType) {
+        long length = file.length();
+        System.out.println("Uploading " + file.getName() + " (" + length + " bytes) to Gemini Files API...");
+
+        // 1. 发起 resumable 上传会话，响应头 X-Goog-Upload-URL 即本次上传地址
+        ResponseEntity<Void> startResponse = webClient.post()
+                .uri(fileUploadUrl)
+                .header("X-goog-api-key", geminiApiKey)
+                .header("X-Goog-Upload-Protocol", "resumable")
+                .header("X-Goog-Upload-Command", "start")
+                .header("X-Goog-Upload-Header-Content-Length", String.valueOf(length))
+                .header("X-Goog-Upload-Header-Content-Type", mimeType)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("file", Map.of("display_name", file.getName())))
+                .retrieve()
+                .toBodilessEntity()
+                .block();
+        String uploadUrl = startResponse == null ? null : startResponse.getHeaders().getFirst("X-Goog-Upload-URL");
+        if (uploadUrl == null) {
+            throw new IllegalStateException("Gemini Files API did not return an upload URL.");
+        }
+
+        // 2. 一次性上传并结束会话。FileSystemResource 以 DataBuffer 分块读取，不会整体载入内存
+        String uploadResponse = webClient.post()
+                .uri(uploadUrl)
+                .header("X-Goog-Upload-Offset", "0")
+                .header("X-Goog-Upload-Command", "upload, finalize")
+                .contentLength(length)
+                .contentType(MediaType.parseMediaType(mimeType))
+                .body(BodyInserters.fromResource(new FileSystemResource(file)))
+                .retrieve()
+                .bodyToMono(String.class)
+                .block();
+
+        JsonNode fileNode = readTree(uploadResponse).path("file");
+        UploadedFile uploaded = new UploadedFile(
+                fileNode.path("name").asText(),
+                fileNode.path("uri").asText(),
+                fileNode.path("mimeType").asText(mimeType));
+        if (uploaded.name().isEmpty() || uploaded.uri().isEmpty()) {
+            throw new IllegalStateException("Unexpected Gemini Files API upload response: " + uploadResponse);
+        }
+        System.out.println("Uploaded to Gemini Files API: " + uploaded.name());
+
+        // 3. 音视频文件上传后可能仍在 PROCESSING，必须等到 ACTIVE 才能被模型引用
+        awaitActive(uploaded, fileNode.path("state").asText(STATE_ACTIVE));
+        return uploaded;
+    }
+
+    /**
+     * 删除远端文件。失败只记录日志，文件到期后服务端会自行清理。
+     */
+    public void delete(UploadedFile file) {
+        try {
+            webClient.delete()
+                    .uri(filesBaseUrl + "/" + file.name())
+                    .header("X-goog-api-key", geminiApiKey)
+                    .retrieve()
+                    .toBodilessEntity()
+                    .block();
+        } catch (Exception e) {
+            System.err.println("Failed to delete Gemini file " + file.name() + ": " + e.getMessage());
+        }
+    }
+
+    private void awaitActive(UploadedFile file, String state) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(activationTimeoutSeconds).toNanos();
+        while (STATE_PROCESSING.equals(state)) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Gemini file " + file.name() + " is still processing after " + activationTimeoutSeconds + "s.");
+            }
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for Gemini file to become active.", e);
+            }
+            String response = webClient.get()
+                    .uri(filesBaseUrl + "/" + file.name())
+                    .header("X-goog-api-key", geminiApiKey)
+                    .retrieve()
+                    .bodyToMono(String.class)
+                    .block();
+            state = readTree(response).path("state").asText(STATE_ACTIVE);
+        }
+        if (!STATE_ACTIVE.equals(state)) {
+            throw new IllegalStateException("Gemini file " + file.name() + " ended in state " + state + ".");
+        }
+    }
+
+    private JsonNode readTree(String json) {
+        try {
+            return objectMapper.readTree(json == null ? "{}" : json);
+        } catch (IOException e) {
+            throw new IllegalStateException("Malformed Gemini Files API response: " + json, e);
+        }
+    }
+}
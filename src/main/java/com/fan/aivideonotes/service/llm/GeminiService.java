@@ -3,28 +3,39 @@ package com.fan.aivideonotes.service.llm;
 import com.fan.aivideonotes.controller.dto.VideoLinkRequest;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.reactivestreams.Publisher;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
 import org.springframework.util.FileCopyUtils;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.util.Base64;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 
 
@@ -32,12 +43,18 @@ import java.util.Map;
  * [重构后]
  * 实现了 LLMService 接口，用于与 Google Gemini API 进行交互。
  * 这是系统默认的 AI 服务提供商。
+ * 所有请求都走共享连接池的 WebClient (见 HttpClientConfig)；HTTP 错误被转换为与 RestTemplate 相同的
+ * HttpServerErrorException / HttpClientErrorException，以便 @Retryable 和调用方按状态码处理。
  */
 @Service("geminiService")
 public class GeminiService implements LLMService {
 
-    private final RestTemplate restTemplate;
+    private final WebClient webClient;
     private final ObjectMapper objectMapper;
+    private final GeminiFileService geminiFileService;
+    private final GeminiAudioRequestWriter requestWriter;
+    // 为 WebClient 写请求体的线程；写出过程会随网络背压阻塞，使用虚拟线程
+    private final Executor bodyWriterExecutor = command -> Thread.ofVirtual().name("gemini-body-writer").start(command);
     private final String promptTemplate;
 
     @Value("${app.api.gemini.key}")
@@ -46,10 +63,15 @@ public class GeminiService implements LLMService {
     private String geminiFlashApiUrl;
     @Value("${app.api.gemini.url.pro}")
     private String geminiProApiUrl;
+    // 不超过该大小的音频直接 Base64 内联在请求里，更大的先通过 Files API 上传再按 URI 引用
+    @Value("${app.api.gemini.inline-max-bytes:10485760}")
+    private long inlineMaxBytes;
 
-    public GeminiService(RestTemplate restTemplate, ObjectMapper objectMapper) {
-        this.restTemplate = restTemplate;
+    public GeminiService(WebClient webClient, ObjectMapper objectMapper, GeminiFileService geminiFileService) {
+        this.webClient = webClient;
         this.objectMapper = objectMapper;
+        this.geminiFileService = geminiFileService;
+        this.requestWriter = new GeminiAudioRequestWriter(objectMapper.getFactory());
         this.promptTemplate = loadPromptTemplate();
     }
 
@@ -63,37 +85,78 @@ public class GeminiService implements LLMService {
     )
     public String generateNotesFromAudio(File audioFile, VideoLinkRequest request) {
         System.out.println("Generating notes from audio using Gemini Multi-modal API...");
+        AudioPart audioPart = null;
         try {
-            byte[] fileContent = Files.readAllBytes(audioFile.toPath());
-            String encodedString = Base64.getEncoder().encodeToString(fileContent);
-
-            VideoLinkRequest.GenerationMode mode = request.getMode();
-            String apiUrl = switch (mode) {
-                case PRO -> geminiProApiUrl;
-                default -> geminiFlashApiUrl;
-            };
-            System.out.println("Using Gemini model mode: " + mode + " with URL: " + apiUrl);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("X-goog-api-key", geminiApiKey);
-            headers.setContentType(MediaType.APPLICATION_JSON);
-
-            Map<String, Object> textData = Map.of("text", promptTemplate);
-            Map<String, Object> inlineData = Map.of("inlineData", Map.of("mimeType", "audio/mpeg", "data", encodedString));
-            Map<String, Object> content = Map.of("parts", List.of(textData, inlineData));
-            Map<String, Object> requestBody = Map.of("contents", List.of(content));
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-            String response = restTemplate.postForObject(apiUrl, entity, String.class);
+            String apiUrl = resolveApiUrl(request.getMode());
+            System.out.println("Using Gemini model mode: " + request.getMode() + " with URL: " + apiUrl);
+
+            audioPart = prepareAudioPart(audioFile);
+            // 请求体直接流式写到连接上 (分块传输)，不在内存中组装
+            String response = webClient.post()
+                    .uri(apiUrl)
+                    .header("X-goog-api-key", geminiApiKey)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(BodyInserters.fromPublisher(audioRequestBody(audioPart), DataBuffer.class))
+                    .retrieve()
+                    .bodyToMono(String.class)
+                    .block();
 
             return parseGeminiResponse(response);
 
+        } catch (WebClientResponseException e) {
+            System.err.println("Gemini API returned HTTP " + e.getStatusCode().value() + " for audio processing.");
+            throw toHttpStatusException(e);
         } catch (IOException e) {
             System.err.println("File handling error during Gemini audio processing: " + e.getMessage());
             throw new RuntimeException("Failed to read or encode audio file for Gemini.", e);
         } catch (Exception e) {
             System.err.println("Error in Gemini audio processing: " + e.getMessage());
             throw new RuntimeException("Failed to generate notes from audio with Gemini: " + e.getMessage(), e);
+        } finally {
+            releaseAudioPart(audioPart);
+        }
+    }
+
+    /**
+     * 使用 :streamGenerateContent (SSE) 流式生成笔记。
+     * 每当模型输出的 JSON 中出现一个完整的 {type, content} 块，就立即回调 onBlock；
+     * 最终返回的笔记与非流式接口一致，由完整的输出文本解析而来。
+     * 注意：流式调用不做自动重试，调用方应在尚未收到任何块时回退到 generateNotesFromAudio。
+     */
+    @Override
+    public String generateNotesFromAudioStreaming(File audioFile, VideoLinkRequest request, Consumer<JsonNode> onBlock) {
+        System.out.println("Streaming notes from audio using Gemini Multi-modal API...");
+        AudioPart audioPart = null;
+        try {
+            String apiUrl = toStreamingUrl(resolveApiUrl(request.getMode()));
+            IncrementalNoteBlockParser parser = new IncrementalNoteBlockParser(objectMapper);
+            audioPart = prepareAudioPart(audioFile);
+            webClient.post()
+                    .uri(apiUrl)
+                    .header("X-goog-api-key", geminiApiKey)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .accept(MediaType.TEXT_EVENT_STREAM)
+                    .body(BodyInserters.fromPublisher(audioRequestBody(audioPart), DataBuffer.class))
+                    .retrieve()
+                    .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<String>>() {})
+                    .mapNotNull(ServerSentEvent::data)
+                    .doOnNext(chunk -> {
+                        String text = extractChunkText(chunk);
+                        if (!text.isEmpty()) {
+                            parser.feed(text).forEach(onBlock);
+                        }
+                    })
+                    .blockLast();
+
+            return normalizeNotesJson(parser.getText());
+
+        } catch (WebClientResponseException e) {
+            throw toHttpStatusException(e);
+        } catch (IOException e) {
+            System.err.println("Error in Gemini streaming audio processing: " + e.getMessage());
+            throw new RuntimeException("Failed to stream notes from audio with Gemini: " + e.getMessage(), e);
+        } finally {
+            releaseAudioPart(audioPart);
         }
     }
 
@@ -108,20 +171,24 @@ public class GeminiService implements LLMService {
         try {
             String apiUrl = geminiFlashApiUrl;
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("X-goog-api-key", geminiApiKey);
-            headers.setContentType(MediaType.APPLICATION_JSON);
-
             Map<String, Object> textPart = Map.of("text", prompt);
             Map<String, Object> content = Map.of("parts", List.of(textPart));
             Map<String, Object> requestBody = Map.of("contents", List.of(content));
 
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-
-            String response = restTemplate.postForObject(apiUrl, entity, String.class);
+            String response = webClient.post()
+                    .uri(apiUrl)
+                    .header("X-goog-api-key", geminiApiKey)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(requestBody)
+                    .retrieve()
+                    .bodyToMono(String.class)
+                    .block();
 
             return parseGeminiTextResponse(response);
 
+        } catch (WebClientResponseException e) {
+            System.err.println("Gemini API returned HTTP " + e.getStatusCode().value() + " for text generation.");
+            throw toHttpStatusException(e);
         } catch (Exception e) {
             System.err.println("Error in Gemini text generation: " + e.getMessage());
             throw new RuntimeException("Failed to generate text from Gemini", e);
@@ -133,6 +200,14 @@ public class GeminiService implements LLMService {
         return "GEMINI";
     }
 
+    @Override
+    public String getTextModel() {
+        // ".../models/gemini-1.5-flash-latest:generateContent" -> "gemini-1.5-flash-latest"
+        int begin = geminiFlashApiUrl.lastIndexOf("/models/");
+        int end = geminiFlashApiUrl.lastIndexOf(':');
+        return begin >= 0 && end > begin ? geminiFlashApiUrl.substring(begin + "/models/".length(), end) : geminiFlashApiUrl;
+    }
+
 
     // --- 私有辅助方法 (Private Helper Methods) ---
 
@@ -150,6 +225,104 @@ public class GeminiService implements LLMService {
         }
     }
 
+    private String resolveApiUrl(VideoLinkRequest.GenerationMode mode) {
+        return switch (mode) {
+            case PRO -> geminiProApiUrl;
+            default -> geminiFlashApiUrl;
+        };
+    }
+
+    // ".../models/xxx:generateContent" -> ".../models/xxx:streamGenerateContent?alt=sse"
+    private String toStreamingUrl(String apiUrl) {
+        return apiUrl.replace(":generateContent", ":streamGenerateContent") + "?alt=sse";
+    }
+
+    /**
+     * 请求中的音频部分：要么是内联的本地文件，要么是已上传到 Files API 的文件 (请求结束后需要删除)。
+     */
+    private record AudioPart(File inlineFile, String mimeType, GeminiFileService.UploadedFile uploaded) {
+    }
+
+    /**
+     * 小文件内联 (写请求体时再流式 Base64 编码)，大文件先流式上传到 Files API，请求里只带 fileUri。
+     */
+    private AudioPart prepareAudioPart(File audioFile) {
+        String mimeType = audioMimeType(audioFile);
+        if (audioFile.length() <= inlineMaxBytes) {
+            return new AudioPart(audioFile, mimeType, null);
+        }
+        GeminiFileService.UploadedFile uploaded = geminiFileService.upload(audioFile, mimeType);
+        return new AudioPart(null, uploaded.mimeType(), uploaded);
+    }
+
+    /**
+     * 按扩展名推断音频的 MIME 类型 (扩展名由预处理配置决定，见 AudioProfiles)。
+     */
+    private String audioMimeType(File audioFile) {
+        String name = audioFile.getName().toLowerCase(Locale.ROOT);
+        String extension = name.substring(name.lastIndexOf('.') + 1);
+        return switch (extension) {
+            case "ogg", "opus" -> "audio/ogg";
+            case "m4a", "aac" -> "audio/aac";
+            case "wav" -> "audio/wav";
+            case "flac" -> "audio/flac";
+            default -> "audio/mpeg";
+        };
+    }
+
+    private void releaseAudioPart(AudioPart audioPart) {
+        if (audioPart != null && audioPart.uploaded() != null) {
+            geminiFileService.delete(audioPart.uploaded());
+        }
+    }
+
+    /**
+     * 把音频请求体包装为 WebClient 的请求体：由一个虚拟线程边读文件边写出，随网络背压阻塞，内存占用恒定。
+     */
+    private Publisher<DataBuffer> audioRequestBody(AudioPart audioPart) {
+        return DataBufferUtils.outputStreamPublisher(out -> {
+            try {
+                writeAudioRequest(out, audioPart);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, DefaultDataBufferFactory.sharedInstance, bodyWriterExecutor);
+    }
+
+    /**
+     * WebClient 的 HTTP 错误 -> RestTemplate 风格的异常 (保留状态码、响应头和响应体，e.g., 429 的 Retry-After)。
+     */
+    static RuntimeException toHttpStatusException(WebClientResponseException e) {
+        Charset charset = StandardCharsets.UTF_8;
+        if (e.getStatusCode().is5xxServerError()) {
+            return HttpServerErrorException.create(e.getStatusCode(), e.getStatusText(), e.getHeaders(), e.getResponseBodyAsByteArray(), charset);
+        }
+        return HttpClientErrorException.create(e.getStatusCode(), e.getStatusText(), e.getHeaders(), e.getResponseBodyAsByteArray(), charset);
+    }
+
+    private void writeAudioRequest(OutputStream out, AudioPart audioPart) throws IOException {
+        if (audioPart.uploaded() != null) {
+            requestWriter.writeFileReference(out, promptTemplate, audioPart.uploaded().uri(), audioPart.mimeType());
+        } else {
+            requestWriter.writeInline(out, promptTemplate, audioPart.inlineFile(), audioPart.mimeType());
+        }
+    }
+
+    /**
+     * 取出流式响应中一个分片的文本；没有文本的分片 (e.g., 只有 usageMetadata) 返回空串。
+     */
+    private String extractChunkText(String chunkJson) {
+        try {
+            JsonNode root = objectMapper.readTree(chunkJson);
+            if (root.has("error")) {
+                throw new IllegalStateException("Gemini API returned an error: " + root.path("error").path("message").asText("Unknown error"));
+            }
+            return root.path("candidates").path(0).path("content").path("parts").path(0).path("text").asText("");
+        } catch (IOException e) {
+            throw new IllegalStateException("Gemini returned a malformed stream chunk.", e);
+        }
+    }
+
     /**
      * 解析 Gemini API 返回的、期望为【JSON结构】的响应 (用于笔记生成)。
      */
@@ -175,25 +348,11 @@ public class GeminiService implements LLMService {
             throw new IOException("Could not find 'text' field in a valid Gemini response structure.");
         }
 
-        String rawText = textNode.asText();
-        String cleanedJson = rawText.trim().replaceAll("^```json\\s*", "").replaceAll("\\s*```$", "");
-
-        JsonNode rootNode;
-        try {
-            rootNode = objectMapper.readTree(cleanedJson);
-        } catch (IOException e) {
-            System.err.println("The cleaned text from AI is NOT a valid JSON: " + cleanedJson);
-            throw new IOException("AI did not return a valid JSON string as requested by the prompt.", e);
-        }
-
-        if (rootNode.isArray()) {
-            Map<String, JsonNode> wrapper = Map.of("notes", rootNode);
-            cleanedJson = objectMapper.writeValueAsString(wrapper);
-        } else if (rootNode.isObject() && !rootNode.has("notes")) {
-            throw new IOException("AI returned a valid JSON object but is missing the required top-level 'notes' key.");
-        }
+        return normalizeNotesJson(textNode.asText());
+    }
 
-        return cleanedJson;
+    private String normalizeNotesJson(String rawText) throws IOException {
+        return NotesJsonNormalizer.normalize(objectMapper, rawText);
     }
 
     /**
@@ -0,0 +1,105 @@
+package com.fan.aivideonotes.service.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 从流式返回的、尚不完整的笔记 JSON 文本中增量地解析出已经完整的 {type, content} 块。
+ * 支持 {"notes": [ {...}, ... ]} 和 [ {...}, ... ] 两种外层结构 (前面可以带 ```json 围栏)。
+ * 只识别外层笔记数组的直接子对象，knowledge_point 内部的 content 对象不会被单独当作块。
+ */
+public class IncrementalNoteBlockParser {
+
+    private final ObjectMapper objectMapper;
+    private final StringBuilder text = new StringBuilder();
+    // 括号栈：'{' 或 '['
+    private final StringBuilder containers = new StringBuilder();
+    private int scanned = 0;
+    private boolean inString = false;
+    private boolean escaped = false;
+    private int blockStart = -1;
+    private boolean started = false;
+
+    public IncrementalNoteBlockParser(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 追加一段新收到的文本。
+     * @return 这段文本使之变得完整的笔记块 (按出现顺序)
+     */
+    public List<JsonNode> feed(String chunk) {
+        text.append(chunk);
+        List<JsonNode> blocks = new ArrayList<>();
+        for (; scanned < text.length(); scanned++) {
+            char c = text.charAt(scanned);
+            if (!started) {
+                // 跳过 ```json 之类的前缀，直到遇到第一个 JSON 容器
+                if (c != '{' && c != '[') {
+                    continue;
+                }
+                started = true;
+            }
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+            switch (c) {
+                case '"' -> inString = true;
+                case '{', '[' -> {
+                    if (c == '{' && isNotesArray()) {
+                        blockStart = scanned;
+                    }
+                    containers.append(c);
+                }
+                case '}', ']' -> {
+                    if (containers.isEmpty()) {
+                        continue;
+                    }
+                    containers.setLength(containers.length() - 1);
+                    if (c == '}' && blockStart >= 0 && isNotesArray()) {
+                        parseBlock(text.substring(blockStart, scanned + 1), blocks);
+                        blockStart = -1;
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * @return 目前为止收到的全部文本
+     */
+    public String getText() {
+        return text.toString();
+    }
+
+    // 栈顶是外层笔记数组：顶层数组 "[" 或者顶层对象中的数组 "{["
+    private boolean isNotesArray() {
+        String stack = containers.toString();
+        return stack.equals("[") || stack.equals("{[");
+    }
+
+    private void parseBlock(String json, List<JsonNode> blocks) {
+        try {
+            JsonNode block = objectMapper.readTree(json);
+            if (block.has("type")) {
+                blocks.add(block);
+            }
+        } catch (IOException e) {
+            System.err.println("Skipping a malformed partial note block: " + e.getMessage());
+        }
+    }
+}
@@ -1,10 +1,42 @@
 package com.fan.aivideonotes.service.llm;
 
 import com.fan.aivideonotes.controller.dto.VideoLinkRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+
 import java.io.File;
+import java.util.function.Consumer;
 
 public interface LLMService {
     String generateNotesFromAudio(File audioFile, VideoLinkRequest request);
     String generateTextResponse(String prompt);
     String getProviderKey();
-}
\ No newline at end of file
+
+    /**
+     * 按调用方的缓存策略生成文本。只有最外层的 CachingLLMService 会用到 policy，其余实现直接忽略。
+     */
+    default String generateTextResponse(String prompt, PromptCachePolicy policy) {
+        return generateTextResponse(prompt);
+    }
+
+    /**
+     * 文本接口实际使用的模型名，作为提示词缓存键的一部分：换模型后不会复用旧模型的回复。
+     */
+    default String getTextModel() {
+        return "default";
+    }
+
+    /**
+     * 提供商是否已配置可用 (e.g., 已设置 API Key)。不可用的提供商在故障转移链中会被跳过。
+     */
+    default boolean isAvailable() {
+        return true;
+    }
+
+    /**
+     * 流式生成笔记：每解析出一个完整的笔记块就回调 onBlock，返回值与 generateNotesFromAudio 相同。
+     * 不支持流式输出的提供商默认退化为一次性生成，不会回调 onBlock。
+     */
+    default String generateNotesFromAudioStreaming(File audioFile, VideoLinkRequest request, Consumer<JsonNode> onBlock) {
+        return generateNotesFromAudio(audioFile, request);
+    }
+}
@@ -0,0 +1,29 @@
+package com.fan.aivideonotes.service.llm;
+
+import com.fan.aivideonotes.service.LLMServiceProvider;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * GET /actuator/llmproviders：各 LLM 提供商的熔断器状态、最近窗口内的失败率和延迟。
+ */
+@Component
+@Endpoint(id = "llmproviders")
+public class LlmProvidersEndpoint {
+
+    private final LLMServiceProvider llmServiceProvider;
+
+    public LlmProvidersEndpoint(LLMServiceProvider llmServiceProvider) {
+        this.llmServiceProvider = llmServiceProvider;
+    }
+
+    @ReadOperation
+    public List<ProviderCircuitBreaker.Snapshot> providers() {
+        return llmServiceProvider.getCircuitBreakers().stream()
+                .map(ProviderCircuitBreaker::snapshot)
+                .toList();
+    }
+}
@@ -0,0 +1,38 @@
+package com.fan.aivideonotes.service.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 清理模型输出的笔记文本 (去掉 ```json 围栏)，并统一为 {"notes": [...]} 结构。
+ * 音频生成和字幕生成共用，保证两条路径存进数据库的笔记格式一致。
+ */
+public final class NotesJsonNormalizer {
+
+    private NotesJsonNormalizer() {
+    }
+
+    public static String normalize(ObjectMapper objectMapper, String rawText) throws IOException {
+        String cleanedJson = rawText.trim().replaceAll("^```json\\s*", "").replaceAll("\\s*```$", "");
+
+        JsonNode rootNode;
+        try {
+            rootNode = objectMapper.readTree(cleanedJson);
+        } catch (IOException e) {
+            System.err.println("The cleaned text from AI is NOT a valid JSON: " + cleanedJson);
+            throw new IOException("AI did not return a valid JSON string as requested by the prompt.", e);
+        }
+
+        if (rootNode.isArray()) {
+            Map<String, JsonNode> wrapper = Map.of("notes", rootNode);
+            cleanedJson = objectMapper.writeValueAsString(wrapper);
+        } else if (rootNode.isObject() && !rootNode.has("notes")) {
+            throw new IOException("AI returned a valid JSON object but is missing the required top-level 'notes' key.");
+        }
+
+        return cleanedJson;
+    }
+}
@@ -1,18 +1,46 @@
 package com.fan.aivideonotes.service.llm;
 
 import com.fan.aivideonotes.controller.dto.VideoLinkRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.retry.annotation.Backoff;
+import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 
 /**
  * [重构后]
- * 实现了 LLMService 接口，作为 OpenAI API 的一个占位符服务。
- * 当前版本尚未实现具体功能，但已为未来扩展做好了准备。
+ * 实现了 LLMService 接口，调用 OpenAI 兼容的 Chat Completions 接口 (OpenAI、DeepSeek、Kimi 等均可，改 base-url 即可)。
+ * 目前只支持文本生成，主要作为 Gemini 不可用时解释类请求的故障转移目标 (见 LLMServiceProvider)。
+ * 未配置 API Key 时 isAvailable() 返回 false，故障转移链会跳过它。
  */
 @Service("openAiService")
 public class OpenAiService implements LLMService {
 
+    private final WebClient webClient;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.api.openai.key:}")
+    private String openAiApiKey;
+    @Value("${app.api.openai.base-url:https://api.openai.com/v1}")
+    private String baseUrl;
+    @Value("${app.api.openai.model:gpt-4o-mini}")
+    private String model;
+
+    public OpenAiService(WebClient webClient, ObjectMapper objectMapper) {
+        this.webClient = webClient;
+        this.objectMapper = objectMapper;
+    }
+
     @Override
     public String generateNotesFromAudio(File audioFile, VideoLinkRequest request) {
         // OpenAI 的标准 Chat Completions API 不直接支持音频文件输入。
@@ -21,12 +49,38 @@ public class OpenAiService implements LLMService {
     }
 
     @Override
+    @Retryable(
+            retryFor = { HttpServerErrorException.class },
+            maxAttempts = 3,
+            backoff = @Backoff(delay = 2000, multiplier = 2)
+    )
     public String generateTextResponse(String prompt) {
-        // 这是未来需要实现的核心逻辑。
-        // 在这里，我们会使用 RestTemplate 或 OpenAI 的官方 SDK 来调用 API。
-        // 通常需要从 application.properties 或用户请求中获取 API Key。
-        System.out.println("Executing OpenAI Service (Not Implemented)...");
-        throw new UnsupportedOperationException("OpenAIService: Text generation feature is not yet implemented.");
+        if (!isAvailable()) {
+            throw new UnsupportedOperationException("OpenAIService: app.api.openai.key is not configured.");
+        }
+        System.out.println("Generating text response from OpenAI-compatible API (" + model + ")...");
+        try {
+            Map<String, Object> message = Map.of("role", "user", "content", prompt);
+            Map<String, Object> requestBody = Map.of("model", model, "messages", List.of(message));
+
+            String response = webClient.post()
+                    .uri(baseUrl + "/chat/completions")
+                    .headers(headers -> headers.setBearerAuth(openAiApiKey))
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(requestBody)
+                    .retrieve()
+                    .bodyToMono(String.class)
+                    .block();
+
+            return parseChatCompletion(response);
+
+        } catch (WebClientResponseException e) {
+            System.err.println("OpenAI-compatible API returned HTTP " + e.getStatusCode().value() + " for text generation.");
+            throw GeminiService.toHttpStatusException(e);
+        } catch (Exception e) {
+            System.err.println("Error in OpenAI text generation: " + e.getMessage());
+            throw new RuntimeException("Failed to generate text from OpenAI-compatible API", e);
+        }
     }
 
     @Override
@@ -34,4 +88,29 @@ public class OpenAiService implements LLMService {
         // 返回一个唯一的、大写的标识符。
         return "OPENAI";
     }
-}
\ No newline at end of file
+
+    @Override
+    public String getTextModel() {
+        return model;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return openAiApiKey != null && !openAiApiKey.isBlank();
+    }
+
+    private String parseChatCompletion(String jsonResponse) throws IOException {
+        if (jsonResponse == null || jsonResponse.isBlank()) {
+            throw new IOException("Empty or blank response from OpenAI-compatible API.");
+        }
+        JsonNode root = objectMapper.readTree(jsonResponse);
+        if (root.has("error")) {
+            throw new IOException("OpenAI-compatible API returned an error: " + root.path("error").path("message").asText("Unknown error"));
+        }
+        JsonNode content = root.path("choices").path(0).path("message").path("content");
+        if (!content.isTextual()) {
+            throw new IOException("Could not find 'choices[0].message.content' in the OpenAI-compatible response.");
+        }
+        return content.asText();
+    }
+}
@@ -0,0 +1,23 @@
+package com.fan.aivideonotes.service.llm;
+
+import java.time.Duration;
+
+/**
+ * 调用方对单次文本请求的提示词缓存控制 (见 CachingLLMService)。
+ *
+ * @param ttl   写入缓存的有效期；null 表示使用 app.llm.prompt-cache.ttl-hours
+ * @param read  是否允许直接返回缓存中的回复
+ * @param write 是否把这次生成的回复写入缓存
+ */
+public record PromptCachePolicy(Duration ttl, boolean read, boolean write) {
+
+    public static final PromptCachePolicy DEFAULT = new PromptCachePolicy(null, true, true);
+    // 不读缓存，强制重新生成，并用新回复覆盖旧条目 (e.g., 缓存中的回复无法解析时)
+    public static final PromptCachePolicy BYPASS = new PromptCachePolicy(null, false, true);
+    // 完全不经过缓存
+    public static final PromptCachePolicy NO_STORE = new PromptCachePolicy(null, false, false);
+
+    public static PromptCachePolicy ttl(Duration ttl) {
+        return new PromptCachePolicy(ttl, true, true);
+    }
+}
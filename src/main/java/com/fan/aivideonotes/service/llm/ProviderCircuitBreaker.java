@@ -0,0 +1,251 @@
+package com.fan.aivideonotes.service.llm;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个提供商的健康统计与熔断器。
+ * - 最近 window 时间内的调用按时间分桶统计：调用数、失败数、慢调用数、延迟；
+ * - 调用数达到 minimumCalls 且失败率或慢调用率超过阈值时熔断 (OPEN)，期间直接拒绝，不再等满超时；
+ * - openDuration 之后进入 HALF_OPEN，放行 halfOpenProbes 个探测请求：全部成功则恢复 (CLOSED)，任一失败则重新熔断。
+ * 指标 (tag: provider)：llm.provider.breaker.state (0 = CLOSED, 1 = HALF_OPEN, 2 = OPEN)、llm.provider.latency。
+ */
+public class ProviderCircuitBreaker {
+
+    private static final int BUCKETS = 10;
+
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    public record Settings(Duration window,
+                           int minimumCalls,
+                           double failureRateThreshold,
+                           Duration slowCallThreshold,
+                           double slowCallRateThreshold,
+                           Duration openDuration,
+                           int halfOpenProbes) {
+    }
+
+    /**
+     * 对外展示的当前状态 (actuator 端点 llmproviders)。
+     */
+    public record Snapshot(String provider,
+                           State state,
+                           long calls,
+                           long failures,
+                           double failureRate,
+                           double slowCallRate,
+                           double averageLatencyMillis,
+                           double maxLatencyMillis,
+                           Instant openUntil,
+                           String lastFailure) {
+    }
+
+    private final String provider;
+    private final Settings settings;
+    private final long bucketNanos;
+    private final Bucket[] buckets = new Bucket[BUCKETS];
+    private final Timer successTimer;
+    private final Timer failureTimer;
+
+    private State state = State.CLOSED;
+    private long openUntilNanos;
+    private int probesInFlight;
+    private int probeSuccesses;
+    private String lastFailure;
+
+    public ProviderCircuitBreaker(String provider, Settings settings, MeterRegistry meterRegistry) {
+        this.provider = provider;
+        this.settings = settings;
+        this.bucketNanos = Math.max(1, settings.window().toNanos() / BUCKETS);
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new Bucket();
+        }
+        this.successTimer = Timer.builder("llm.provider.latency").tags("provider", provider, "outcome", "success")
+                .publishPercentileHistogram().register(meterRegistry);
+        this.failureTimer = Timer.builder("llm.provider.latency").tags("provider", provider, "outcome", "failure")
+                .publishPercentileHistogram().register(meterRegistry);
+        Gauge.builder("llm.provider.breaker.state", this, breaker -> breaker.getState().ordinal())
+                .tag("provider", provider).register(meterRegistry);
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    /**
+     * 是否放行本次调用。放行后必须调用 onSuccess / onFailure / onIgnored 之一。
+     */
+    public synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        if (state == State.OPEN) {
+            if (now - openUntilNanos < 0) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probesInFlight = 0;
+            probeSuccesses = 0;
+            System.out.println("LLM provider " + provider + " circuit half-open, probing.");
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight >= settings.halfOpenProbes()) {
+                return false;
+            }
+            probesInFlight++;
+        }
+        return true;
+    }
+
+    public void onSuccess(long latencyNanos) {
+        successTimer.record(latencyNanos, TimeUnit.NANOSECONDS);
+        synchronized (this) {
+            record(latencyNanos, false);
+            if (state == State.HALF_OPEN) {
+                probesInFlight = Math.max(0, probesInFlight - 1);
+                if (++probeSuccesses >= settings.halfOpenProbes()) {
+                    close();
+                }
+            } else if (state == State.CLOSED) {
+                evaluate();
+            }
+        }
+    }
+
+    public void onFailure(long latencyNanos, Throwable error) {
+        failureTimer.record(latencyNanos, TimeUnit.NANOSECONDS);
+        synchronized (this) {
+            record(latencyNanos, true);
+            lastFailure = error.getClass().getSimpleName() + ": " + error.getMessage();
+            if (state == State.HALF_OPEN) {
+                open();
+            } else if (state == State.CLOSED) {
+                evaluate();
+            }
+        }
+    }
+
+    /**
+     * 与提供商健康无关的结束 (e.g., 请求参数错误、提供商不支持该能力)：不计入统计，只归还探测名额。
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            probesInFlight = Math.max(0, probesInFlight - 1);
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized Snapshot snapshot() {
+        Totals totals = totals(System.nanoTime());
+        Instant openUntil = state == State.OPEN
+                ? Instant.now().plusNanos(Math.max(0, openUntilNanos - System.nanoTime()))
+                : null;
+        return new Snapshot(provider, state, totals.calls, totals.failures, totals.failureRate(), totals.slowCallRate(),
+                totals.calls == 0 ? 0 : totals.latencyNanos / 1e6 / totals.calls, totals.maxLatencyNanos / 1e6,
+                openUntil, lastFailure);
+    }
+
+    private void record(long latencyNanos, boolean failed) {
+        long now = System.nanoTime();
+        Bucket bucket = currentBucket(now);
+        bucket.calls++;
+        if (failed) {
+            bucket.failures++;
+        }
+        if (latencyNanos >= settings.slowCallThreshold().toNanos()) {
+            bucket.slowCalls++;
+        }
+        bucket.latencyNanos += latencyNanos;
+        bucket.maxLatencyNanos = Math.max(bucket.maxLatencyNanos, latencyNanos);
+    }
+
+    private void evaluate() {
+        Totals totals = totals(System.nanoTime());
+        if (totals.calls < settings.minimumCalls()) {
+            return;
+        }
+        if (totals.failureRate() >= settings.failureRateThreshold()
+                || totals.slowCallRate() >= settings.slowCallRateThreshold()) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openUntilNanos = System.nanoTime() + settings.openDuration().toNanos();
+        System.err.println("LLM provider " + provider + " circuit OPEN for " + settings.openDuration().toSeconds()
+                + "s (last failure: " + lastFailure + ").");
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        for (Bucket bucket : buckets) {
+            bucket.reset(bucket.epoch);
+        }
+        System.out.println("LLM provider " + provider + " circuit CLOSED again.");
+    }
+
+    private Bucket currentBucket(long now) {
+        long epoch = Math.floorDiv(now, bucketNanos);
+        Bucket bucket = buckets[(int) Math.floorMod(epoch, (long) BUCKETS)];
+        if (bucket.epoch != epoch) {
+            bucket.reset(epoch);
+        }
+        return bucket;
+    }
+
+    private Totals totals(long now) {
+        long currentEpoch = Math.floorDiv(now, bucketNanos);
+        Totals totals = new Totals();
+        for (Bucket bucket : buckets) {
+            if (currentEpoch - bucket.epoch < BUCKETS) {
+                totals.calls += bucket.calls;
+                totals.failures += bucket.failures;
+                totals.slowCalls += bucket.slowCalls;
+                totals.latencyNanos += bucket.latencyNanos;
+                totals.maxLatencyNanos = Math.max(totals.maxLatencyNanos, bucket.maxLatencyNanos);
+            }
+        }
+        return totals;
+    }
+
+    private static final class Bucket {
+        private long epoch = Long.MIN_VALUE;
+        private long calls;
+        private long failures;
+        private long slowCalls;
+        private long latencyNanos;
+        private long maxLatencyNanos;
+
+        private void reset(long newEpoch) {
+            epoch = newEpoch;
+            calls = 0;
+            failures = 0;
+            slowCalls = 0;
+            latencyNanos = 0;
+            maxLatencyNanos = 0;
+        }
+    }
+
+    private static final class Totals {
+        private long calls;
+        private long failures;
+        private long slowCalls;
+        private long latencyNanos;
+        private long maxLatencyNanos;
+
+        private double failureRate() {
+            return calls == 0 ? 0 : (double) failures / calls;
+        }
+
+        private double slowCallRate() {
+            return calls == 0 ? 0 : (double) slowCalls / calls;
+        }
+    }
+}
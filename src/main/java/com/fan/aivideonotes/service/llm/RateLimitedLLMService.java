@@ -0,0 +1,207 @@
+package com.fan.aivideonotes.service.llm;
+
+import com.fan.aivideonotes.controller.dto.VideoLinkRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 给 LLMService 加上准入控制的装饰器，由 LLMServiceProvider 统一包装。
+ * 每个模型 (flash / pro) 使用独立的 AdaptiveRateLimiter，配置为 app.llm.limits.<provider>.<model>.*，
+ * 未配置的项回退到 app.llm.limits.default.*。
+ * 收到 429 时不再让任务失败：按 Retry-After (或响应体中的 retryDelay) 暂停该模型的放行，然后重新排队重试。
+ */
+public class RateLimitedLLMService implements LLMService {
+
+    private static final String TEXT_MODEL = "flash";
+    // Gemini 的 429 响应体中 RetryInfo 的 retryDelay，例如 "retryDelay": "27s"
+    private static final Pattern RETRY_DELAY = Pattern.compile("\"retryDelay\"\\s*:\\s*\"(\\d+(?:\\.\\d+)?)s\"");
+
+    private final LLMService delegate;
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final int maxThrottleRetries;
+    private final Map<String, AdaptiveRateLimiter> limitersByModel = new ConcurrentHashMap<>();
+
+    public RateLimitedLLMService(LLMService delegate, Environment environment, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+        this.maxThrottleRetries = environment.getProperty("app.llm.limits.max-throttle-retries", Integer.class, 5);
+    }
+
+    @Override
+    public String generateNotesFromAudio(File audioFile, VideoLinkRequest request) {
+        return call(modelOf(request), audioFile.length(), () -> delegate.generateNotesFromAudio(audioFile, request));
+    }
+
+    @Override
+    public String generateNotesFromAudioStreaming(File audioFile, VideoLinkRequest request, Consumer<JsonNode> onBlock) {
+        // 429 在开始输出之前就会返回，重试不会导致重复推送笔记块
+        return call(modelOf(request), audioFile.length(),
+                () -> delegate.generateNotesFromAudioStreaming(audioFile, request, onBlock));
+    }
+
+    @Override
+    public String generateTextResponse(String prompt) {
+        return generateTextResponseWhenAdmitted(prompt, () -> {
+        });
+    }
+
+    /**
+     * 与 generateTextResponse 相同，拿到放行名额后 (真正发出请求之前) 调用 onAdmitted；429 重新排队后会再次调用。
+     * 供对冲请求判断第一个请求是已经发出，还是仍在排队。
+     */
+    public String generateTextResponseWhenAdmitted(String prompt, Runnable onAdmitted) {
+        return call(TEXT_MODEL, prompt.getBytes(StandardCharsets.UTF_8).length, () -> {
+            onAdmitted.run();
+            return delegate.generateTextResponse(prompt);
+        });
+    }
+
+    @Override
+    public String getProviderKey() {
+        return delegate.getProviderKey();
+    }
+
+    @Override
+    public String getTextModel() {
+        return delegate.getTextModel();
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return delegate.isAvailable();
+    }
+
+    public LLMService getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * 文本模型 (flash) 是否有富余配额，见 AdaptiveRateLimiter.hasSpareCapacity。
+     */
+    public boolean hasSpareTextCapacity() {
+        return limitersByModel.computeIfAbsent(TEXT_MODEL, this::createLimiter).hasSpareCapacity();
+    }
+
+    private <T> T call(String model, long estimatedInputBytes, Supplier<T> action) {
+        AdaptiveRateLimiter limiter = limitersByModel.computeIfAbsent(model, this::createLimiter);
+        for (int attempt = 1; ; attempt++) {
+            AdaptiveRateLimiter.Permit permit;
+            try {
+                permit = limiter.acquire(estimatedInputBytes);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for LLM capacity.", e);
+            }
+            try {
+                T result = action.get();
+                permit.onSuccess();
+                return result;
+            } catch (RuntimeException e) {
+                Throwable throttled = findTooManyRequests(e);
+                if (throttled == null) {
+                    permit.onFailure();
+                    throw e;
+                }
+                permit.onThrottled(retryAfter(throttled));
+                if (attempt >= maxThrottleRetries) {
+                    System.err.println("LLM " + getProviderKey() + "/" + model + " still throttled after " + attempt + " attempts, giving up.");
+                    throw e;
+                }
+                System.out.println("Re-queueing LLM request after 429 (" + getProviderKey() + "/" + model + ", attempt " + attempt + ").");
+            }
+        }
+    }
+
+    private AdaptiveRateLimiter createLimiter(String model) {
+        String provider = getProviderKey().toLowerCase(Locale.ROOT);
+        String prefix = "app.llm.limits." + provider + "." + model + ".";
+        AdaptiveRateLimiter.Limits limits = new AdaptiveRateLimiter.Limits(
+                limitProperty(prefix, "requests-per-minute", Double.class, 60.0),
+                limitProperty(prefix, "input-bytes-per-minute", Double.class, 0.0),
+                limitProperty(prefix, "initial-concurrency", Integer.class, 4),
+                limitProperty(prefix, "max-concurrency", Integer.class, 16),
+                Duration.ofSeconds(limitProperty(prefix, "max-wait-seconds", Long.class, 600L)),
+                Duration.ofSeconds(limitProperty(prefix, "default-retry-after-seconds", Long.class, 10L)));
+        System.out.println("LLM admission limits for " + provider + "/" + model + ": " + limits);
+        return new AdaptiveRateLimiter(provider, model, limits, meterRegistry);
+    }
+
+    private <V> V limitProperty(String prefix, String name, Class<V> type, V defaultValue) {
+        V fallback = environment.getProperty("app.llm.limits.default." + name, type, defaultValue);
+        return environment.getProperty(prefix + name, type, fallback);
+    }
+
+    private static String modelOf(VideoLinkRequest request) {
+        return request.getMode() == null ? TEXT_MODEL : request.getMode().name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 在异常链中查找 HTTP 429 (RestTemplate 风格的异常或 WebClient 的异常都可能出现)。
+     */
+    private static Throwable findTooManyRequests(Throwable error) {
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            if (current instanceof HttpStatusCodeException e && e.getStatusCode().value() == 429) {
+                return current;
+            }
+            if (current instanceof WebClientResponseException e && e.getStatusCode().value() == 429) {
+                return current;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 服务端建议的等待时间：优先 Retry-After 头 (秒数或 HTTP 日期)，其次响应体中的 retryDelay；都没有时返回 null。
+     */
+    static Duration retryAfter(Throwable throttled) {
+        HttpHeaders headers = null;
+        String body = null;
+        if (throttled instanceof HttpStatusCodeException e) {
+            headers = e.getResponseHeaders();
+            body = e.getResponseBodyAsString();
+        } else if (throttled instanceof WebClientResponseException e) {
+            headers = e.getHeaders();
+            body = e.getResponseBodyAsString();
+        }
+        String header = headers != null ? headers.getFirst(HttpHeaders.RETRY_AFTER) : null;
+        if (header != null && !header.isBlank()) {
+            try {
+                return Duration.ofSeconds(Math.max(0, Long.parseLong(header.trim())));
+            } catch (NumberFormatException notSeconds) {
+                try {
+                    ZonedDateTime at = ZonedDateTime.parse(header.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                    Duration until = Duration.between(ZonedDateTime.now(at.getZone()), at);
+                    return until.isNegative() ? Duration.ZERO : until;
+                } catch (RuntimeException ignored) {
+                    // 无法识别的格式，继续看响应体
+                }
+            }
+        }
+        if (body != null) {
+            Matcher matcher = RETRY_DELAY.matcher(body);
+            if (matcher.find()) {
+                return Duration.ofMillis((long) (Double.parseDouble(matcher.group(1)) * 1000));
+            }
+        }
+        return null;
+    }
+}
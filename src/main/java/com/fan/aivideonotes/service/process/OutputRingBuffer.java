@@ -0,0 +1,29 @@
+package com.fan.aivideonotes.service.process;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * 只保留最近 N 行输出的环形缓冲区，用于任务失败时排查原因。
+ */
+public class OutputRingBuffer {
+
+    private final int capacity;
+    private final ArrayDeque<String> lines;
+
+    public OutputRingBuffer(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.lines = new ArrayDeque<>(this.capacity);
+    }
+
+    public synchronized void add(String line) {
+        if (lines.size() == capacity) {
+            lines.removeFirst();
+        }
+        lines.addLast(line);
+    }
+
+    public synchronized List<String> snapshot() {
+        return List.copyOf(lines);
+    }
+}
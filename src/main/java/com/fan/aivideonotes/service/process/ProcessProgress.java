@@ -0,0 +1,39 @@
+package com.fan.aivideonotes.service.process;
+
+import java.util.Locale;
+
+/**
+ * 从 yt-dlp / ffmpeg 输出中解析出的一次进度。无法得知的字段为 null。
+ *
+ * @param tool           产生该进度的工具, e.g., "yt-dlp"
+ * @param percent        完成百分比 (0 ~ 100)
+ * @param bytesPerSecond 下载速度 (字节/秒)，仅 yt-dlp
+ * @param etaSeconds     预计剩余秒数
+ * @param speed          ffmpeg 的处理速度倍数 (相对实时)，仅 ffmpeg
+ */
+public record ProcessProgress(String tool, Double percent, Double bytesPerSecond, Long etaSeconds, Double speed) {
+
+    /**
+     * 适合拼接在状态消息后面的简短描述, e.g., "45.3%, 2.3 MB/s, ETA 27s"。
+     */
+    public String describe() {
+        StringBuilder builder = new StringBuilder();
+        if (percent != null) {
+            builder.append(String.format(Locale.ROOT, "%.1f%%", percent));
+        }
+        if (bytesPerSecond != null) {
+            appendSeparator(builder).append(String.format(Locale.ROOT, "%.1f MB/s", bytesPerSecond / 1_000_000));
+        }
+        if (speed != null) {
+            appendSeparator(builder).append(String.format(Locale.ROOT, "%.1fx", speed));
+        }
+        if (etaSeconds != null) {
+            appendSeparator(builder).append("ETA ").append(etaSeconds).append("s");
+        }
+        return builder.toString();
+    }
+
+    private static StringBuilder appendSeparator(StringBuilder builder) {
+        return builder.isEmpty() ? builder : builder.append(", ");
+    }
+}
@@ -0,0 +1,470 @@
+package com.fan.aivideonotes.service.process;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 统一管理 yt-dlp / ffmpeg / ffprobe 等外部进程：
+ * - 按工具限制同时运行的进程数 (默认与 CPU 核数相同)，超出时排队等待；
+ * - 总耗时超时和“长时间无输出”超时，超时后杀掉整个进程树 (包括 yt-dlp 拉起的 ffmpeg 等子进程)；
+ * - 进程按所属任务登记，取消任务时立即杀掉该任务的所有进程并释放并发名额；
+ * - 运行中的进程数 (process.running)、耗时分布 (process.runtime)、被杀次数 (process.kills) 通过 Micrometer 暴露；
+ * - yt-dlp / ffmpeg 的进度行被解析为结构化进度 (ProcessProgress) 回调给任务，原始输出不再打印到控制台，
+ *   只保留在按任务划分的环形缓冲区中，供失败时排查。
+ * 每个工具的配置见 app.process.&lt;tool&gt;.*，未配置的工具使用默认值。
+ */
+@Component
+public class ProcessRunner {
+
+    private static final String KILL_WALL_TIMEOUT = "wall_timeout";
+    private static final String KILL_IDLE_TIMEOUT = "idle_timeout";
+    private static final String KILL_CANCELLED = "cancelled";
+
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final int cores = Runtime.getRuntime().availableProcessors();
+
+    private final Map<String, ToolLimits> limitsByTool = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> runningByTool = new ConcurrentHashMap<>();
+    private final Set<ManagedProcess> running = ConcurrentHashMap.newKeySet();
+    private final Set<String> cancelledOwners = ConcurrentHashMap.newKeySet();
+    private final Map<String, OutputRingBuffer> outputByOwner = new ConcurrentHashMap<>();
+    private final ThreadLocal<String> currentOwner = new ThreadLocal<>();
+    private final ThreadLocal<Consumer<ProcessProgress>> currentProgressListener = new ThreadLocal<>();
+    private final int outputBufferLines;
+    private final ScheduledExecutorService watchdog =
+            Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("process-watchdog").factory());
+
+    public ProcessRunner(Environment environment, MeterRegistry meterRegistry) {
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+        this.outputBufferLines = environment.getProperty("app.process.output-buffer-lines", Integer.class, 200);
+        this.watchdog.scheduleWithFixedDelay(this::checkTimeouts, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 在当前线程上以 owner (任务 ID) 的身份执行 action，期间启动的进程都登记在该任务名下。
+     */
+    public <T> T runAs(String owner, Supplier<T> action) {
+        return runAs(owner, null, action);
+    }
+
+    /**
+     * 同上，并把期间启动的进程的进度 (节流为每秒最多一次) 回调给 progressListener。
+     */
+    public <T> T runAs(String owner, Consumer<ProcessProgress> progressListener, Supplier<T> action) {
+        String previousOwner = currentOwner.get();
+        Consumer<ProcessProgress> previousListener = currentProgressListener.get();
+        currentOwner.set(owner);
+        currentProgressListener.set(progressListener);
+        try {
+            return action.get();
+        } finally {
+            currentOwner.set(previousOwner);
+            currentProgressListener.set(previousListener);
+        }
+    }
+
+    /**
+     * 任务最近的进程输出 (最多 app.process.output-buffer-lines 行)，用于失败时排查。
+     */
+    public List<String> recentOutput(String owner) {
+        OutputRingBuffer buffer = outputByOwner.get(owner);
+        return buffer != null ? buffer.snapshot() : List.of();
+    }
+
+    /**
+     * 取消一个任务：杀掉它正在运行的所有进程，之后它再启动进程会直接抛出 CancellationException。
+     */
+    public void cancel(String owner) {
+        cancelledOwners.add(owner);
+        for (ManagedProcess managed : running) {
+            if (owner.equals(managed.owner)) {
+                kill(managed, KILL_CANCELLED);
+            }
+        }
+    }
+
+    public boolean isCancelled(String owner) {
+        return owner != null && cancelledOwners.contains(owner);
+    }
+
+    /**
+     * 任务结束后清理它的取消标记和输出缓冲区。
+     */
+    public void clearOwner(String owner) {
+        cancelledOwners.remove(owner);
+        outputByOwner.remove(owner);
+    }
+
+    /**
+     * 运行一个进程并读取其输出 (stdout 与 stderr 合并)，退出码非 0 时抛出 IOException.
+     */
+    public void run(ProcessBuilder processBuilder) throws IOException, InterruptedException {
+        processBuilder.redirectErrorStream(true);
+        ManagedProcess managed = start(List.of(processBuilder));
+        drainOutput(managed, 0, managed.processes.get(0).getInputStream());
+        complete(managed);
+    }
+
+    /**
+     * 运行一个进程并返回其标准输出的全部内容 (适用于 ffprobe 这类输出很短的命令)，stderr 被丢弃.
+     */
+    public String runForOutput(ProcessBuilder processBuilder) throws IOException, InterruptedException {
+        processBuilder.redirectError(ProcessBuilder.Redirect.DISCARD);
+        ManagedProcess managed = start(List.of(processBuilder));
+        String output;
+        try (InputStream inputStream = managed.processes.get(0).getInputStream()) {
+            output = new String(inputStream.readAllBytes());
+        } catch (IOException e) {
+            output = "";
+        }
+        complete(managed);
+        return output;
+    }
+
+    /**
+     * 以管道方式运行多个进程 (前一个的 stdout 接到后一个的 stdin)。
+     * 中间进程的 stderr 和最后一个进程的合并输出都会被读走，任何一个进程失败都会抛出 IOException.
+     */
+    public void runPipeline(List<ProcessBuilder> processBuilders) throws IOException, InterruptedException {
+        processBuilders.get(processBuilders.size() - 1).redirectErrorStream(true);
+        ManagedProcess managed = start(processBuilders);
+
+        // 前面几个进程的 stdout 已经接到下游，它们的日志在 stderr，必须单独读走，否则缓冲区写满后会阻塞
+        List<Thread> drainers = new ArrayList<>();
+        for (int i = 0; i < managed.processes.size() - 1; i++) {
+            int index = i;
+            InputStream errorStream = managed.processes.get(i).getErrorStream();
+            drainers.add(Thread.ofVirtual().start(() -> drainOutput(managed, index, errorStream)));
+        }
+        int last = managed.processes.size() - 1;
+        drainOutput(managed, last, managed.processes.get(last).getInputStream());
+        for (Thread drainer : drainers) {
+            drainer.join();
+        }
+        complete(managed);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+        for (ManagedProcess managed : running) {
+            killTree(managed);
+        }
+    }
+
+    // --- 私有辅助方法 ---
+
+    private ManagedProcess start(List<ProcessBuilder> processBuilders) throws IOException, InterruptedException {
+        String owner = currentOwner.get();
+        List<String> tools = processBuilders.stream().map(ProcessRunner::toolName).toList();
+        ensureNotCancelled(owner);
+
+        // 按工具名排序后依次获取名额，避免两个管道交叉持有名额导致死锁
+        List<Semaphore> acquired = new ArrayList<>();
+        try {
+            for (String tool : new TreeSet<>(tools)) {
+                Semaphore permits = limits(tool).permits;
+                while (!permits.tryAcquire(1, TimeUnit.SECONDS)) {
+                    ensureNotCancelled(owner);
+                }
+                acquired.add(permits);
+            }
+            ensureNotCancelled(owner);
+        } catch (InterruptedException | RuntimeException e) {
+            acquired.forEach(Semaphore::release);
+            throw e;
+        }
+
+        for (ProcessBuilder processBuilder : processBuilders) {
+            System.out.println("Executing command: " + String.join(" ", processBuilder.command()));
+        }
+        List<Process> processes;
+        try {
+            processes = processBuilders.size() == 1
+                    ? List.of(processBuilders.get(0).start())
+                    : ProcessBuilder.startPipeline(processBuilders);
+        } catch (IOException e) {
+            acquired.forEach(Semaphore::release);
+            throw e;
+        }
+
+        OutputRingBuffer output = owner != null
+                ? outputByOwner.computeIfAbsent(owner, key -> new OutputRingBuffer(outputBufferLines))
+                : new OutputRingBuffer(outputBufferLines);
+        ManagedProcess managed = new ManagedProcess(owner, tools, processes, acquired, output, currentProgressListener.get());
+        tools.forEach(tool -> runningCounter(tool).incrementAndGet());
+        running.add(managed);
+        // 登记之前任务可能刚好被取消
+        if (isCancelled(owner)) {
+            kill(managed, KILL_CANCELLED);
+        }
+        return managed;
+    }
+
+    private void complete(ManagedProcess managed) throws IOException, InterruptedException {
+        List<Integer> exitCodes = new ArrayList<>();
+        try {
+            for (Process process : managed.processes) {
+                exitCodes.add(process.waitFor());
+            }
+        } catch (InterruptedException e) {
+            kill(managed, KILL_CANCELLED);
+            throw e;
+        } finally {
+            running.remove(managed);
+            managed.tools.forEach(tool -> runningCounter(tool).decrementAndGet());
+            managed.permits.forEach(Semaphore::release);
+        }
+
+        long elapsedNanos = System.nanoTime() - managed.startNanos;
+        String killReason = managed.killReason;
+        int failedIndex = -1;
+        for (int i = 0; i < exitCodes.size(); i++) {
+            if (exitCodes.get(i) != 0) {
+                failedIndex = i;
+                break;
+            }
+        }
+        String outcome = killReason != null ? killReason : (failedIndex >= 0 ? "failure" : "success");
+        Timer.builder("process.runtime")
+                .tag("tool", managed.label())
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+        if (KILL_CANCELLED.equals(killReason)) {
+            throw new CancellationException("Task was cancelled while " + managed.label() + " was running.");
+        }
+        if ((killReason != null || failedIndex >= 0) && managed.owner == null) {
+            // 有归属任务的进程由任务在失败时统一输出 (见 recentOutput)
+            printOutput("Last output of failed " + managed.label() + ":", managed.output.snapshot());
+        }
+        if (killReason != null) {
+            throw new IOException(managed.label() + " was killed (" + killReason + ") after "
+                    + Duration.ofNanos(elapsedNanos).toSeconds() + "s.");
+        }
+        if (failedIndex >= 0) {
+            throw new IOException(managed.tools.get(failedIndex) + " failed with exit code " + exitCodes.get(failedIndex));
+        }
+        System.out.println("Command executed successfully.");
+    }
+
+    /**
+     * 打印一段缓冲的进程输出 (仅在失败时调用)。
+     */
+    public static void printOutput(String header, List<String> lines) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        StringBuilder builder = new StringBuilder(header);
+        for (String line : lines) {
+            builder.append(System.lineSeparator()).append("[CMD Output] ").append(line);
+        }
+        System.err.println(builder);
+    }
+
+    /**
+     * 逐行读取子进程的输出直到流结束：进度行解析后回调，所有行写入环形缓冲区 (不打印)。
+     * 每读到一行都会刷新“最近输出时间”，用于判断是否卡死.
+     */
+    private void drainOutput(ManagedProcess managed, int processIndex, InputStream inputStream) {
+        String tool = managed.tools.get(processIndex);
+        ProgressParser parser = new ProgressParser(tool);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                managed.lastOutputNanos = System.nanoTime();
+                if (line.isBlank()) {
+                    continue;
+                }
+                ProcessProgress progress = parser.parse(line);
+                if (progress != null) {
+                    managed.reportProgress(progress);
+                } else {
+                    // 进度行每秒好几条，不进缓冲区，免得把真正有用的报错挤出去
+                    managed.output.add(tool + ": " + line);
+                }
+            }
+        } catch (IOException e) {
+            // 进程被杀掉时流会被关闭，属于正常情况
+            if (managed.killReason == null) {
+                System.err.println("Failed to read process output: " + e.getMessage());
+            }
+        }
+    }
+
+    private void checkTimeouts() {
+        long now = System.nanoTime();
+        for (ManagedProcess managed : running) {
+            ToolLimits limits = managed.strictestLimits();
+            if (limits.wallTimeout.toNanos() > 0 && now - managed.startNanos > limits.wallTimeout.toNanos()) {
+                System.err.println("Killing " + managed.label() + " (owner " + managed.owner + "): exceeded wall-clock timeout of " + limits.wallTimeout.toSeconds() + "s.");
+                kill(managed, KILL_WALL_TIMEOUT);
+            } else if (limits.idleTimeout.toNanos() > 0 && now - managed.lastOutputNanos > limits.idleTimeout.toNanos()) {
+                System.err.println("Killing " + managed.label() + " (owner " + managed.owner + "): no output for " + limits.idleTimeout.toSeconds() + "s.");
+                kill(managed, KILL_IDLE_TIMEOUT);
+            }
+        }
+    }
+
+    private void kill(ManagedProcess managed, String reason) {
+        synchronized (managed) {
+            if (managed.killReason != null) {
+                return;
+            }
+            managed.killReason = reason;
+        }
+        meterRegistry.counter("process.kills", "tool", managed.label(), "reason", reason).increment();
+        killTree(managed);
+    }
+
+    /**
+     * 杀掉进程及其所有子孙进程 (yt-dlp 会拉起 ffmpeg 做合并，只杀父进程会留下孤儿进程)。
+     */
+    private static void killTree(ManagedProcess managed) {
+        for (Process process : managed.processes) {
+            process.descendants().forEach(ProcessHandle::destroyForcibly);
+            process.destroyForcibly();
+        }
+    }
+
+    private void ensureNotCancelled(String owner) {
+        if (isCancelled(owner)) {
+            throw new CancellationException("Task " + owner + " was cancelled.");
+        }
+    }
+
+    private ToolLimits limits(String tool) {
+        return limitsByTool.computeIfAbsent(tool, this::loadLimits);
+    }
+
+    /**
+     * 读取 app.process.&lt;tool&gt;.* 配置。并发数为 0 时按 CPU 核数计算 (ffprobe 很轻，默认为核数的两倍)。
+     */
+    private ToolLimits loadLimits(String tool) {
+        String prefix = "app.process." + tool + ".";
+        int configuredConcurrency = environment.getProperty(prefix + "max-concurrent", Integer.class, 0);
+        int defaultConcurrency = "ffprobe".equals(tool) ? cores * 2 : cores;
+        int maxConcurrent = configuredConcurrency > 0 ? configuredConcurrency : defaultConcurrency;
+        long timeoutSeconds = environment.getProperty(prefix + "timeout-seconds", Long.class, 1800L);
+        long idleTimeoutSeconds = environment.getProperty(prefix + "idle-timeout-seconds", Long.class, 300L);
+
+        Gauge.builder("process.running", () -> runningCounter(tool).get()).tag("tool", tool).register(meterRegistry);
+        return new ToolLimits(new Semaphore(maxConcurrent, true), Duration.ofSeconds(timeoutSeconds), Duration.ofSeconds(idleTimeoutSeconds));
+    }
+
+    private AtomicInteger runningCounter(String tool) {
+        return runningByTool.computeIfAbsent(tool, key -> new AtomicInteger());
+    }
+
+    private static String toolName(ProcessBuilder processBuilder) {
+        String executable = processBuilder.command().get(0);
+        return executable.substring(Math.max(executable.lastIndexOf('/'), executable.lastIndexOf('\\')) + 1)
+                .replaceFirst("(?i)\\.exe$", "");
+    }
+
+    /**
+     * 每个工具的并发名额和超时设置。超时为 0 表示不限制。
+     */
+    private record ToolLimits(Semaphore permits, Duration wallTimeout, Duration idleTimeout) {
+    }
+
+    /**
+     * 一次进程 (或管道) 运行。
+     */
+    private final class ManagedProcess {
+        private final String owner;
+        private final List<String> tools;
+        private final List<Process> processes;
+        private final List<Semaphore> permits;
+        private final OutputRingBuffer output;
+        private final Consumer<ProcessProgress> progressListener;
+        private final long startNanos = System.nanoTime();
+        private volatile long lastOutputNanos = startNanos;
+        private volatile String killReason;
+        private long lastProgressNanos = 0;
+
+        private ManagedProcess(String owner, List<String> tools, List<Process> processes, List<Semaphore> permits,
+                               OutputRingBuffer output, Consumer<ProcessProgress> progressListener) {
+            this.owner = owner;
+            this.tools = tools;
+            this.processes = processes;
+            this.permits = permits;
+            this.output = output;
+            this.progressListener = progressListener;
+        }
+
+        /**
+         * 节流回调：每秒最多一次，避免频繁写数据库和推送事件。
+         */
+        private void reportProgress(ProcessProgress progress) {
+            if (progressListener == null) {
+                return;
+            }
+            synchronized (this) {
+                long now = System.nanoTime();
+                if (lastProgressNanos != 0 && now - lastProgressNanos < TimeUnit.SECONDS.toNanos(1)) {
+                    return;
+                }
+                lastProgressNanos = now;
+            }
+            try {
+                progressListener.accept(progress);
+            } catch (Exception e) {
+                System.err.println("Failed to publish process progress: " + e.getMessage());
+            }
+        }
+
+        private String label() {
+            return String.join("|", tools);
+        }
+
+        /**
+         * 管道中各工具超时设置的最小值 (0 视为不限制)。
+         */
+        private ToolLimits strictestLimits() {
+            Duration wall = Duration.ZERO;
+            Duration idle = Duration.ZERO;
+            for (String tool : tools) {
+                ToolLimits limits = limits(tool);
+                wall = stricter(wall, limits.wallTimeout);
+                idle = stricter(idle, limits.idleTimeout);
+            }
+            return new ToolLimits(null, wall, idle);
+        }
+
+        private Duration stricter(Duration current, Duration candidate) {
+            if (candidate.isZero()) {
+                return current;
+            }
+            return current.isZero() || candidate.compareTo(current) < 0 ? candidate : current;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.fan.aivideonotes.service.process;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 把 yt-dlp / ffmpeg 的一行输出解析为进度。每个进程使用一个实例：
+ * ffmpeg 的百分比需要结合输出开头的 "Duration:" 行计算，因此解析器是有状态的。
+ */
+public class ProgressParser {
+
+    // [download]  45.3% of ~120.50MiB at    2.31MiB/s ETA 00:27
+    private static final Pattern YT_DLP_PROGRESS = Pattern.compile(
+            "\\[download]\\s+([\\d.]+)%(?:\\s+of\\s+~?\\s*[\\d.]+\\w+)?(?:\\s+at\\s+([\\d.]+)(\\w+)/s)?(?:\\s+ETA\\s+([\\d:]+))?");
+    //   Duration: 00:10:00.04, start: 0.000000, bitrate: 128 kb/s
+    private static final Pattern FFMPEG_DURATION = Pattern.compile("Duration:\\s*(\\d+:\\d+:[\\d.]+)");
+    // size=    1024kB time=00:01:23.45 bitrate= 100.5kbits/s speed=12.3x
+    private static final Pattern FFMPEG_TIME = Pattern.compile("time=\\s*(\\d+:\\d+:[\\d.]+)");
+    private static final Pattern FFMPEG_SPEED = Pattern.compile("speed=\\s*([\\d.]+)x");
+
+    private final String tool;
+    private double totalSeconds = -1;
+
+    public ProgressParser(String tool) {
+        this.tool = tool;
+    }
+
+    /**
+     * @return 解析出的进度；不是进度行时返回 null
+     */
+    public ProcessProgress parse(String line) {
+        return switch (tool) {
+            case "yt-dlp" -> parseYtDlp(line);
+            case "ffmpeg" -> parseFfmpeg(line);
+            default -> null;
+        };
+    }
+
+    private ProcessProgress parseYtDlp(String line) {
+        Matcher matcher = YT_DLP_PROGRESS.matcher(line);
+        if (!matcher.find()) {
+            return null;
+        }
+        Double percent = Double.parseDouble(matcher.group(1));
+        Double bytesPerSecond = matcher.group(2) != null ? Double.parseDouble(matcher.group(2)) * unitBytes(matcher.group(3)) : null;
+        Long eta = matcher.group(4) != null ? Math.round(toSeconds(matcher.group(4))) : null;
+        return new ProcessProgress(tool, percent, bytesPerSecond, eta, null);
+    }
+
+    private ProcessProgress parseFfmpeg(String line) {
+        Matcher duration = FFMPEG_DURATION.matcher(line);
+        if (duration.find() && totalSeconds < 0) {
+            // 只取第一个 (输入文件的) 时长
+            totalSeconds = toSeconds(duration.group(1));
+            return null;
+        }
+        Matcher time = FFMPEG_TIME.matcher(line);
+        if (!time.find()) {
+            return null;
+        }
+        double processed = toSeconds(time.group(1));
+        Matcher speedMatcher = FFMPEG_SPEED.matcher(line);
+        Double speed = speedMatcher.find() ? Double.parseDouble(speedMatcher.group(1)) : null;
+
+        Double percent = null;
+        Long eta = null;
+        if (totalSeconds > 0) {
+            percent = Math.min(100.0, processed * 100 / totalSeconds);
+            if (speed != null && speed > 0) {
+                eta = Math.round(Math.max(0, totalSeconds - processed) / speed);
+            }
+        }
+        return new ProcessProgress(tool, percent, null, eta, speed);
+    }
+
+    // "01:02:03.5" / "02:03" -> 秒
+    private static double toSeconds(String clock) {
+        double seconds = 0;
+        for (String part : clock.split(":")) {
+            seconds = seconds * 60 + Double.parseDouble(part);
+        }
+        return seconds;
+    }
+
+    private static double unitBytes(String unit) {
+        return switch (unit.toLowerCase(Locale.ROOT)) {
+            case "kib" -> 1024;
+            case "mib" -> 1024 * 1024;
+            case "gib" -> 1024 * 1024 * 1024;
+            case "kb" -> 1_000;
+            case "mb" -> 1_000_000;
+            case "gb" -> 1_000_000_000;
+            default -> 1;
+        };
+    }
+}
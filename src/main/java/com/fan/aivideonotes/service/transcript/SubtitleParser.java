@@ -0,0 +1,125 @@
+package com.fan.aivideonotes.service.transcript;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 把 WebVTT / SRT 字幕解析为带时间戳的文字稿。
+ * - 去掉样式标签 (&lt;c&gt;、&lt;00:00:01.000&gt; 等) 和 HTML 实体；
+ * - YouTube 自动字幕是“滚动”的，每条字幕会重复上一条的文字，这里只保留新出现的行；
+ * - 相邻字幕按固定时间窗口合并为一段，每段只标一次时间戳，减少送给模型的 token。
+ */
+public final class SubtitleParser {
+
+    // 00:01:02.345 --> 00:01:04.000 (VTT)、00:01:02,345 --> 00:01:04,000 (SRT)；VTT 可以省略小时
+    private static final Pattern CUE_TIMING = Pattern.compile("^((?:\\d+:)?\\d{1,2}:\\d{2}[.,]\\d{1,3})\\s+-->");
+    private static final Pattern TAG = Pattern.compile("<[^>]*>");
+
+    private SubtitleParser() {
+    }
+
+    /**
+     * 一条字幕。
+     */
+    public record Cue(double startSeconds, String text) {
+    }
+
+    public static List<Cue> parse(String content) {
+        List<Cue> cues = new ArrayList<>();
+        List<String> recentLines = new ArrayList<>();
+        Double cueStart = null;
+        StringBuilder cueText = new StringBuilder();
+
+        for (String rawLine : content.split("\\r?\\n", -1)) {
+            String line = rawLine.strip();
+            Matcher timing = CUE_TIMING.matcher(line);
+            if (timing.find()) {
+                addCue(cues, cueStart, cueText);
+                cueStart = toSeconds(timing.group(1));
+                cueText.setLength(0);
+                continue;
+            }
+            if (line.isEmpty()) {
+                // 空行结束一条字幕；之后到下一个时间行之前的内容 (SRT 序号、VTT 的 NOTE/STYLE 块) 都忽略
+                addCue(cues, cueStart, cueText);
+                cueStart = null;
+                cueText.setLength(0);
+                continue;
+            }
+            if (cueStart == null) {
+                continue;
+            }
+            String text = cleanText(line);
+            // 滚动字幕：与最近两行相同的内容是上一条字幕的重复
+            if (text.isEmpty() || recentLines.contains(text)) {
+                continue;
+            }
+            recentLines.add(text);
+            if (recentLines.size() > 2) {
+                recentLines.remove(0);
+            }
+            if (!cueText.isEmpty()) {
+                cueText.append(' ');
+            }
+            cueText.append(text);
+        }
+        addCue(cues, cueStart, cueText);
+        return cues;
+    }
+
+    /**
+     * 把字幕合并为段落，每 paragraphSeconds 秒一段，格式为 "[mm:ss] 文字..."。
+     */
+    public static String toTranscriptText(List<Cue> cues, double paragraphSeconds) {
+        StringBuilder transcript = new StringBuilder();
+        double paragraphStart = -1;
+        for (Cue cue : cues) {
+            if (paragraphStart < 0 || cue.startSeconds() - paragraphStart >= paragraphSeconds) {
+                if (!transcript.isEmpty()) {
+                    transcript.append('\n');
+                }
+                paragraphStart = cue.startSeconds();
+                transcript.append('[').append(formatTimestamp(paragraphStart)).append("] ");
+            } else {
+                transcript.append(' ');
+            }
+            transcript.append(cue.text());
+        }
+        return transcript.toString();
+    }
+
+    private static void addCue(List<Cue> cues, Double start, StringBuilder text) {
+        if (start != null && !text.isEmpty()) {
+            cues.add(new Cue(start, text.toString()));
+        }
+    }
+
+    private static String cleanText(String line) {
+        return TAG.matcher(line).replaceAll("")
+                .replace("&nbsp;", " ")
+                .replace("&lt;", "<")
+                .replace("&gt;", ">")
+                .replace("&amp;", "&")
+                .strip();
+    }
+
+    // "01:02:03.456" / "02:03,456" -> 秒
+    private static double toSeconds(String timestamp) {
+        double seconds = 0;
+        for (String part : timestamp.replace(',', '.').split(":")) {
+            seconds = seconds * 60 + Double.parseDouble(part);
+        }
+        return seconds;
+    }
+
+    private static String formatTimestamp(double seconds) {
+        long total = (long) seconds;
+        long hours = total / 3600;
+        return hours > 0
+                ? String.format(Locale.ROOT, "%d:%02d:%02d", hours, (total % 3600) / 60, total % 60)
+                : String.format(Locale.ROOT, "%02d:%02d", total / 60, total % 60);
+    }
+}
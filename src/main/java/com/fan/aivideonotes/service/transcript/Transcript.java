@@ -0,0 +1,11 @@
+package com.fan.aivideonotes.service.transcript;
+
+/**
+ * 从字幕文件解析出的、带时间戳的视频文字稿。
+ *
+ * @param language        字幕语言, e.g., "zh-Hans"、"en"
+ * @param text            按段落分组的文字稿，每段以 "[mm:ss]" 开头
+ * @param durationSeconds 最后一条字幕的开始时间 (秒)，近似视频时长
+ */
+public record Transcript(String language, String text, double durationSeconds) {
+}
@@ -0,0 +1,138 @@
+package com.fan.aivideonotes.service.transcript;
+
+import com.fan.aivideonotes.service.VideoProcessingService;
+import com.fan.aivideonotes.service.llm.LLMService;
+import com.fan.aivideonotes.service.llm.PromptCachePolicy;
+import com.fan.aivideonotes.service.llm.NotesJsonNormalizer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileCopyUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 字幕快速路径：视频已有上传者字幕或自动字幕时，直接把字幕文字稿交给模型的文本接口生成笔记，
+ * 不再下载媒体、转码和上传音频。取不到可用字幕时由调用方回退到音频流水线。
+ */
+@Service
+public class TranscriptNoteService {
+
+    private static final String PROMPT_PATH = "prompts/notes_generation_prompt_transcript.txt";
+
+    private final VideoProcessingService videoProcessingService;
+    private final ObjectMapper objectMapper;
+    private final String promptTemplate;
+
+    // 按优先级排列的字幕语言；同一语言既有上传者字幕又有自动字幕时，yt-dlp 优先使用上传者字幕
+    @Value("${app.subtitles.languages:zh-Hans,zh-CN,zh,zh-Hant,zh-TW,ai-zh,en,en-US,en-GB}")
+    private List<String> languages;
+    // 文字稿少于这个字符数 (例如只有片头歌词) 时视为没有字幕
+    @Value("${app.subtitles.min-characters:300}")
+    private int minCharacters;
+    // 每隔多少秒的字幕合并为一段、标一次时间戳
+    @Value("${app.subtitles.paragraph-seconds:30}")
+    private double paragraphSeconds;
+
+    @Autowired
+    public TranscriptNoteService(VideoProcessingService videoProcessingService, ObjectMapper objectMapper) {
+        this.videoProcessingService = videoProcessingService;
+        this.objectMapper = objectMapper;
+        this.promptTemplate = loadPromptTemplate();
+    }
+
+    /**
+     * 【下载阶段】下载并解析字幕。
+     *
+     * @param videoUrl      视频的 URL
+     * @param workDirectory 任务私有的工作目录
+     * @return 文字稿；没有可用字幕时为空
+     */
+    public Optional<Transcript> fetchTranscript(String videoUrl, File workDirectory) {
+        List<File> subtitleFiles = videoProcessingService.downloadSubtitles(videoUrl, languages, workDirectory);
+        Optional<File> preferred = subtitleFiles.stream().min(Comparator.comparingInt(this::languageRank));
+        if (preferred.isEmpty()) {
+            System.out.println("No subtitles found for: " + videoUrl);
+            return Optional.empty();
+        }
+
+        File subtitleFile = preferred.get();
+        String content;
+        try {
+            content = Files.readString(subtitleFile.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read subtitle file " + subtitleFile.getName(), e);
+        }
+        List<SubtitleParser.Cue> cues = SubtitleParser.parse(content);
+        String text = SubtitleParser.toTranscriptText(cues, paragraphSeconds);
+        if (text.length() < minCharacters) {
+            System.out.println("Subtitles " + subtitleFile.getName() + " are too short (" + text.length() + " chars), ignoring them.");
+            return Optional.empty();
+        }
+
+        double durationSeconds = cues.get(cues.size() - 1).startSeconds();
+        Transcript transcript = new Transcript(languageOf(subtitleFile), text, durationSeconds);
+        System.out.println("Using subtitles " + subtitleFile.getName() + ": " + cues.size() + " cues, " + text.length() + " chars.");
+        return Optional.of(transcript);
+    }
+
+    /**
+     * 【LLM 阶段】用字幕专用的提示词，通过文本接口生成笔记。
+     *
+     * @return 笔记 JSON，格式为 {"notes": [...]}
+     */
+    public String generateNotes(Transcript transcript, LLMService llmService) {
+        String prompt = promptTemplate + "\n\n" + transcript.text();
+        String response = llmService.generateTextResponse(prompt, PromptCachePolicy.DEFAULT);
+        try {
+            return NotesJsonNormalizer.normalize(objectMapper, response);
+        } catch (IOException e) {
+            // 回复可能来自提示词缓存：跳过缓存重新生成一次，并用新回复覆盖无法解析的旧条目
+            System.err.println("Notes generated from subtitles could not be parsed, regenerating without the prompt cache: " + e.getMessage());
+        }
+        response = llmService.generateTextResponse(prompt, PromptCachePolicy.BYPASS);
+        try {
+            return NotesJsonNormalizer.normalize(objectMapper, response);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to parse notes generated from subtitles: " + e.getMessage(), e);
+        }
+    }
+
+    // "subtitles.zh-Hans.vtt" -> "zh-Hans"
+    private static String languageOf(File subtitleFile) {
+        String name = subtitleFile.getName();
+        int first = name.indexOf('.');
+        int last = name.lastIndexOf('.');
+        return first < last ? name.substring(first + 1, last) : "unknown";
+    }
+
+    private int languageRank(File subtitleFile) {
+        int index = languages.indexOf(languageOf(subtitleFile));
+        return index >= 0 ? index : languages.size();
+    }
+
+    private String loadPromptTemplate() {
+        try {
+            Resource resource = new ClassPathResource(PROMPT_PATH);
+            if (!resource.exists()) {
+                throw new IOException("Prompt template not found at: " + PROMPT_PATH);
+            }
+            try (Reader reader = new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8)) {
+                return FileCopyUtils.copyToString(reader);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to load prompt template", e);
+        }
+    }
+}
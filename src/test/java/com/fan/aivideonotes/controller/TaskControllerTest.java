@@ -0,0 +1,105 @@
+package com.fan.aivideonotes.controller;
+
+import com.fan.aivideonotes.model.Note;
+import com.fan.aivideonotes.model.NoteBlock;
+import com.fan.aivideonotes.model.NoteContent;
+import com.fan.aivideonotes.model.Task;
+import com.fan.aivideonotes.repository.NoteRepository;
+import com.fan.aivideonotes.repository.TaskRepository;
+import com.fan.aivideonotes.service.event.TaskEventPublisher;
+import com.fan.aivideonotes.service.job.JobQueueService;
+import com.fan.aivideonotes.service.job.JobWorker;
+import org.hibernate.LazyInitializationException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * GET /api/tasks/{id}/result 在 open-in-view 关闭时的行为：Task 查询返回后会话已关闭，
+ * resultNote 是未初始化的懒加载代理，除了 getId 以外的任何访问都会抛出 LazyInitializationException。
+ */
+@WebMvcTest(controllers = TaskController.class, properties = "spring.jpa.open-in-view=false")
+class TaskControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private TaskRepository taskRepository;
+    @MockitoBean
+    private NoteRepository noteRepository;
+    @MockitoBean
+    private TaskEventPublisher taskEventPublisher;
+    @MockitoBean
+    private TaskScheduler taskScheduler;
+    @MockitoBean
+    private JobQueueService jobQueueService;
+    @MockitoBean
+    private JobWorker jobWorker;
+
+    @Test
+    void getTaskResult_shouldLoadNoteById_withoutInitializingLazyProxy() throws Exception {
+        Task task = new Task();
+        task.setId("task-1");
+        task.setStatus("COMPLETED");
+        task.setResultNote(detachedProxy(42L));
+        when(taskRepository.findById("task-1")).thenReturn(Optional.of(task));
+
+        Note note = new Note();
+        note.setId(42L);
+        note.setVideoUrl("https://www.bilibili.com/video/BV1xx411c7mD");
+        note.setContent(new NoteContent(List.of(new NoteBlock(NoteBlock.HEADING, "Kafka", null))));
+        when(noteRepository.findById(42L)).thenReturn(Optional.of(note));
+
+        mockMvc.perform(get("/api/tasks/task-1/result"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(42))
+                .andExpect(jsonPath("$.videoUrl").value(note.getVideoUrl()))
+                // 与之前一样是 JSON 字符串，浏览器插件直接 JSON.parse(note.content)
+                .andExpect(jsonPath("$.content").value(note.getContent().toJson()));
+    }
+
+    @Test
+    void getTaskResult_shouldReturnTask_whenNotCompleted() throws Exception {
+        Task task = new Task();
+        task.setId("task-2");
+        task.setStatus("PROCESSING");
+        when(taskRepository.findById("task-2")).thenReturn(Optional.of(task));
+
+        mockMvc.perform(get("/api/tasks/task-2/result"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("PROCESSING"));
+    }
+
+    @Test
+    void getTaskResult_shouldReturn404_whenTaskMissing() throws Exception {
+        when(taskRepository.findById("missing")).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/tasks/missing/result"))
+                .andExpect(status().isNotFound());
+    }
+
+    /**
+     * 模拟会话关闭后的懒加载代理：只能读取 ID。
+     */
+    private static Note detachedProxy(Long id) {
+        return mock(Note.class, invocation -> {
+            if ("getId".equals(invocation.getMethod().getName())) {
+                return id;
+            }
+            throw new LazyInitializationException("could not initialize proxy [Note#" + id + "] - no Session");
+        });
+    }
+}
@@ -0,0 +1,40 @@
+package com.fan.aivideonotes.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class NoteContentTest {
+
+    @Test
+    void typedBlocks_shouldRoundTripInTheModelOutputFormat() throws Exception {
+        String json = "{\"notes\":[{\"type\":\"heading\",\"content\":\"Kafka\"},"
+                + "{\"type\":\"knowledge_point\",\"content\":{\"term\":\"ISR\",\"explanation\":\"in-sync replicas\"}},"
+                + "{\"type\":\"list_item\",\"content\":\"partitions\"}],\"title\":\"ignored\"}";
+
+        NoteContent content = NoteContent.fromJson(json);
+
+        assertEquals(3, content.notes().size());
+        assertEquals("Kafka", content.notes().get(0).text());
+        assertNull(content.notes().get(0).knowledgePoint());
+        assertEquals(new NoteBlock.KnowledgePoint("ISR", "in-sync replicas"), content.notes().get(1).knowledgePoint());
+        assertEquals(List.of("ISR"), content.knowledgePointTerms());
+        ObjectMapper objectMapper = new ObjectMapper();
+        assertEquals(objectMapper.readTree(json.replace(",\"title\":\"ignored\"", "")), objectMapper.readTree(content.toJson()));
+    }
+
+    @Test
+    void note_shouldStillExposeContentAsJsonString() throws Exception {
+        Note note = new Note();
+        note.setContent(new NoteContent(List.of(new NoteBlock(NoteBlock.PARAGRAPH, "text", null))));
+
+        String response = new ObjectMapper().findAndRegisterModules().writeValueAsString(note);
+
+        assertEquals("{\"notes\":[{\"type\":\"paragraph\",\"content\":\"text\"}]}",
+                new ObjectMapper().readTree(response).get("content").asText());
+    }
+}
@@ -0,0 +1,63 @@
+package com.fan.aivideonotes.service;
+
+import com.fan.aivideonotes.model.GlossaryTerm;
+import com.fan.aivideonotes.repository.GlossaryTermAliasRepository;
+import com.fan.aivideonotes.repository.GlossaryTermRepository;
+import com.fan.aivideonotes.service.cache.GlossaryNearCache;
+import com.fan.aivideonotes.service.cache.GlossaryTermIndex;
+import com.fan.aivideonotes.service.llm.LLMService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class AiInteractionServiceTest {
+
+    @Test
+    void getExplanations_shouldBatchMisses_andRetryMissingTermsIndividually() {
+        LLMServiceProvider mockLlmServiceProvider = Mockito.mock(LLMServiceProvider.class);
+        GlossaryTermRepository mockGlossaryRepository = Mockito.mock(GlossaryTermRepository.class);
+        LLMService mockLlmService = Mockito.mock(LLMService.class);
+        when(mockLlmServiceProvider.getProvider(any())).thenReturn(mockLlmService);
+
+        GlossaryTerm cached = new GlossaryTerm();
+        cached.setTerm("IOC");
+        cached.setLongExplanation("cached explanation");
+        when(mockGlossaryRepository.findByTermIn(any())).thenReturn(List.of(cached));
+        when(mockGlossaryRepository.findByTerm(anyString())).thenReturn(Optional.empty());
+
+        // 批量回复：AOP 的键大小写不同，Bean 的值不是字符串，需要单独重试
+        when(mockLlmService.generateTextResponse(argThat(prompt -> prompt != null && prompt.contains("术语列表")), any()))
+                .thenReturn("```json\n{\"aop\": \"aop explanation\", \"Bean\": 42}\n```");
+        when(mockLlmService.generateTextResponse(argThat(prompt -> prompt != null && !prompt.contains("术语列表")), any()))
+                .thenReturn("bean explanation");
+
+        GlossaryNearCache glossaryCache = new GlossaryNearCache(mockGlossaryRepository, null, null,
+                new MockEnvironment().withProperty("app.glossary.cache.listen.enabled", "false"), new SimpleMeterRegistry());
+        GlossaryTermIndex termIndex = new GlossaryTermIndex(mockGlossaryRepository, Mockito.mock(GlossaryTermAliasRepository.class),
+                new MockEnvironment(), new SimpleMeterRegistry());
+        AiInteractionService service = new AiInteractionService(mockLlmServiceProvider, mockGlossaryRepository, new ObjectMapper(),
+                glossaryCache, termIndex);
+        Map<String, String> explanations = service.getExplanations(List.of("IOC", "AOP", "Bean", "AOP"), "context", null);
+
+        assertEquals(List.of("IOC", "AOP", "Bean"), List.copyOf(explanations.keySet()));
+        assertEquals("cached explanation", explanations.get("IOC"));
+        assertEquals("aop explanation", explanations.get("AOP"));
+        assertEquals("bean explanation", explanations.get("Bean"));
+        // 一次批量请求 + 一次单独重试
+        verify(mockLlmService, times(2)).generateTextResponse(anyString(), any());
+        verify(mockGlossaryRepository).upsertExplanation("AOP", null, "aop explanation");
+        verify(mockGlossaryRepository).upsertExplanation("Bean", null, "bean explanation");
+    }
+}
@@ -0,0 +1,126 @@
+package com.fan.aivideonotes.service;
+
+import com.fan.aivideonotes.model.GlossaryTerm;
+import com.fan.aivideonotes.repository.GlossaryTermRepository;
+import com.fan.aivideonotes.service.llm.LLMService;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * 验证解释接口在等待 LLM 期间不占用连接池：40 个请求同时在途 (每个 LLM 调用耗时 1 秒，同一术语的请求合并为一次)，
+ * 它们都在等待 LLM 时连接池中的活跃连接数应接近 0，而不是被占满。同一个术语的并发请求不应违反唯一约束。
+ * 需要本地 PostgreSQL (见 application.properties)。运行方式：mvn test -Dtest=ExplanationConnectionPoolTest -DdbTest=true
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "dbTest", matches = "true")
+class ExplanationConnectionPoolTest {
+
+    private static final int IN_FLIGHT = 40;
+    // 一半请求是不同的术语，另一半是同一个术语 (由 GlossaryNearCache 合并为一次生成)
+    private static final int DISTINCT_TERMS = IN_FLIGHT / 2 + 1;
+    private static final long LLM_DELAY_MS = 1000;
+
+    @MockitoBean
+    private LLMServiceProvider llmServiceProvider;
+
+    @Autowired
+    private AiInteractionService aiInteractionService;
+    @Autowired
+    private GlossaryTermRepository glossaryRepository;
+    @Autowired
+    private DataSource dataSource;
+
+    private final String prefix = "pool-test-" + UUID.randomUUID() + "-";
+
+    @AfterEach
+    void cleanUp() {
+        glossaryRepository.deleteAll(glossaryRepository.findAll().stream()
+                .filter(term -> term.getTerm().startsWith(prefix))
+                .toList());
+    }
+
+    @Test
+    void inFlightExplanations_shouldNotHoldPooledConnections() throws Exception {
+        AtomicInteger insideLlm = new AtomicInteger();
+        LLMService slowLlm = Mockito.mock(LLMService.class);
+        when(slowLlm.generateTextResponse(anyString(), any())).thenAnswer(invocation -> {
+            insideLlm.incrementAndGet();
+            try {
+                Thread.sleep(LLM_DELAY_MS);
+            } finally {
+                insideLlm.decrementAndGet();
+            }
+            return "explanation";
+        });
+        when(llmServiceProvider.getProvider(any())).thenReturn(slowLlm);
+
+        HikariDataSource hikari = dataSource.unwrap(HikariDataSource.class);
+        AtomicInteger peakActive = new AtomicInteger();
+        AtomicInteger samples = new AtomicInteger();
+        AtomicBoolean sampling = new AtomicBoolean(true);
+        Thread sampler = Thread.ofPlatform().start(() -> {
+            while (sampling.get()) {
+                // 只在所有请求都在等待 LLM 时采样
+                if (insideLlm.get() == DISTINCT_TERMS) {
+                    peakActive.accumulateAndGet(hikari.getHikariPoolMXBean().getActiveConnections(), Math::max);
+                    samples.incrementAndGet();
+                }
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        try (ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < IN_FLIGHT; i++) {
+                // 一半是不同的术语，一半是同一个术语 (并发插入同一行)
+                String term = prefix + (i % 2 == 0 ? "term-" + i : "shared");
+                futures.add(CompletableFuture.supplyAsync(
+                        () -> aiInteractionService.getExplanation(term, "short", "context", null), requests));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } finally {
+            sampling.set(false);
+            sampler.join();
+        }
+
+        int maxPoolSize = hikari.getMaximumPoolSize();
+        System.out.println("Peak active connections with " + IN_FLIGHT + " explanations waiting on the LLM: "
+                + peakActive.get() + " (pool size " + maxPoolSize + ", " + samples.get() + " samples)");
+        assertTrue(samples.get() > 0, "all requests should have been waiting on the LLM at the same time");
+        // 后台作业轮询可能偶尔占用一个连接，但不应随在途请求数增长
+        assertTrue(peakActive.get() <= 2, "LLM calls must not pin pooled connections");
+
+        List<GlossaryTerm> stored = glossaryRepository.findAll().stream()
+                .filter(term -> term.getTerm().startsWith(prefix))
+                .toList();
+        assertEquals(DISTINCT_TERMS, stored.size());
+        Mockito.verify(slowLlm, Mockito.times(DISTINCT_TERMS)).generateTextResponse(anyString(), any());
+        assertTrue(stored.stream().allMatch(term -> "explanation".equals(term.getLongExplanation())));
+    }
+}
@@ -0,0 +1,41 @@
+package com.fan.aivideonotes.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NoteBlockMergerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final NoteBlockMerger merger = new NoteBlockMerger(objectMapper);
+
+    @Test
+    void merge_shouldKeepSegmentOrder_andDropOverlappingHeadingsAndTerms() throws Exception {
+        String first = """
+                {"notes": [
+                  {"type": "heading", "content": "Spring Boot 简介"},
+                  {"type": "paragraph", "content": "第一段"},
+                  {"type": "knowledge_point", "content": {"term": "IoC", "explanation": "控制反转"}},
+                  {"type": "heading", "content": "自动配置"}
+                ]}""";
+        String second = """
+                {"notes": [
+                  {"type": "heading", "content": "自动配置 "},
+                  {"type": "knowledge_point", "content": {"term": "ioc", "explanation": "重复的术语"}},
+                  {"type": "paragraph", "content": "第二段"},
+                  {"type": "knowledge_point", "content": {"term": "Starter", "explanation": "依赖集合"}}
+                ]}""";
+
+        JsonNode notes = objectMapper.readTree(merger.merge(List.of(first, second))).get("notes");
+
+        assertEquals(6, notes.size());
+        assertEquals("Spring Boot 简介", notes.get(0).get("content").asText());
+        assertEquals("自动配置", notes.get(3).get("content").asText());
+        assertEquals("第二段", notes.get(4).get("content").asText());
+        assertEquals("Starter", notes.get(5).get("content").get("term").asText());
+    }
+}
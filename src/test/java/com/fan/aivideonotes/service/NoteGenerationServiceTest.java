@@ -2,17 +2,27 @@ package com.fan.aivideonotes.service;
 
 import com.fan.aivideonotes.controller.dto.VideoLinkRequest;
 import com.fan.aivideonotes.model.Note;
+import com.fan.aivideonotes.model.NoteContent;
 import com.fan.aivideonotes.model.Task;
 import com.fan.aivideonotes.repository.NoteRepository;
 import com.fan.aivideonotes.repository.TaskRepository;
+import com.fan.aivideonotes.service.cache.LocalArtifactStore;
+import com.fan.aivideonotes.service.cache.NoteCacheService;
+import com.fan.aivideonotes.service.event.TaskEventPublisher;
 import com.fan.aivideonotes.service.llm.GeminiService;
+import com.fan.aivideonotes.service.process.ProcessRunner;
+import com.fan.aivideonotes.service.transcript.TranscriptNoteService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.env.StandardEnvironment;
 
 import java.io.File;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -28,27 +38,40 @@ class NoteGenerationServiceTest {
 
         // 手动创建所有的 Mock 对象
         GeminiService mockGeminiService = Mockito.mock(GeminiService.class);
+        LLMServiceProvider mockLlmServiceProvider = Mockito.mock(LLMServiceProvider.class);
         NoteRepository mockNoteRepository = Mockito.mock(NoteRepository.class);
         VideoProcessingService mockVideoProcessingService = Mockito.mock(VideoProcessingService.class);
         TaskRepository mockTaskRepository = Mockito.mock(TaskRepository.class); // 新增 TaskRepository Mock
 
         // 手动创建被测试的实例
         NoteGenerationService noteGenerationService = new NoteGenerationService(
-                mockGeminiService,
+                mockLlmServiceProvider,
                 mockNoteRepository,
                 mockVideoProcessingService,
-                mockTaskRepository // 传入新的 Mock 对象
+                mockTaskRepository, // 传入新的 Mock 对象
+                new NoteCacheService(mockNoteRepository),
+                new ChunkedNoteGenerationService(mockVideoProcessingService, new NoteBlockMerger(new ObjectMapper())),
+                new TaskEventPublisher(),
+                new AudioProfiles(),
+                new LocalArtifactStore(false, "unused", 0, new SimpleMeterRegistry()), // 关闭产物缓存
+                new ProcessRunner(new StandardEnvironment(), new SimpleMeterRegistry()),
+                Mockito.mock(TranscriptNoteService.class), // 字幕快速路径在手动构造时默认关闭
+                Mockito.mock(GlossaryPrewarmService.class),
+                Runnable::run, Runnable::run, Runnable::run // 各阶段同步执行，便于断言
         );
 
         // 定义输入
         String taskId = "test-task-123";
-        Long userId = 1L;
-        String videoUrl = "https://example.com/video.mp4";
-        VideoLinkRequest.GenerationMode mode = VideoLinkRequest.GenerationMode.FLASH;
+        VideoLinkRequest request = new VideoLinkRequest();
+        request.setUserId(1L);
+        request.setUrl("https://example.com/video.mp4");
+        request.setMode(VideoLinkRequest.GenerationMode.FLASH);
 
         // 准备 Mock 对象的行为
+        when(mockLlmServiceProvider.resolveProviderKey(any())).thenReturn("GEMINI");
+        when(mockLlmServiceProvider.getProvider("GEMINI")).thenReturn(mockGeminiService);
         when(mockVideoProcessingService.downloadVideo(anyString())).thenReturn(new File("fake-video.mp4"));
-        when(mockVideoProcessingService.extractAudio(any(File.class))).thenReturn(new File("fake-audio.mp3"));
+        when(mockVideoProcessingService.extractAudio(any(File.class), any(AudioProfile.class), any(File.class))).thenReturn(new File("fake-audio.mp3"));
         when(mockGeminiService.generateNotesFromAudio(any(File.class), any())).thenReturn("{\"title\":\"Test\"}");
 
         Note savedNote = new Note();
@@ -62,7 +85,7 @@ class NoteGenerationServiceTest {
 
 
         // --- 2. Act (执行阶段) ---
-        noteGenerationService.generateNotesForVideo(taskId, userId, videoUrl, mode);
+        noteGenerationService.generateNotesForVideo(taskId, request);
 
 
         // --- 3. Assert (断言/验证阶段) ---
@@ -80,5 +103,58 @@ class NoteGenerationServiceTest {
         assertEquals("COMPLETED", finalTask.getStatus());
         // 验证最终的 Note 是否被关联上了
         assertEquals(savedNote, finalTask.getResultNote());
+        assertEquals(NoteCacheService.STATUS_MISS, finalTask.getCacheStatus());
     }
-}
\ No newline at end of file
+
+    @Test
+    void generateNotesForVideo_shouldReuseCachedNote_withoutRunningPipeline() {
+        LLMServiceProvider mockLlmServiceProvider = Mockito.mock(LLMServiceProvider.class);
+        NoteRepository mockNoteRepository = Mockito.mock(NoteRepository.class);
+        VideoProcessingService mockVideoProcessingService = Mockito.mock(VideoProcessingService.class);
+        TaskRepository mockTaskRepository = Mockito.mock(TaskRepository.class);
+
+        NoteGenerationService noteGenerationService = new NoteGenerationService(
+                mockLlmServiceProvider,
+                mockNoteRepository,
+                mockVideoProcessingService,
+                mockTaskRepository,
+                new NoteCacheService(mockNoteRepository),
+                new ChunkedNoteGenerationService(mockVideoProcessingService, new NoteBlockMerger(new ObjectMapper())),
+                new TaskEventPublisher(),
+                new AudioProfiles(),
+                new LocalArtifactStore(false, "unused", 0, new SimpleMeterRegistry()), // 关闭产物缓存
+                new ProcessRunner(new StandardEnvironment(), new SimpleMeterRegistry()),
+                Mockito.mock(TranscriptNoteService.class), // 字幕快速路径在手动构造时默认关闭
+                Mockito.mock(GlossaryPrewarmService.class),
+                Runnable::run, Runnable::run, Runnable::run // 各阶段同步执行，便于断言
+        );
+
+        String taskId = "test-task-456";
+        VideoLinkRequest request = new VideoLinkRequest();
+        request.setUserId(2L);
+        request.setUrl("https://www.bilibili.com/video/BV1xx411c7mD?spm_id_from=333.1007");
+
+        Note cachedNote = new Note();
+        cachedNote.setId(7L);
+        cachedNote.setContent(new NoteContent(List.of()));
+        when(mockLlmServiceProvider.resolveProviderKey(any())).thenReturn("GEMINI");
+        when(mockNoteRepository.findFirstByCacheKeyOrderByCreatedAtDesc("bilibili:BV1xx411c7mD|FLASH|GEMINI"))
+                .thenReturn(Optional.of(cachedNote));
+        when(mockNoteRepository.save(any(Note.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Task initialTask = new Task();
+        initialTask.setId(taskId);
+        when(mockTaskRepository.findById(taskId)).thenReturn(Optional.of(initialTask));
+
+        noteGenerationService.generateNotesForVideo(taskId, request);
+
+        verifyNoInteractions(mockVideoProcessingService);
+        ArgumentCaptor<Task> taskCaptor = ArgumentCaptor.forClass(Task.class);
+        verify(mockTaskRepository, atLeastOnce()).save(taskCaptor.capture());
+        Task finalTask = taskCaptor.getValue();
+        assertEquals("COMPLETED", finalTask.getStatus());
+        assertEquals(NoteCacheService.STATUS_HIT, finalTask.getCacheStatus());
+        assertEquals(new NoteContent(List.of()), finalTask.getResultNote().getContent());
+        assertEquals(2L, finalTask.getResultNote().getUserId());
+    }
+}
@@ -0,0 +1,91 @@
+package com.fan.aivideonotes.service.cache;
+
+import com.fan.aivideonotes.repository.GlossaryTermRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.jdbc.datasource.TransactionAwareDataSourceProxy;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+class GlossaryNearCacheTest {
+
+    private final GlossaryTermRepository mockGlossaryRepository = Mockito.mock(GlossaryTermRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final GlossaryNearCache cache = new GlossaryNearCache(mockGlossaryRepository, null, null,
+            new MockEnvironment().withProperty("app.glossary.cache.listen.enabled", "false"), meterRegistry);
+
+    @Test
+    void missingTerm_shouldBeNegativelyCached() {
+        when(mockGlossaryRepository.findByTerm("Kafka")).thenReturn(Optional.empty());
+
+        assertTrue(cache.get("Kafka").isEmpty());
+        assertTrue(cache.get("Kafka").isEmpty());
+
+        verify(mockGlossaryRepository, times(1)).findByTerm("Kafka");
+    }
+
+    @Test
+    void concurrentMisses_shouldShareOneGeneration() throws Exception {
+        AtomicInteger generations = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        try (ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 10; i++) {
+                futures.add(CompletableFuture.supplyAsync(() -> cache.generateOnce("Kafka", () -> {
+                    generations.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "a distributed log";
+                }), requests));
+            }
+            // 等其余请求都挂到同一个生成上
+            while (meterRegistry.counter("glossary.cache.coalesced").count() < 9) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+        }
+
+        for (CompletableFuture<String> future : futures) {
+            assertEquals("a distributed log", future.join());
+        }
+        assertEquals(1, generations.get());
+        assertEquals(Optional.of("a distributed log"), cache.get("Kafka"));
+        verify(mockGlossaryRepository, never()).findByTerm("Kafka");
+    }
+
+    @Test
+    void listenerConnection_shouldUseTheCredentialsOfTheApplicationPool() throws Exception {
+        // 应用的 DataSource 是代码中创建的连接池，spring.datasource.* 属性与它不一致时不应被使用
+        try (HikariDataSource pool = new HikariDataSource()) {
+            pool.setJdbcUrl("jdbc:postgresql://db.internal:5432/ai_video_notes_db");
+            pool.setUsername("postgres");
+            pool.setPassword("123456");
+
+            GlossaryNearCache.ListenerConnectionSettings settings =
+                    GlossaryNearCache.ListenerConnectionSettings.of(new TransactionAwareDataSourceProxy(pool));
+
+            assertEquals(new GlossaryNearCache.ListenerConnectionSettings(
+                    "jdbc:postgresql://db.internal:5432/ai_video_notes_db", "postgres", "123456"), settings);
+        }
+        // 不是 Hikari 连接池时回退为从连接池借连接
+        assertNull(GlossaryNearCache.ListenerConnectionSettings.of(Mockito.mock(javax.sql.DataSource.class)));
+    }
+}
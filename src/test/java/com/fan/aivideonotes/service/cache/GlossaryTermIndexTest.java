@@ -0,0 +1,80 @@
+package com.fan.aivideonotes.service.cache;
+
+import com.fan.aivideonotes.repository.GlossaryTermAliasRepository;
+import com.fan.aivideonotes.repository.GlossaryTermRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class GlossaryTermIndexTest {
+
+    private final GlossaryTermRepository mockGlossaryRepository = Mockito.mock(GlossaryTermRepository.class);
+    private final GlossaryTermAliasRepository mockAliasRepository = Mockito.mock(GlossaryTermAliasRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final GlossaryTermIndex index = new GlossaryTermIndex(mockGlossaryRepository, mockAliasRepository,
+            new MockEnvironment(), meterRegistry);
+
+    @Test
+    void normalize_shouldFoldCaseWidthSeparatorsAndCommonSuffixes() {
+        assertEquals("springboot", GlossaryTermNormalizer.normalize("Spring Boot"));
+        assertEquals("springboot", GlossaryTermNormalizer.normalize("ＳｐｒｉｎｇＢｏｏｔ"));
+        assertEquals("springboot", GlossaryTermNormalizer.normalize("spring-boot框架"));
+        assertEquals("依赖注入", GlossaryTermNormalizer.normalize("依赖注入的原理"));
+        assertEquals("依赖注入", GlossaryTermNormalizer.normalize("「依赖注入」"));
+        assertEquals("c++", GlossaryTermNormalizer.normalize("C++"));
+        assertEquals("模式", GlossaryTermNormalizer.normalize("模式"));
+        // 两个字的词干不去后缀
+        assertEquals("设计模式", GlossaryTermNormalizer.normalize("设计模式"));
+    }
+
+    @Test
+    void nearDuplicates_shouldResolveToTheCanonicalTerm_andBePersistedAsAliases() {
+        when(mockGlossaryRepository.findAllTerms()).thenReturn(List.of("Spring Boot", "Java 8", "依赖注入"));
+        index.refresh();
+
+        assertEquals("Spring Boot", index.resolve("Spring Boot"));
+        assertEquals("Spring Boot", index.resolve("SpringBoot"));
+        assertEquals("Spring Boot", index.resolve("Spring Boot框架"));
+        assertEquals("Spring Boot", index.resolve("spring boot 3"));
+        assertEquals("依赖注入", index.resolve("依赖注入原理"));
+        // 版本号不同、或者只是相似的不同概念，不合并
+        assertEquals("Java 17", index.resolve("Java 17"));
+        assertEquals("依赖倒置", index.resolve("依赖倒置"));
+
+        verify(mockAliasRepository).insertIfAbsent("SpringBoot", "Spring Boot", "normalized", 1.0);
+        verify(mockAliasRepository).insertIfAbsent(eq("spring boot 3"), eq("Spring Boot"), eq("similar"), anyDouble());
+        verify(mockAliasRepository, never()).insertIfAbsent(eq("Java 17"), anyString(), anyString(), anyDouble());
+        assertEquals(4, meterRegistry.counter("glossary.alias.lookups", "match", "normalized").count()
+                + meterRegistry.counter("glossary.alias.lookups", "match", "similar").count());
+    }
+
+    @Test
+    void distinctConceptsSharingAShortStem_shouldNotBeMerged() {
+        when(mockGlossaryRepository.findAllTerms()).thenReturn(List.of("设计模式"));
+        index.refresh();
+
+        assertEquals("设计思想", index.resolve("设计思想"));
+        assertEquals("设计原理", index.resolve("设计原理"));
+        verify(mockAliasRepository, never()).insertIfAbsent(anyString(), anyString(), anyString(), anyDouble());
+    }
+
+    @Test
+    void registeredTerm_shouldBeReusedByLaterSpellings() {
+        assertEquals("Message Queue", index.resolve("Message Queue"));
+        index.register("Message Queue");
+
+        assertEquals("Message Queue", index.resolve("message-queue"));
+        // 第二次直接命中已记录的别名
+        assertEquals("Message Queue", index.resolve("message-queue"));
+        assertEquals(1, meterRegistry.counter("glossary.alias.lookups", "match", "alias").count());
+    }
+}
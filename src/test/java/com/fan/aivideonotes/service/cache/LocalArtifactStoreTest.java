@@ -0,0 +1,78 @@
+package com.fan.aivideonotes.service.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocalArtifactStoreTest {
+
+    @TempDir
+    Path storeDir;
+
+    @TempDir
+    Path workDir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void acquire_shouldReuseStoredArtifact_andCountHitsAndSavedBytes() throws IOException {
+        LocalArtifactStore store = new LocalArtifactStore(true, storeDir.toString(), 1000, meterRegistry);
+
+        assertTrue(store.acquire(LocalArtifactStore.KIND_AUDIO, "youtube:abc|speech-opus").isEmpty());
+        LocalArtifactStore.Lease stored = store.put(LocalArtifactStore.KIND_AUDIO, "youtube:abc|speech-opus", sourceFile("audio.ogg", 100));
+        stored.close();
+
+        LocalArtifactStore.Lease reused = store.acquire(LocalArtifactStore.KIND_AUDIO, "youtube:abc|speech-opus").orElseThrow();
+        assertEquals(stored.file(), reused.file());
+        assertTrue(reused.file().exists());
+        assertEquals(1.0, meterRegistry.counter("artifact.store.hits", "kind", "audio").count());
+        assertEquals(1.0, meterRegistry.counter("artifact.store.misses", "kind", "audio").count());
+        assertEquals(100.0, meterRegistry.counter("artifact.store.bytes.saved", "kind", "audio").count());
+        // 不同的预处理配置是不同的产物
+        assertTrue(store.acquire(LocalArtifactStore.KIND_AUDIO, "youtube:abc|speech-mp3").isEmpty());
+    }
+
+    @Test
+    void put_shouldEvictLeastRecentlyUsed_butNeverArtifactsInUse() throws IOException {
+        LocalArtifactStore store = new LocalArtifactStore(true, storeDir.toString(), 250, meterRegistry);
+
+        LocalArtifactStore.Lease inUse = store.put(LocalArtifactStore.KIND_MEDIA, "a", sourceFile("a.mp4", 100));
+        store.put(LocalArtifactStore.KIND_MEDIA, "b", sourceFile("b.mp4", 100)).close();
+        store.put(LocalArtifactStore.KIND_MEDIA, "c", sourceFile("c.mp4", 100)).close();
+
+        // "a" 最久未使用，但仍在使用中，所以淘汰的是 "b"
+        assertTrue(inUse.file().exists());
+        assertTrue(store.acquire(LocalArtifactStore.KIND_MEDIA, "b").isEmpty());
+        assertEquals(200, store.getTotalBytes());
+
+        // 释放后 "a" 可以被淘汰
+        inUse.close();
+        store.put(LocalArtifactStore.KIND_MEDIA, "d", sourceFile("d.mp4", 100)).close();
+        assertFalse(inUse.file().exists());
+        assertEquals(200, store.getTotalBytes());
+    }
+
+    @Test
+    void constructor_shouldReloadEntriesLeftOnDisk() throws IOException {
+        LocalArtifactStore first = new LocalArtifactStore(true, storeDir.toString(), 1000, meterRegistry);
+        first.put(LocalArtifactStore.KIND_AUDIO, "bilibili:BV1|speech-opus", sourceFile("audio.ogg", 42)).close();
+
+        LocalArtifactStore restarted = new LocalArtifactStore(true, storeDir.toString(), 1000, new SimpleMeterRegistry());
+
+        assertEquals(42, restarted.getTotalBytes());
+        assertTrue(restarted.acquire(LocalArtifactStore.KIND_AUDIO, "bilibili:BV1|speech-opus").isPresent());
+    }
+
+    private File sourceFile(String name, int size) throws IOException {
+        return Files.write(workDir.resolve(name), new byte[size]).toFile();
+    }
+}
@@ -0,0 +1,76 @@
+package com.fan.aivideonotes.service.cache;
+
+import com.fan.aivideonotes.model.PromptCacheEntry;
+import com.fan.aivideonotes.repository.PromptCacheEntryRepository;
+import com.fan.aivideonotes.service.llm.PromptCachePolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PromptResponseCacheTest {
+
+    private final PromptCacheEntryRepository mockRepository = Mockito.mock(PromptCacheEntryRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PromptResponseCache cache = new PromptResponseCache(mockRepository, new MockEnvironment(), meterRegistry);
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private String generate() {
+        return "answer " + calls.incrementAndGet();
+    }
+
+    private double decisions(String decision) {
+        return meterRegistry.counter("llm.prompt.cache", "provider", "GEMINI", "decision", decision).count();
+    }
+
+    @Test
+    void repeatedPrompt_shouldBeServedFromMemory_andBypassShouldRefreshIt() {
+        assertEquals("answer 1", cache.getOrGenerate("GEMINI", "flash", "prompt", PromptCachePolicy.DEFAULT, this::generate));
+        assertEquals("answer 1", cache.getOrGenerate("GEMINI", "flash", "prompt", PromptCachePolicy.DEFAULT, this::generate));
+        // 换模型不复用
+        assertEquals("answer 2", cache.getOrGenerate("GEMINI", "pro", "prompt", PromptCachePolicy.DEFAULT, this::generate));
+
+        assertEquals("answer 3", cache.getOrGenerate("GEMINI", "flash", "prompt", PromptCachePolicy.BYPASS, this::generate));
+        assertEquals("answer 3", cache.getOrGenerate("GEMINI", "flash", "prompt", PromptCachePolicy.DEFAULT, this::generate));
+        assertEquals("answer 4", cache.getOrGenerate("GEMINI", "flash", "prompt", PromptCachePolicy.NO_STORE, this::generate));
+
+        assertEquals(2, decisions("hit_memory"));
+        assertEquals(2, decisions("miss"));
+        assertEquals(1, decisions("bypass"));
+        assertEquals(1, decisions("no_store"));
+        verify(mockRepository, times(3)).upsert(anyString(), eq("GEMINI"), anyString(), anyString(), anyInt(), anyLong(), any());
+    }
+
+    @Test
+    void persistedEntry_shouldBeServedAfterRestart_unlessExpired() {
+        PromptCacheEntry entry = new PromptCacheEntry();
+        entry.setResponse("persisted answer");
+        entry.setLatencyMillis(1500);
+        entry.setExpiresAt(LocalDateTime.now().plusHours(1));
+        when(mockRepository.findById(PromptResponseCache.cacheKey("GEMINI", "flash", "prompt"))).thenReturn(Optional.of(entry));
+
+        assertEquals("persisted answer", cache.getOrGenerate("GEMINI", "flash", "prompt", PromptCachePolicy.DEFAULT, this::generate));
+        assertEquals(1, decisions("hit_db"));
+        assertEquals(1.5, meterRegistry.timer("llm.prompt.cache.saved.latency", "provider", "GEMINI").totalTime(TimeUnit.SECONDS), 0.001);
+
+        PromptCacheEntry stale = new PromptCacheEntry();
+        stale.setResponse("stale answer");
+        stale.setExpiresAt(LocalDateTime.now().minusMinutes(1));
+        when(mockRepository.findById(PromptResponseCache.cacheKey("GEMINI", "flash", "stale prompt"))).thenReturn(Optional.of(stale));
+        assertEquals("answer 1", cache.getOrGenerate("GEMINI", "flash", "stale prompt", PromptCachePolicy.DEFAULT, this::generate));
+        assertEquals(1, decisions("miss"));
+    }
+}
@@ -0,0 +1,43 @@
+package com.fan.aivideonotes.service.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class VideoUrlNormalizerTest {
+
+    @Test
+    void normalize_shouldCanonicalizeYoutubeLinks() {
+        assertEquals("youtube:dQw4w9WgXcQ", VideoUrlNormalizer.normalize("https://www.youtube.com/watch?v=dQw4w9WgXcQ&t=42s&si=abc"));
+        assertEquals("youtube:dQw4w9WgXcQ", VideoUrlNormalizer.normalize("https://youtu.be/dQw4w9WgXcQ?si=tracking"));
+        assertEquals("youtube:dQw4w9WgXcQ", VideoUrlNormalizer.normalize("https://m.youtube.com/shorts/dQw4w9WgXcQ"));
+    }
+
+    @Test
+    void normalize_shouldCanonicalizeBilibiliLinks_andKeepPageNumber() {
+        assertEquals("bilibili:BV1xx411c7mD",
+                VideoUrlNormalizer.normalize("https://www.bilibili.com/video/BV1xx411c7mD/?spm_id_from=333.1007&vd_source=abc"));
+        assertEquals("bilibili:BV1xx411c7mD", VideoUrlNormalizer.normalize("https://m.bilibili.com/video/BV1xx411c7mD?p=1"));
+        assertEquals("bilibili:BV1xx411c7mD?p=3", VideoUrlNormalizer.normalize("https://www.bilibili.com/video/BV1xx411c7mD?p=3"));
+        assertNotEquals(VideoUrlNormalizer.normalize("https://www.bilibili.com/video/BV1xx411c7mD?p=2"),
+                VideoUrlNormalizer.normalize("https://www.bilibili.com/video/BV1xx411c7mD?p=3"));
+    }
+
+    @Test
+    void normalize_shouldStripTrackingParams_andSortTheRest() {
+        assertEquals("https://example.com/talks/42?a=1&b=2",
+                VideoUrlNormalizer.normalize("HTTPS://Example.com/talks/42/?b=2&utm_source=x&a=1#comments"));
+    }
+
+    @Test
+    void normalize_shouldKeepGenericParamNames_onOtherHosts() {
+        assertEquals("https://vimeo.com/showcase/7?start=2&t=90",
+                VideoUrlNormalizer.normalize("https://vimeo.com/showcase/7?t=90&start=2&fbclid=x"));
+        assertNotEquals(VideoUrlNormalizer.normalize("https://example.com/player?id=9&start=1"),
+                VideoUrlNormalizer.normalize("https://example.com/player?id=9&start=2"));
+        // YouTube 播放列表等无法折叠成视频 ID 的链接仍去掉跳转参数
+        assertEquals("https://youtube.com/playlist?list=PL123",
+                VideoUrlNormalizer.normalize("https://www.youtube.com/playlist?list=PL123&si=abc&t=10"));
+    }
+}
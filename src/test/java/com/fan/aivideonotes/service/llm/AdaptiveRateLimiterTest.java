@@ -0,0 +1,88 @@
+package com.fan.aivideonotes.service.llm;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveRateLimiterTest {
+
+    private static AdaptiveRateLimiter limiter(double rpm, int initialConcurrency, Duration maxWait) {
+        return new AdaptiveRateLimiter("test", "flash",
+                new AdaptiveRateLimiter.Limits(rpm, 0, initialConcurrency, 16, maxWait, Duration.ofMillis(200)),
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    void throttle_shouldHalveConcurrency_andSuccessShouldGrowItBack() throws Exception {
+        AdaptiveRateLimiter limiter = limiter(0, 8, Duration.ofSeconds(5));
+
+        limiter.acquire(0).onThrottled(Duration.ZERO);
+        assertEquals(4.0, limiter.getConcurrencyLimit());
+
+        limiter.acquire(0).onSuccess();
+        assertEquals(4.25, limiter.getConcurrencyLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void throttle_shouldPauseAdmission_forRetryAfter() throws Exception {
+        AdaptiveRateLimiter limiter = limiter(0, 4, Duration.ofSeconds(5));
+
+        AdaptiveRateLimiter.Permit throttled = limiter.acquire(0);
+        // 暂停从 onThrottled 开始计算，计时也从这里开始 (onThrottled 内的日志输出本身可能很慢)
+        long start = System.nanoTime();
+        throttled.onThrottled(Duration.ofMillis(300));
+        limiter.acquire(0).onSuccess();
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 250);
+    }
+
+    @Test
+    void waiters_shouldBeAdmittedInArrivalOrder() throws Exception {
+        AdaptiveRateLimiter limiter = limiter(0, 1, Duration.ofSeconds(5));
+        AdaptiveRateLimiter.Permit first = limiter.acquire(0);
+        List<Integer> order = new CopyOnWriteArrayList<>();
+
+        Thread[] threads = new Thread[3];
+        for (int i = 0; i < threads.length; i++) {
+            int id = i;
+            threads[i] = Thread.ofVirtual().start(() -> {
+                try {
+                    AdaptiveRateLimiter.Permit permit = limiter.acquire(0);
+                    order.add(id);
+                    permit.onSuccess();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            // 保证按 0, 1, 2 的顺序进入队列
+            while (limiter.getQueueDepth() < i + 1) {
+                Thread.sleep(5);
+            }
+        }
+
+        first.onFailure();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(List.of(0, 1, 2), order);
+    }
+
+    @Test
+    void requestBucket_shouldQueueBeyondRate_andTimeOutAfterMaxWait() throws Exception {
+        AdaptiveRateLimiter limiter = limiter(1, 4, Duration.ofMillis(200));
+
+        limiter.acquire(0).onSuccess();
+
+        assertThrows(IllegalStateException.class, () -> limiter.acquire(0));
+        assertEquals(0, limiter.getQueueDepth());
+    }
+}
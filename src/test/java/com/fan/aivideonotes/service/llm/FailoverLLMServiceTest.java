@@ -0,0 +1,106 @@
+package com.fan.aivideonotes.service.llm;
+
+import com.fan.aivideonotes.controller.dto.VideoLinkRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FailoverLLMServiceTest {
+
+    /**
+     * 第一次调用一直阻塞到被中断，之后的调用等待 laterDelayMillis 后返回。
+     */
+    private static class SlowFirstService implements LLMService {
+
+        private final long laterDelayMillis;
+        final AtomicInteger calls = new AtomicInteger();
+        private final CountDownLatch firstInterrupted = new CountDownLatch(1);
+
+        SlowFirstService(long laterDelayMillis) {
+            this.laterDelayMillis = laterDelayMillis;
+        }
+
+        @Override
+        public String generateTextResponse(String prompt) {
+            int call = calls.incrementAndGet();
+            try {
+                Thread.sleep(call == 1 ? 60_000 : laterDelayMillis);
+            } catch (InterruptedException e) {
+                firstInterrupted.countDown();
+                throw new RuntimeException("cancelled", e);
+            }
+            return "answer-" + call;
+        }
+
+        @Override
+        public String generateNotesFromAudio(File audioFile, VideoLinkRequest request) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getProviderKey() {
+            return "GEMINI";
+        }
+    }
+
+    private static ProviderCircuitBreaker breaker() {
+        return new ProviderCircuitBreaker("GEMINI",
+                new ProviderCircuitBreaker.Settings(Duration.ofSeconds(60), 4, 0.5, Duration.ofSeconds(30), 0.8, Duration.ofMinutes(1), 1),
+                new SimpleMeterRegistry());
+    }
+
+    private static FailoverLLMService failover(LLMService service, int concurrency, ProviderCircuitBreaker breaker) {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("app.llm.limits.default.requests-per-minute", "6000")
+                .withProperty("app.llm.limits.default.initial-concurrency", String.valueOf(concurrency));
+        RateLimitedLLMService limited = new RateLimitedLLMService(service, environment, new SimpleMeterRegistry());
+        return new FailoverLLMService(List.of(new FailoverLLMService.Member(limited, breaker)),
+                new FailoverLLMService.HedgeSettings(true, 1000, Duration.ofMillis(50)), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void hedge_shouldReturnTheFasterAttempt_andCancelTheLoser() throws Exception {
+        SlowFirstService service = new SlowFirstService(0);
+        ProviderCircuitBreaker breaker = breaker();
+
+        assertEquals("answer-2", failover(service, 4, breaker).generateTextResponse("short prompt"));
+
+        assertTrue(service.firstInterrupted.await(5, TimeUnit.SECONDS), "losing attempt should be interrupted");
+        assertEquals(2, service.calls.get());
+        // 被取消的一方不计入熔断器
+        assertEquals(1, breaker.snapshot().calls());
+        assertEquals(0, breaker.snapshot().failures());
+    }
+
+    @Test
+    void hedge_shouldBeSkipped_whenProviderHasNoSpareCapacity() {
+        SlowFirstService service = new SlowFirstService(0) {
+            @Override
+            public String generateTextResponse(String prompt) {
+                calls.incrementAndGet();
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return "slow";
+            }
+        };
+        ProviderCircuitBreaker breaker = breaker();
+
+        assertEquals("slow", failover(service, 1, breaker).generateTextResponse("short prompt"));
+
+        assertEquals(1, service.calls.get());
+        assertEquals(1, breaker.snapshot().calls());
+    }
+}
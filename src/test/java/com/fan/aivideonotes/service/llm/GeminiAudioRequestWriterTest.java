@@ -0,0 +1,100 @@
+package com.fan.aivideonotes.service.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeminiAudioRequestWriterTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final GeminiAudioRequestWriter writer = new GeminiAudioRequestWriter(objectMapper.getFactory());
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void writeInline_shouldProduceTheSameRequestAsTheMapBasedBody() throws Exception {
+        byte[] audio = new byte[100_003];
+        for (int i = 0; i < audio.length; i++) {
+            audio[i] = (byte) (i * 31);
+        }
+        File audioFile = Files.write(tempDir.resolve("audio.mp3"), audio).toFile();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeInline(out, "请生成笔记 \"JSON\"", audioFile, "audio/mpeg");
+
+        JsonNode parts = objectMapper.readTree(out.toByteArray()).path("contents").path(0).path("parts");
+        assertEquals("请生成笔记 \"JSON\"", parts.path(0).path("text").asText());
+        assertEquals("audio/mpeg", parts.path(1).path("inlineData").path("mimeType").asText());
+        assertArrayEquals(audio, Base64.getDecoder().decode(parts.path(1).path("inlineData").path("data").asText()));
+    }
+
+    /**
+     * 基准：请求体写出过程中的堆分配量不应随音频大小增长 (1 MB 与 200 MB 的分配量只差常数级)。
+     */
+    @Test
+    void writeInline_shouldAllocateAConstantAmountRegardlessOfInputSize() throws Exception {
+        File small = sparseFile("small.mp3", MB);
+        File large = sparseFile("large.mp3", 200 * MB);
+
+        measureAllocatedBytes(small); // 预热
+        long smallAllocated = measureAllocatedBytes(small);
+        long largeAllocated = measureAllocatedBytes(large);
+
+        System.out.printf("Allocated per request: 1 MB -> %d bytes, 200 MB -> %d bytes%n", smallAllocated, largeAllocated);
+        assertTrue(largeAllocated - smallAllocated < 512 * 1024,
+                "allocation grew with input size: " + smallAllocated + " -> " + largeAllocated);
+    }
+
+    private long measureAllocatedBytes(File audioFile) throws IOException {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        CountingOutputStream out = new CountingOutputStream();
+
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        writer.writeInline(out, "prompt", audioFile, "audio/mpeg");
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(out.count > audioFile.length() * 4 / 3);
+        return allocated;
+    }
+
+    private File sparseFile(String name, long length) throws IOException {
+        File file = tempDir.resolve(name).toFile();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+        }
+        return file;
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.fan.aivideonotes.service.llm;
+
+import com.fan.aivideonotes.config.HttpClientConfig;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 在相同的在途请求数 (CONCURRENCY) 下，对比旧的 LLM 传输方式 (SimpleClientHttpRequestFactory，每个在途调用占一个平台线程)
+ * 与新的 reactor-netty 连接池 + 虚拟线程：平台线程增长、建立的 TCP 连接数 (连接复用) 和 p99 延迟。
+ * - 假服务每个请求固定耗时 1s，足够长，使延迟由服务端而不是测试机的 CPU 决定；按客户端端口统计连接数
+ *   (它最多保留 200 个空闲连接，所以 CONCURRENCY 不超过 200)；
+ * - 延迟从拿到在途名额开始计算，不含在信号量上的排队时间；
+ * - 两种方式各先预热三轮再计量。
+ * 运行方式：mvn test -Dtest=LlmTransportLoadTest -DloadTest=true
+ */
+@EnabledIfSystemProperty(named = "loadTest", matches = "true")
+class LlmTransportLoadTest {
+
+    private static final int CONCURRENCY = 128;
+    private static final int REQUESTS = CONCURRENCY * 3;
+    private static final long SERVER_DELAY_MS = 1000;
+    private static final String RESPONSE = "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"{\\\"notes\\\":[]}\"}]}}]}";
+
+    private HttpServer server;
+    private String url;
+    // 当前这一轮中出现过的客户端端口，即建立过的连接
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void startFakeEndpoint() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        // 假服务使用预先启动的平台线程池：不计入被测方式的线程增长，也不与客户端的虚拟线程争抢载体线程
+        ThreadPoolExecutor serverExecutor = new ThreadPoolExecutor(CONCURRENCY, CONCURRENCY, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>());
+        serverExecutor.prestartAllCoreThreads();
+        server.setExecutor(serverExecutor);
+        server.createContext("/v1beta/models/fake:generateContent", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            exchange.getRequestBody().readAllBytes();
+            try {
+                Thread.sleep(SERVER_DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = RESPONSE.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/v1beta/models/fake:generateContent";
+    }
+
+    @AfterEach
+    void stopFakeEndpoint() {
+        server.stop(0);
+        ((ExecutorService) server.getExecutor()).shutdownNow();
+    }
+
+    @Test
+    void pooledTransport_shouldReuseConnections_withoutThreadPerCall_atEqualConcurrency() throws Exception {
+        // 旧方式：每个在途调用占用 LLM 阶段的一个平台线程，直到响应返回
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(60 * 1000);
+        requestFactory.setReadTimeout(5 * 60 * 1000);
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        ExecutorService legacyStage = Executors.newFixedThreadPool(CONCURRENCY);
+        Result legacy = run("legacy (SimpleClientHttpRequestFactory, platform thread per call)", legacyStage,
+                () -> restTemplate.postForObject(url, "{}", String.class));
+        legacyStage.shutdownNow();
+
+        // 新方式：共享连接池 (上限与在途请求数相同) + 虚拟线程
+        HttpClientConfig.TransportSettings settings = new HttpClientConfig.TransportSettings(
+                CONCURRENCY, 1000, Duration.ofSeconds(60), Duration.ofSeconds(30), Duration.ofSeconds(300),
+                Duration.ofSeconds(60), Duration.ofSeconds(300),
+                false, // 本地假服务是明文 HTTP
+                null, 0);
+        WebClient webClient = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(HttpClientConfig.buildHttpClient("load-test", settings)))
+                .build();
+        ExecutorService pooledStage = Executors.newVirtualThreadPerTaskExecutor();
+        Result pooled = run("pooled (reactor-netty, virtual threads)", pooledStage,
+                () -> webClient.post().uri(url).contentType(MediaType.APPLICATION_JSON).bodyValue("{}")
+                        .retrieve().bodyToMono(String.class).block());
+        pooledStage.shutdownNow();
+
+        // 平台线程：旧方式每个在途调用一个，新方式只有事件循环和虚拟线程的载体线程 (与 CPU 核数相关，与并发数无关)
+        assertTrue(legacy.platformThreadGrowth() >= CONCURRENCY, "legacy path should need a platform thread per in-flight call");
+        assertTrue(pooled.platformThreadGrowth() < CONCURRENCY / 4, "in-flight calls should not need one platform thread each");
+        // 连接复用：REQUESTS 个请求只用到不超过在途请求数的连接 (每个连接承载多个请求)
+        assertTrue(pooled.connections() <= CONCURRENCY, "pooled transport should not open more connections than in-flight calls");
+        assertTrue(pooled.connections() < REQUESTS / 2, "pooled transport should reuse connections across calls");
+        // 相同并发下 p99 由假服务的固定耗时决定，两种方式应当相当：新方式的收益是不按并发数占线程，而不是更低的单次延迟。
+        // 余量为服务耗时的 20%：单核机器上事件循环依次处理同时返回的响应，会多出一点尾延迟
+        assertTrue(pooled.p99Millis() <= legacy.p99Millis() + SERVER_DELAY_MS * 0.2,
+                "pooled p99 should be comparable to legacy p99 at equal concurrency");
+    }
+
+    private Result run(String name, ExecutorService stage, Supplier<String> call) {
+        // 线程数的基线取在预热之前：线程池和事件循环的线程都是在预热时创建的
+        ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+        int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+        runRound(stage, CONCURRENCY * 3, call); // 预热 (JIT、连接池、线程池)
+        clientPorts.clear();
+        long start = System.nanoTime();
+        List<Long> latencies = runRound(stage, REQUESTS, call);
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        int threadGrowth = ManagementFactory.getThreadMXBean().getPeakThreadCount() - threadsBefore;
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        double p50 = sorted.get(sorted.size() / 2) / 1e6;
+        double p99 = sorted.get((int) Math.ceil(sorted.size() * 0.99) - 1) / 1e6;
+        Result result = new Result(REQUESTS / elapsedSeconds, p99, threadGrowth, clientPorts.size());
+        System.out.println(String.format(Locale.ROOT,
+                "%s: %d in flight, %.1f req/s, p50 %.0f ms, p99 %.0f ms, platform threads +%d, connections %d",
+                name, CONCURRENCY, result.throughput(), p50, p99, threadGrowth, result.connections()));
+        return result;
+    }
+
+    private static List<Long> runRound(ExecutorService stage, int requests, Supplier<String> call) {
+        Semaphore inFlight = new Semaphore(CONCURRENCY);
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                inFlight.acquireUninterruptibly();
+                long started = System.nanoTime();
+                try {
+                    call.get();
+                } finally {
+                    inFlight.release();
+                }
+                latencies.add(System.nanoTime() - started);
+            }, stage));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        return latencies;
+    }
+
+    private record Result(double throughput, double p99Millis, int platformThreadGrowth, int connections) {
+    }
+}
@@ -0,0 +1,61 @@
+package com.fan.aivideonotes.service.llm;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProviderCircuitBreakerTest {
+
+    private static ProviderCircuitBreaker breaker(Duration openDuration) {
+        return new ProviderCircuitBreaker("GEMINI",
+                new ProviderCircuitBreaker.Settings(Duration.ofSeconds(60), 4, 0.5, Duration.ofSeconds(30), 0.8, openDuration, 1),
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    void shouldOpen_whenFailureRateExceedsThreshold_andRejectCalls() {
+        ProviderCircuitBreaker breaker = breaker(Duration.ofMinutes(1));
+        for (int i = 0; i < 2; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onSuccess(1_000_000);
+        }
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure(1_000_000, new RuntimeException("503"));
+        assertEquals(ProviderCircuitBreaker.State.CLOSED, breaker.getState());
+
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure(1_000_000, new RuntimeException("503"));
+
+        assertEquals(ProviderCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(0.5, breaker.snapshot().failureRate());
+    }
+
+    @Test
+    void halfOpenProbe_shouldCloseOnSuccess_andReopenOnFailure() throws Exception {
+        ProviderCircuitBreaker breaker = breaker(Duration.ofMillis(50));
+        for (int i = 0; i < 4; i++) {
+            breaker.tryAcquire();
+            breaker.onFailure(1_000_000, new RuntimeException("timeout"));
+        }
+        assertEquals(ProviderCircuitBreaker.State.OPEN, breaker.getState());
+
+        Thread.sleep(80);
+        assertTrue(breaker.tryAcquire());
+        assertEquals(ProviderCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire(), "only one probe at a time");
+        breaker.onFailure(1_000_000, new RuntimeException("timeout"));
+        assertEquals(ProviderCircuitBreaker.State.OPEN, breaker.getState());
+
+        Thread.sleep(80);
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess(1_000_000);
+        assertEquals(ProviderCircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.snapshot().calls());
+    }
+}
@@ -0,0 +1,62 @@
+package com.fan.aivideonotes.service.process;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ProgressParserTest {
+
+    @Test
+    void parse_shouldReadYtDlpPercentSpeedAndEta() {
+        ProgressParser parser = new ProgressParser("yt-dlp");
+
+        ProcessProgress progress = parser.parse("[download]  45.3% of ~120.50MiB at    2.00MiB/s ETA 01:05");
+
+        assertNotNull(progress);
+        assertEquals(45.3, progress.percent(), 0.001);
+        assertEquals(2.0 * 1024 * 1024, progress.bytesPerSecond(), 0.001);
+        assertEquals(65L, progress.etaSeconds());
+        assertEquals("45.3%, 2.1 MB/s, ETA 65s", progress.describe());
+    }
+
+    @Test
+    void parse_shouldKeepPercent_whenYtDlpSpeedIsUnknown() {
+        ProgressParser parser = new ProgressParser("yt-dlp");
+
+        ProcessProgress progress = parser.parse("[download]   0.0% of   10.00MiB at  Unknown B/s ETA Unknown");
+
+        assertNotNull(progress);
+        assertEquals(0.0, progress.percent(), 0.001);
+        assertNull(progress.bytesPerSecond());
+        assertNull(progress.etaSeconds());
+        assertNull(parser.parse("[youtube] dQw4w9WgXcQ: Downloading webpage"));
+    }
+
+    @Test
+    void parse_shouldComputeFfmpegPercentAndEta_fromInputDuration() {
+        ProgressParser parser = new ProgressParser("ffmpeg");
+
+        assertNull(parser.parse("  Duration: 00:10:00.00, start: 0.000000, bitrate: 128 kb/s"));
+        ProcessProgress progress = parser.parse("size=    1024kB time=00:02:30.00 bitrate= 100.5kbits/s speed=15.0x");
+
+        assertNotNull(progress);
+        assertEquals(25.0, progress.percent(), 0.001);
+        assertEquals(15.0, progress.speed(), 0.001);
+        assertEquals(30L, progress.etaSeconds());
+    }
+
+    @Test
+    void parse_shouldReportOnlySpeed_whenFfmpegReadsFromPipe() {
+        ProgressParser parser = new ProgressParser("ffmpeg");
+
+        assertNull(parser.parse("  Duration: N/A, start: 0.000000, bitrate: N/A"));
+        ProcessProgress progress = parser.parse("size=     512kB time=00:00:42.00 bitrate=  99.9kbits/s speed=20.1x");
+
+        assertNotNull(progress);
+        assertNull(progress.percent());
+        assertNull(progress.etaSeconds());
+        assertEquals(20.1, progress.speed(), 0.001);
+    }
+}
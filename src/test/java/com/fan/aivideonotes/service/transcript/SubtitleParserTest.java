@@ -0,0 +1,69 @@
+package com.fan.aivideonotes.service.transcript;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SubtitleParserTest {
+
+    @Test
+    void parse_shouldReadSrtCues() {
+        String srt = """
+                1
+                00:00:01,000 --> 00:00:03,500
+                大家好，今天我们来讲 Spring Boot。
+
+                2
+                00:01:05,200 --> 00:01:08,000
+                首先看一下 <i>自动配置</i> 的原理
+                """;
+
+        List<SubtitleParser.Cue> cues = SubtitleParser.parse(srt);
+
+        assertEquals(2, cues.size());
+        assertEquals(1.0, cues.get(0).startSeconds(), 0.001);
+        assertEquals("大家好，今天我们来讲 Spring Boot。", cues.get(0).text());
+        assertEquals(65.2, cues.get(1).startSeconds(), 0.001);
+        assertEquals("首先看一下 自动配置 的原理", cues.get(1).text());
+    }
+
+    @Test
+    void parse_shouldDropRollingDuplicates_inYoutubeAutoCaptions() {
+        String vtt = """
+                WEBVTT
+                Kind: captions
+                Language: en
+
+                00:00:00.000 --> 00:00:02.000 align:start position:0%
+                today<00:00:00.500><c> we</c><00:00:01.000><c> talk</c>
+
+                00:00:02.000 --> 00:00:02.010 align:start position:0%
+                today we talk
+
+                00:00:02.010 --> 00:00:04.000 align:start position:0%
+                today we talk
+                about&nbsp;garbage<c> collection</c>
+                """;
+
+        List<SubtitleParser.Cue> cues = SubtitleParser.parse(vtt);
+
+        assertEquals(2, cues.size());
+        assertEquals("today we talk", cues.get(0).text());
+        assertEquals("about garbage collection", cues.get(1).text());
+    }
+
+    @Test
+    void toTranscriptText_shouldGroupCuesIntoTimestampedParagraphs() {
+        List<SubtitleParser.Cue> cues = List.of(
+                new SubtitleParser.Cue(0, "first"),
+                new SubtitleParser.Cue(12, "second"),
+                new SubtitleParser.Cue(31, "third"),
+                new SubtitleParser.Cue(3725, "late"));
+
+        String transcript = SubtitleParser.toTranscriptText(cues, 30);
+
+        assertEquals("[00:00] first second\n[00:31] third\n[1:02:05] late", transcript);
+    }
+}